@@ -0,0 +1,114 @@
+package com.hynis.rpc.client.config;
+
+/**
+ * @author hynis
+ * @date 2026/10/18 10:20
+ *
+ * 客户端连接相关的配置，可以通过启动参数（-D）修改
+ */
+public class ClientConfig {
+    /**
+     * 每个服务端节点建立的连接数，一个连接只绑定一个EventLoop线程，高并发时单连接会先于服务端成为瓶颈
+     */
+    public static final int CONNECTIONS_PER_NODE = Integer.getInteger("hynis.rpc.client.connectionsPerNode", 2);
+    /**
+     * 客户端EventLoop线程数，连接池中的连接按注册顺序分散到这些线程上
+     */
+    public static final int IO_THREADS = Integer.getInteger("hynis.rpc.client.ioThreads",
+            Runtime.getRuntime().availableProcessors() * 2);
+    /**
+     * 连接断开或者连接失败后，间隔多久在后台重新建立连接，单位毫秒
+     */
+    public static final long RECONNECT_INTERVAL = Long.getLong("hynis.rpc.client.reconnectInterval", 1000L);
+    /**
+     * 一批最多写出的请求数，一批请求只调用一次flush
+     */
+    public static final int BATCH_MAX_MESSAGES = Integer.getInteger("hynis.rpc.client.batchMaxMessages", 64);
+    /**
+     * 请求的默认超时时间，单位毫秒，超时后请求以RpcTimeoutException失败
+     */
+    public static final long REQUEST_TIMEOUT = Long.getLong("hynis.rpc.client.requestTimeout", 10000L);
+    /**
+     * 超时时间轮每一格的时长，单位毫秒，超时的精度不会高于这个值
+     */
+    public static final long TIMEOUT_TICK = Long.getLong("hynis.rpc.client.timeoutTick", 10L);
+    /**
+     * 峰值EWMA响应时间的衰减时间常数，单位毫秒，值越小慢节点恢复后重新获得流量越快
+     */
+    public static final long PEAK_EWMA_DECAY_TIME = Long.getLong("hynis.rpc.client.peakEwmaDecayTime", 10000L);
+    /**
+     * 慢启动窗口，单位毫秒：节点连接建立后在这段时间内权重从SLOW_START_MIN_RATIO逐渐增加到完整权重，为0时关闭慢启动
+     */
+    public static final long SLOW_START_WINDOW = Long.getLong("hynis.rpc.client.slowStartWindow", 30000L);
+    /**
+     * 慢启动开始时的权重比例，取值范围(0, 1]
+     */
+    public static final double SLOW_START_MIN_RATIO = checkRatio("hynis.rpc.client.slowStartMinRatio",
+            Double.parseDouble(System.getProperty("hynis.rpc.client.slowStartMinRatio", "0.1")));
+    /**
+     * 熔断：连续失败（超时、服务端返回错误、写失败）多少次后摘除节点，为0时不按连续失败次数熔断
+     */
+    public static final int BREAKER_CONSECUTIVE_FAILURES = Integer.getInteger("hynis.rpc.client.breakerConsecutiveFailures", 5);
+    /**
+     * 熔断：统计失败率与慢调用率的滑动窗口长度，单位毫秒
+     */
+    public static final long BREAKER_WINDOW = Long.getLong("hynis.rpc.client.breakerWindow", 10000L);
+    /**
+     * 熔断：滑动窗口内的请求数不少于该值时才按失败率与慢调用率判断
+     */
+    public static final int BREAKER_MIN_REQUESTS = Integer.getInteger("hynis.rpc.client.breakerMinRequests", 20);
+    /**
+     * 熔断：滑动窗口内的失败率达到该值时摘除节点
+     */
+    public static final double BREAKER_FAILURE_RATE = Double.parseDouble(System.getProperty("hynis.rpc.client.breakerFailureRate", "0.5"));
+    /**
+     * 熔断：响应时间超过该值的调用记为慢调用，单位毫秒，为0时不统计慢调用
+     */
+    public static final long BREAKER_SLOW_CALL_THRESHOLD = Long.getLong("hynis.rpc.client.breakerSlowCallThreshold", 5000L);
+    /**
+     * 熔断：滑动窗口内的慢调用率达到该值时摘除节点
+     */
+    public static final double BREAKER_SLOW_CALL_RATE = Double.parseDouble(System.getProperty("hynis.rpc.client.breakerSlowCallRate", "0.5"));
+    /**
+     * 熔断：第一次摘除的时长，单位毫秒，之后每次连续摘除时长翻倍
+     */
+    public static final long BREAKER_BASE_EJECTION_TIME = Long.getLong("hynis.rpc.client.breakerBaseEjectionTime", 5000L);
+    /**
+     * 熔断：摘除时长的上限，单位毫秒；节点恢复后超过这段时间没有再被摘除，摘除时长重新从BREAKER_BASE_EJECTION_TIME开始
+     */
+    public static final long BREAKER_MAX_EJECTION_TIME = Long.getLong("hynis.rpc.client.breakerMaxEjectionTime", 300000L);
+    /**
+     * 熔断：一个服务最多同时摘除的节点百分比，避免大面积故障时把所有流量压到少数节点上
+     */
+    public static final int BREAKER_MAX_EJECTION_PERCENT = Integer.getInteger("hynis.rpc.client.breakerMaxEjectionPercent", 50);
+    /**
+     * 熔断：半开状态下放行的探测请求数，全部成功后恢复节点
+     */
+    public static final int BREAKER_HALF_OPEN_PROBES = Integer.getInteger("hynis.rpc.client.breakerHalfOpenProbes", 3);
+    /**
+     * 对冲预算：每个请求为所在服务积累的对冲请求数，即对冲请求最多占请求数的比例
+     */
+    public static final double HEDGE_BUDGET_RATIO = Double.parseDouble(System.getProperty("hynis.rpc.client.hedgeBudgetRatio", "0.1"));
+    /**
+     * 对冲预算：每个服务最多积累的对冲请求数
+     */
+    public static final int HEDGE_BUDGET_MAX_TOKENS = Integer.getInteger("hynis.rpc.client.hedgeBudgetMaxTokens", 10);
+    /**
+     * 重试预算：每个请求为所在服务积累的重试次数，即重试请求最多占请求数的比例，避免服务端故障时重试放大流量
+     */
+    public static final double RETRY_BUDGET_RATIO = Double.parseDouble(System.getProperty("hynis.rpc.client.retryBudgetRatio", "0.1"));
+    /**
+     * 重试预算：每个服务最多积累的重试次数
+     */
+    public static final int RETRY_BUDGET_MAX_TOKENS = Integer.getInteger("hynis.rpc.client.retryBudgetMaxTokens", 10);
+
+    /**
+     * 检查比例在(0, 1]之间：为0时节点在预热开始时得不到流量，大于1时预热期间的权重反而超过完整权重
+     */
+    private static double checkRatio(String name, double value) {
+        if (!(value > 0 && value <= 1)) {
+            throw new IllegalArgumentException(name + " must be in (0, 1], but was " + value);
+        }
+        return value;
+    }
+}
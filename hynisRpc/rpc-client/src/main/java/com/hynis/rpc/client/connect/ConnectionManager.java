@@ -1,15 +1,16 @@
 package com.hynis.rpc.client.connect;
 
+import com.hynis.rpc.client.config.ClientConfig;
 import com.hynis.rpc.client.handler.RpcClientHandler;
 import com.hynis.rpc.client.initializer.RpcClientInitializer;
+import com.hynis.rpc.client.route.RoutingTable;
 import com.hynis.rpc.client.route.RpcLoadBalance;
-import com.hynis.rpc.client.route.impl.RpcLoadBalanceRoundRobin;
+import com.hynis.rpc.client.route.impl.RpcLoadBalanceWeightedRoundRobin;
+import com.hynis.rpc.common.exception.RpcException;
 import com.hynis.rpc.common.protocol.RpcProtocol;
 import com.hynis.rpc.common.protocol.RpcServiceInfo;
 import com.hynis.rpc.common.util.ThreadPoolUtil;
 import io.netty.bootstrap.Bootstrap;
-import io.netty.channel.ChannelFuture;
-import io.netty.channel.ChannelFutureListener;
 import io.netty.channel.EventLoopGroup;
 import io.netty.channel.nio.NioEventLoopGroup;
 import io.netty.channel.socket.nio.NioSocketChannel;
@@ -17,7 +18,8 @@ import lombok.extern.slf4j.Slf4j;
 import org.apache.curator.framework.recipes.cache.PathChildrenCacheEvent;
 import org.springframework.stereotype.Component;
 
-import java.net.InetSocketAddress;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
@@ -57,14 +59,24 @@ public class ConnectionManager {
     /**
      * Netty客户端连接服务端
      */
-    private EventLoopGroup eventLoopGroup = new NioEventLoopGroup(4);
+    private EventLoopGroup eventLoopGroup = new NioEventLoopGroup(ClientConfig.IO_THREADS);
 
     /**
-     * 已连接的服务器节点Map
+     * 服务器节点Map
      * key: RpcProtocol
-     * value: RpcClientHandler 出站处理器
+     * value: ServerNode 该节点的连接池
      */
-    private Map<RpcProtocol, RpcClientHandler> connectedServerNodeMap = new ConcurrentHashMap<>();
+    private Map<RpcProtocol, ServerNode> connectedServerNodeMap = new ConcurrentHashMap<>();
+
+    /**
+     * 每个服务器节点建立的连接数，只对之后新连接的节点生效
+     */
+    private volatile int connectionsPerNode = ClientConfig.CONNECTIONS_PER_NODE;
+
+    /**
+     * 路由表快照：服务名到服务器节点数组的映射，只在节点或连接变化时重新生成
+     */
+    private volatile RoutingTable routingTable = RoutingTable.EMPTY;
 
 
     private ReentrantLock lock = new ReentrantLock();
@@ -72,14 +84,14 @@ public class ConnectionManager {
 
     private volatile boolean isRunning = true;
 
-    private RpcLoadBalance loadBalance = new RpcLoadBalanceRoundRobin();
+    private volatile RpcLoadBalance loadBalance = new RpcLoadBalanceWeightedRoundRobin();
 
     private long waitTimeout = 5000;
     /**
      * 一旦Zookeeper更新了服务信息，此方法就会执行
      * 本方法使用2个集合来管理服务信息和TCP连接，因为建立连接是异步的
      * 1、rpcProtocolSet 存储所有的RpcProtocol
-     * 2、connectedServerNodeMap：存储所有已连接到的Server的Map
+     * 2、connectedServerNodeMap：存储所有Server节点的连接池
      * @param serviceList
      */
     public void updateConnectedServer(List<RpcProtocol> serviceList) {
@@ -137,7 +149,7 @@ public class ConnectionManager {
     }
 
     /**
-     * 连接对应RpcProtocol的服务端，并将连接存于 connectedServerNodeMap，
+     * 为RpcProtocol对应的服务端创建连接池ServerNode并存于 connectedServerNodeMap，连接在后台异步建立
      * 在rpcProtocolSet内存放所有的rpcProtocol
      * @param rpcProtocol
      */
@@ -151,37 +163,27 @@ public class ConnectionManager {
         for (RpcServiceInfo serviceProtocol : rpcProtocol.getServiceInfoList()) {
             log.info("New service info, name: {}, version: {}", serviceProtocol.getServiceName(), serviceProtocol.getVersion());
         }
-        final InetSocketAddress remotePeer =
-                new InetSocketAddress(rpcProtocol.getHost(), rpcProtocol.getPort());
+        Bootstrap b = new Bootstrap();
+        // 所有节点的连接共用同一个eventLoopGroup，同一个节点的多个连接会被分配到不同的EventLoop线程上
+        b.group(eventLoopGroup)
+                .channel(NioSocketChannel.class)
+                .handler(new RpcClientInitializer());
+        final ServerNode serverNode = new ServerNode(rpcProtocol, b, connectionsPerNode,
+                ClientConfig.RECONNECT_INTERVAL, new Runnable() {
+            @Override
+            public void run() {
+                // 节点的连接发生变化时重新生成路由表
+                updateRoutingTable();
+                // 多个线程可能在等待可用的连接，因此每建立一个连接都通知这些线程
+                signalAvailableHandler();
+            }
+        });
+        // connectedServerNodeMap 存储所有的服务器节点，节点是否有可用连接由ServerNode.isAvailable判断
+        connectedServerNodeMap.put(rpcProtocol, serverNode);
         threadPoolExecutor.submit(new Runnable() {
             @Override
             public void run() {
-                Bootstrap b = new Bootstrap();
-                // threadPoolExecutor创建的线程会共用同一个eventLoopGroup，即多个客户端可能会出现并发
-                // 注意：同一个eventLoopGroup下的入站、出站管理器是共享的
-                b.group(eventLoopGroup)
-                        .channel(NioSocketChannel.class)
-                        .handler(new RpcClientInitializer());
-                // Netty异步的经典用法，使用ChannelFuture，
-                ChannelFuture channelFuture = b.connect(remotePeer);
-                // 通过给ChannelFuture添加监听器，当连接完成时，执行operationComplete方法
-                channelFuture.addListener(new ChannelFutureListener() {
-                    @Override
-                    public void operationComplete(final ChannelFuture channelFuture) throws Exception {
-                        if (channelFuture.isSuccess()) {
-                            // 如果连接服务器成功，那么得到对应的入站处理器RpcClientHandler
-                            log.info("Successfully connect to remote server, remote peer = " + remotePeer);
-                            RpcClientHandler handler = channelFuture.channel().pipeline().get(RpcClientHandler.class);
-                            // connectedServerNodeMap 存储已经连接到的服务器节点
-                            connectedServerNodeMap.put(rpcProtocol, handler);
-                            handler.setRpcProtocol(rpcProtocol);
-                            // 多个线程可能会因为使用同一个入站处理器RpcClientHandler而进入阻塞，因此使用下面的方法来通知其他线程此入站处理器可用
-                            signalAvailableHandler();
-                        } else {
-                            log.error("Can not connect to remote server, remote peer = " + remotePeer);
-                        }
-                    }
-                });
+                serverNode.connect();
             }
         });
     }
@@ -208,33 +210,130 @@ public class ConnectionManager {
      * @param rpcProtocol
      */
     private void removeAndCloseHandler(RpcProtocol rpcProtocol) {
-        RpcClientHandler handler = connectedServerNodeMap.get(rpcProtocol);
-        if (handler != null) {
-            handler.close();
+        ServerNode serverNode = connectedServerNodeMap.remove(rpcProtocol);
+        if (serverNode != null) {
+            serverNode.close();
+            updateRoutingTable();
         }
-        connectedServerNodeMap.remove(rpcProtocol);
         rpcProtocolSet.remove(rpcProtocol);
     }
 
+    /**
+     * 先从路由表快照中取出提供该服务的服务器节点，由负载均衡策略选择节点，再在节点的连接池中选择等待响应的请求数最少的连接
+     * 熔断器打开的节点不在路由表中，半开状态的节点只接受有限的探测请求，探测请求已满并且没有其他节点时直接失败
+     * @param serviceKey
+     * @return
+     * @throws Exception
+     */
     public RpcClientHandler chooseHandler(String serviceKey) throws Exception {
-        int size = connectedServerNodeMap.values().size();
-        while (isRunning && size <= 0) {
+        return chooseHandler(serviceKey, null);
+    }
+
+    /**
+     * 按路由key选择连接，路由key交给负载均衡策略（见RpcLoadBalance.route(serviceKey, nodes, routeKey)）
+     * @param serviceKey
+     * @param routeKey 路由key，没有时为null
+     * @return
+     * @throws Exception
+     */
+    public RpcClientHandler chooseHandler(String serviceKey, Object routeKey) throws Exception {
+        return chooseHandler(serviceKey, routeKey, Collections.<RpcProtocol>emptyList());
+    }
+
+    /**
+     * 选择连接，并避开指定的服务器节点（如对冲请求不能再发往第一个请求的节点）
+     * @param serviceKey
+     * @param routeKey 路由key，没有时为null
+     * @param excludedNodes 不能选择的节点
+     * @return
+     * @throws Exception 除了excludedNodes之外没有可用的节点
+     */
+    public RpcClientHandler chooseHandler(String serviceKey, Object routeKey, Collection<RpcProtocol> excludedNodes) throws Exception {
+        RoutingTable table = routingTable;
+        while (isRunning && table.isEmpty()) {
             try {
                 waitingForHandler();
-                size = connectedServerNodeMap.values().size();
+                table = routingTable;
             } catch (InterruptedException e) {
                 log.error("Waiting for available service is interrupted!", e);
             }
         }
-        // route 将不同的服务连接，按服务名分组
-        RpcProtocol rpcProtocol = loadBalance.route(serviceKey, connectedServerNodeMap);
-        RpcClientHandler handler = connectedServerNodeMap.get(rpcProtocol);
+        return chooseHandler(table, serviceKey, routeKey, excludedNodes);
+    }
+
+    /**
+     * 选择连接，不等待可用的服务：路由表为空时直接失败，可以在不能阻塞的线程（如时间轮线程）中调用
+     * @param serviceKey
+     * @param routeKey 路由key，没有时为null
+     * @param excludedNodes 不能选择的节点
+     * @return
+     * @throws Exception 除了excludedNodes之外没有可用的节点
+     */
+    public RpcClientHandler chooseHandlerNoWait(String serviceKey, Object routeKey, Collection<RpcProtocol> excludedNodes) throws Exception {
+        return chooseHandler(routingTable, serviceKey, routeKey, excludedNodes);
+    }
+
+    private RpcClientHandler chooseHandler(RoutingTable table, String serviceKey, Object routeKey,
+                                           Collection<RpcProtocol> excludedNodes) throws Exception {
+        ServerNode[] nodes = table.getNodes(serviceKey);
+        if (nodes == null) {
+            String missingSerializer = table.getMissingSerializer(serviceKey);
+            if (missingSerializer != null) {
+                throw new RpcException("Serializer " + missingSerializer + " of service " + serviceKey
+                        + " is not available on the client");
+            }
+            throw new Exception("Can not find connection for service: " + serviceKey);
+        }
+        ServerNode serverNode = loadBalance.route(serviceKey, nodes, routeKey);
+        boolean excluded = excludedNodes.contains(serverNode.getRpcProtocol());
+        if (excluded || !serverNode.getCircuitBreaker().allowRequest()) {
+            ServerNode allowedNode = chooseAllowedNode(nodes, serverNode, excludedNodes);
+            if (allowedNode == null) {
+                if (excluded) {
+                    throw new Exception("Can not find another node for service: " + serviceKey);
+                }
+                // 半开状态的节点探测请求已满，不能绕过探测名额的限制继续发送，直接失败
+                RpcProtocol rpcProtocol = serverNode.getRpcProtocol();
+                throw new RpcException("Node " + rpcProtocol.getHost() + ":" + rpcProtocol.getPort()
+                        + " is half open with no probe left, and no other node is available for service: " + serviceKey);
+            }
+            serverNode = allowedNode;
+        }
+        RpcClientHandler handler = serverNode.chooseHandler();
         if (handler != null) {
             return handler;
         } else {
             throw new Exception("Can not get available connection");
         }
     }
+
+    /**
+     * 负载均衡选中的节点需要避开或者处于半开状态并且探测请求已满时，从随机位置开始找一个可以放行请求的节点
+     * @param nodes
+     * @param rejected 被熔断器拒绝或者需要避开的节点
+     * @param excludedNodes 需要避开的节点
+     * @return 没有其他节点可以选择时返回null
+     */
+    private ServerNode chooseAllowedNode(ServerNode[] nodes, ServerNode rejected, Collection<RpcProtocol> excludedNodes) {
+        int start = ThreadLocalRandom.current().nextInt(nodes.length);
+        for (int i = 0; i < nodes.length; ++i) {
+            ServerNode serverNode = nodes[(start + i) % nodes.length];
+            if (serverNode != rejected && !excludedNodes.contains(serverNode.getRpcProtocol())
+                    && serverNode.getCircuitBreaker().allowRequest()) {
+                return serverNode;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 服务器节点或者节点的连接发生变化时，重新生成路由表快照并发布
+     * 加锁保证并发更新时最后发布的快照反映最新的状态
+     */
+    private synchronized void updateRoutingTable() {
+        routingTable = RoutingTable.build(connectedServerNodeMap.values(), ClientConfig.BREAKER_MAX_EJECTION_PERCENT);
+    }
+
     private boolean waitingForHandler() throws InterruptedException {
         lock.lock();
         try {
@@ -245,6 +344,24 @@ public class ConnectionManager {
         }
     }
 
+    /**
+     * 设置负载均衡策略，对之后的请求生效
+     * @param loadBalance
+     */
+    public void setLoadBalance(RpcLoadBalance loadBalance) {
+        if (loadBalance == null) {
+            throw new IllegalArgumentException("loadBalance can not be null");
+        }
+        this.loadBalance = loadBalance;
+    }
+
+    public void setConnectionsPerNode(int connectionsPerNode) {
+        if (connectionsPerNode <= 0) {
+            throw new IllegalArgumentException("connectionsPerNode must be positive: " + connectionsPerNode);
+        }
+        this.connectionsPerNode = connectionsPerNode;
+    }
+
     public void stop() {
         isRunning = false;
         for (RpcProtocol rpcProtocol : rpcProtocolSet) {
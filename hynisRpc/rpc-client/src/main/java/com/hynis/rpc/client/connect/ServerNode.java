@@ -0,0 +1,275 @@
+package com.hynis.rpc.client.connect;
+
+import com.hynis.rpc.client.config.ClientConfig;
+import com.hynis.rpc.client.handler.RpcClientHandler;
+import com.hynis.rpc.client.route.CircuitBreaker;
+import com.hynis.rpc.client.route.PeakEwma;
+import com.hynis.rpc.common.protocol.RpcProtocol;
+import io.netty.bootstrap.Bootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.EventLoopGroup;
+import lombok.extern.slf4j.Slf4j;
+
+import java.net.InetSocketAddress;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * @author hynis
+ * @date 2026/10/18 10:30
+ *
+ * 一个服务端节点的连接池：对同一个RpcProtocol建立固定数量的连接
+ * 每个连接绑定一个EventLoop线程，多个连接可以分散到不同的线程上，避免单连接成为吞吐瓶颈
+ * 选择连接时取等待响应的请求数最少的连接，连接断开后在后台重新建立
+ * 节点从没有可用连接变为可用时进入慢启动，有效权重在ClientConfig.SLOW_START_WINDOW内逐渐增加到完整权重，
+ * 避免刚启动的服务端（JIT、序列化与业务缓存都还没有预热）立即承担完整的流量
+ */
+@Slf4j
+public class ServerNode {
+
+    private final RpcProtocol rpcProtocol;
+    private final InetSocketAddress remotePeer;
+    private final Bootstrap bootstrap;
+    private final long reconnectInterval;
+    /**
+     * 连接池，下标为连接编号，连接断开或者还未建立时为null
+     */
+    private final AtomicReferenceArray<RpcClientHandler> handlers;
+    /**
+     * 有连接建立成功或者断开时回调，用来更新路由表并唤醒等待可用连接的线程
+     */
+    private final Runnable stateListener;
+    /**
+     * 每次选择连接时的起始位置，等待数相同时轮流选择，避免总是选中第一个连接
+     */
+    private final AtomicInteger startIndex = new AtomicInteger(0);
+    /**
+     * 该节点的峰值EWMA响应时间，由各个连接收到响应时更新
+     */
+    private final PeakEwma peakEwma = new PeakEwma(ClientConfig.PEAK_EWMA_DECAY_TIME);
+    /**
+     * 该节点的熔断器，由各个连接记录请求的结果，熔断器打开时节点从路由表中摘除
+     */
+    private final CircuitBreaker circuitBreaker;
+
+    private final long slowStartWindowNanos = TimeUnit.MILLISECONDS.toNanos(ClientConfig.SLOW_START_WINDOW);
+    /**
+     * 本次慢启动的开始时间，System.nanoTime
+     */
+    private volatile long warmupStartNanos;
+    /**
+     * 慢启动是否已经结束，结束后不再读取时间
+     */
+    private volatile boolean warmedUp = true;
+
+    private volatile boolean closed = false;
+
+    public ServerNode(RpcProtocol rpcProtocol, Bootstrap bootstrap, int connections,
+                      long reconnectInterval, Runnable stateListener) {
+        this.rpcProtocol = rpcProtocol;
+        this.remotePeer = new InetSocketAddress(rpcProtocol.getHost(), rpcProtocol.getPort());
+        this.bootstrap = bootstrap;
+        this.reconnectInterval = reconnectInterval;
+        this.handlers = new AtomicReferenceArray<>(Math.max(1, connections));
+        this.stateListener = stateListener;
+        this.circuitBreaker = new CircuitBreaker(remotePeer.toString(), stateListener, bootstrap.config().group());
+    }
+
+    /**
+     * 异步建立连接池中的所有连接
+     */
+    public void connect() {
+        for (int i = 0; i < handlers.length(); ++i) {
+            connect(i);
+        }
+    }
+
+    private void connect(final int index) {
+        if (closed) {
+            return;
+        }
+        // Netty异步的经典用法，给ChannelFuture添加监听器，连接完成时执行operationComplete方法
+        bootstrap.connect(remotePeer).addListener(new ChannelFutureListener() {
+            @Override
+            public void operationComplete(ChannelFuture channelFuture) throws Exception {
+                if (!channelFuture.isSuccess()) {
+                    log.error("Can not connect to remote server, remote peer = {}, connection: {}", remotePeer, index);
+                    scheduleReconnect(index);
+                    return;
+                }
+                Channel channel = channelFuture.channel();
+                final RpcClientHandler handler = channel.pipeline().get(RpcClientHandler.class);
+                // 节点从不可用变为可用（首次连接或者全部连接断开后恢复），服务端可能是刚启动的，重新开始慢启动
+                if (!isAvailable()) {
+                    startWarmup();
+                }
+                handler.setRpcProtocol(rpcProtocol);
+                handler.setPeakEwma(peakEwma);
+                handler.setCircuitBreaker(circuitBreaker);
+                handlers.set(index, handler);
+                // 连接池在连接建立的过程中被关闭
+                if (closed) {
+                    handler.close();
+                    return;
+                }
+                // 连接断开后从连接池中移除，并在后台重新建立
+                channel.closeFuture().addListener(new ChannelFutureListener() {
+                    @Override
+                    public void operationComplete(ChannelFuture closeFuture) throws Exception {
+                        handlers.compareAndSet(index, handler, null);
+                        if (!closed) {
+                            log.warn("Connection to {} closed, reconnect connection: {}", remotePeer, index);
+                            stateListener.run();
+                            scheduleReconnect(index);
+                        }
+                    }
+                });
+                log.info("Successfully connect to remote server, remote peer = {}, connection: {}", remotePeer, index);
+                stateListener.run();
+            }
+        });
+    }
+
+    private void scheduleReconnect(final int index) {
+        EventLoopGroup group = bootstrap.config().group();
+        if (closed || group.isShuttingDown()) {
+            return;
+        }
+        group.schedule(new Runnable() {
+            @Override
+            public void run() {
+                connect(index);
+            }
+        }, reconnectInterval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 选择等待响应的请求数最少的连接
+     * @return 没有可用的连接时返回null
+     */
+    public RpcClientHandler chooseHandler() {
+        int size = handlers.length();
+        int start = startIndex.getAndIncrement() & Integer.MAX_VALUE;
+        RpcClientHandler chosen = null;
+        int minPending = Integer.MAX_VALUE;
+        for (int i = 0; i < size; ++i) {
+            RpcClientHandler handler = handlers.get((start + i) % size);
+            if (handler == null || !handler.isActive()) {
+                continue;
+            }
+            int pending = handler.getPendingCount();
+            if (pending < minPending) {
+                chosen = handler;
+                minPending = pending;
+                if (pending == 0) {
+                    break;
+                }
+            }
+        }
+        return chosen;
+    }
+
+    /**
+     * 是否至少有一个可用的连接
+     * @return
+     */
+    public boolean isAvailable() {
+        for (int i = 0; i < handlers.length(); ++i) {
+            RpcClientHandler handler = handlers.get(i);
+            if (handler != null && handler.isActive()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 该节点所有连接上等待响应的请求数之和
+     * @return
+     */
+    public int getPendingCount() {
+        int pending = 0;
+        for (int i = 0; i < handlers.length(); ++i) {
+            RpcClientHandler handler = handlers.get(i);
+            if (handler != null) {
+                pending += handler.getPendingCount();
+            }
+        }
+        return pending;
+    }
+
+    /**
+     * 该节点的负载：峰值EWMA响应时间 * (等待响应的请求数 + 1)
+     * @return
+     */
+    public double getPeakEwmaLoad() {
+        return peakEwma.getLoad(getPendingCount());
+    }
+
+    /**
+     * 服务端声明的权重，没有声明时为RpcProtocol.DEFAULT_WEIGHT
+     * @return
+     */
+    public int getWeight() {
+        int weight = rpcProtocol.getWeight();
+        return weight > 0 ? weight : RpcProtocol.DEFAULT_WEIGHT;
+    }
+
+    /**
+     * 考虑慢启动的有效权重：权重 * 预热系数
+     * @return
+     */
+    public double getEffectiveWeight() {
+        return getWeight() * getWarmupFactor();
+    }
+
+    /**
+     * 预热系数：慢启动开始时为ClientConfig.SLOW_START_MIN_RATIO，在慢启动窗口内线性增加到1
+     * @return
+     */
+    public double getWarmupFactor() {
+        if (warmedUp) {
+            return 1;
+        }
+        long elapsed = System.nanoTime() - warmupStartNanos;
+        if (elapsed >= slowStartWindowNanos) {
+            warmedUp = true;
+            return 1;
+        }
+        double minRatio = ClientConfig.SLOW_START_MIN_RATIO;
+        return minRatio + (1 - minRatio) * elapsed / slowStartWindowNanos;
+    }
+
+    private void startWarmup() {
+        if (slowStartWindowNanos <= 0) {
+            return;
+        }
+        warmupStartNanos = System.nanoTime();
+        warmedUp = false;
+        log.info("Start warming up {} in {} ms", remotePeer, ClientConfig.SLOW_START_WINDOW);
+    }
+
+    public CircuitBreaker getCircuitBreaker() {
+        return circuitBreaker;
+    }
+
+    public RpcProtocol getRpcProtocol() {
+        return rpcProtocol;
+    }
+
+    /**
+     * 关闭连接池中的所有连接，之后不再重新建立连接
+     */
+    public void close() {
+        closed = true;
+        for (int i = 0; i < handlers.length(); ++i) {
+            RpcClientHandler handler = handlers.getAndSet(i, null);
+            if (handler != null) {
+                handler.close();
+            }
+        }
+    }
+}
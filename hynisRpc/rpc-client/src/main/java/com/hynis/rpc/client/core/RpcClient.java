@@ -12,6 +12,7 @@ import org.springframework.context.ApplicationContext;
 import org.springframework.context.ApplicationContextAware;
 
 import java.lang.reflect.Proxy;
+import java.util.concurrent.Executor;
 import java.util.concurrent.ThreadPoolExecutor;
 
 /**
@@ -25,6 +26,10 @@ public class RpcClient implements ApplicationContextAware, DisposableBean {
 
     private static ThreadPoolExecutor threadPoolExecutor =
             ThreadPoolUtil.createThreadPool(RpcClient.class.getSimpleName(), 8, 16, 60);
+    /**
+     * 执行RpcFuture.addCallback回调的线程池，默认为threadPoolExecutor
+     */
+    private static volatile Executor callbackExecutor = threadPoolExecutor;
 
 
     public RpcClient(String address) {
@@ -35,6 +40,18 @@ public class RpcClient implements ApplicationContextAware, DisposableBean {
         threadPoolExecutor.submit(task);
     }
 
+    public static Executor getCallbackExecutor() {
+        return callbackExecutor;
+    }
+
+    /**
+     * 设置执行回调的线程池，传入ImmediateExecutor.INSTANCE时回调直接在EventLoop线程中执行，省去一次线程切换
+     * @param executor
+     */
+    public static void setCallbackExecutor(Executor executor) {
+        callbackExecutor = executor != null ? executor : threadPoolExecutor;
+    }
+
     @Override
     public void destroy() throws Exception {
         this.stop();
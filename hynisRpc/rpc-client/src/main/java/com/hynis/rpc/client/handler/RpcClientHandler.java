@@ -1,14 +1,46 @@
 package com.hynis.rpc.client.handler;
 
+import com.hynis.rpc.client.config.ClientConfig;
+import com.hynis.rpc.client.route.CircuitBreaker;
+import com.hynis.rpc.client.route.PeakEwma;
+import com.hynis.rpc.common.compress.Compressor;
+import com.hynis.rpc.common.compress.CompressorRegistry;
+import com.hynis.rpc.common.config.Beat;
+import com.hynis.rpc.common.entity.RpcHandshake;
 import com.hynis.rpc.common.entity.RpcRequest;
 import com.hynis.rpc.common.entity.RpcResponse;
+import com.hynis.rpc.common.exception.RpcConnectException;
+import com.hynis.rpc.common.exception.RpcException;
+import com.hynis.rpc.common.exception.RpcTimeoutException;
 import com.hynis.rpc.common.protocol.RpcProtocol;
+import com.hynis.rpc.common.protocol.RpcServiceInfo;
+import com.hynis.rpc.common.serializer.Serializer;
+import com.hynis.rpc.common.serializer.SerializerRegistry;
+import com.hynis.rpc.common.util.ServiceUtil;
 import io.netty.buffer.Unpooled;
 import io.netty.channel.*;
+import io.netty.handler.codec.EncoderException;
+import io.netty.handler.timeout.IdleStateEvent;
+import io.netty.util.HashedWheelTimer;
+import io.netty.util.Timeout;
+import io.netty.util.Timer;
+import io.netty.util.TimerTask;
+import io.netty.util.collection.LongObjectHashMap;
+import io.netty.util.collection.LongObjectMap;
+import io.netty.util.concurrent.DefaultThreadFactory;
 import lombok.extern.slf4j.Slf4j;
 
 import java.net.SocketAddress;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * @author hynis
@@ -17,12 +49,77 @@ import java.util.concurrent.ConcurrentHashMap;
 @Slf4j
 public class RpcClientHandler extends SimpleChannelInboundHandler<RpcResponse> {
 
-    private ConcurrentHashMap<String, RpcFuture> pendingRpcMap = new ConcurrentHashMap<>();
+    /**
+     * 所有连接共用的超时时间轮，每个请求发送时登记一个超时任务
+     */
+    private static final Timer TIMEOUT_TIMER = new HashedWheelTimer(
+            new DefaultThreadFactory("hynisRpc-timeout", true), ClientConfig.TIMEOUT_TICK, TimeUnit.MILLISECONDS);
+
+    /**
+     * 已发送、等待响应的请求，key为请求ID
+     * 只在该连接的EventLoop线程中读写，因此使用不加锁的原始类型long作为key的map
+     */
+    private final LongObjectMap<RpcFuture> pendingRpcMap = new LongObjectHashMap<>();
+    /**
+     * 等待响应的请求数，pendingRpcMap只能在EventLoop线程中访问，连接池选择连接时读取这个计数
+     */
+    private final AtomicInteger pendingCount = new AtomicInteger(0);
+    /**
+     * 发送队列：调用方线程放入请求，EventLoop线程批量写出
+     */
+    private final Queue<RpcFuture> sendQueue = new ConcurrentLinkedQueue<>();
+    /**
+     * 是否已经向EventLoop提交了写任务，保证同一时刻最多只有一个写任务
+     */
+    private final AtomicBoolean writeScheduled = new AtomicBoolean(false);
+    private final Runnable writeBatchTask = new Runnable() {
+        @Override
+        public void run() {
+            writeBatch();
+        }
+    };
+    /**
+     * 一批最多写出的请求数
+     */
+    private final int batchMaxMessages;
+    /**
+     * 请求ID生成器，每个连接独立计数，从1开始（0保留给心跳）
+     */
+    private final AtomicLong requestIdGenerator = new AtomicLong(Beat.BEAT_ID);
+    /**
+     * 握手时从服务端获取的方法字典，key为方法签名，value为方法ID
+     * 握手完成前为空，此时请求仍携带完整的类名、方法名与参数类型
+     */
+    private volatile Map<String, Integer> methodDictionary = Collections.emptyMap();
+    /**
+     * 该服务端上每个服务使用的序列化器ID，key为接口名+版本号，由注册中心中的服务信息得到
+     */
+    private volatile Map<String, Byte> serializerIds = Collections.emptyMap();
+    /**
+     * 该服务端上每个服务使用的压缩器ID，key为接口名+版本号
+     */
+    private volatile Map<String, Byte> compressorIds = Collections.emptyMap();
     private RpcProtocol rpcProtocol;
+    /**
+     * 所属服务器节点的峰值EWMA响应时间，收到响应时记录响应时间
+     */
+    private volatile PeakEwma peakEwma;
+    /**
+     * 所属服务器节点的熔断器，记录每个请求成功或失败
+     */
+    private volatile CircuitBreaker circuitBreaker;
     private SocketAddress remotePeer;
 
     private volatile Channel channel;
 
+    public RpcClientHandler() {
+        this(ClientConfig.BATCH_MAX_MESSAGES);
+    }
+
+    public RpcClientHandler(int batchMaxMessages) {
+        this.batchMaxMessages = Math.max(1, batchMaxMessages);
+    }
+
     /**
      * SimpleChannelInboundHandler各个方法的执行顺序为：
      * 1、channelRegistered 通道被注册到EventLoop时调用
@@ -41,48 +138,399 @@ public class RpcClientHandler extends SimpleChannelInboundHandler<RpcResponse> {
         this.channel = ctx.channel();
     }
 
+    /**
+     * 连接关闭后不会再收到响应，以失败结束所有等待中的请求
+     * @param ctx
+     * @throws Exception
+     */
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        super.channelInactive(ctx);
+        if (!pendingRpcMap.isEmpty()) {
+            log.warn("Connection to {} closed, fail {} pending requests", remotePeer, pendingRpcMap.size());
+            // 请求已经写出，可能已经被服务端执行
+            Exception cause = new RpcConnectException("Connection closed: " + remotePeer, null, true);
+            for (RpcFuture rpcFuture : pendingRpcMap.values()) {
+                rpcFuture.fail(cause);
+            }
+            pendingCount.addAndGet(-pendingRpcMap.size());
+            pendingRpcMap.clear();
+        }
+    }
+
     @Override
     public void channelActive(ChannelHandlerContext ctx) throws Exception {
         super.channelActive(ctx);
         this.remotePeer = this.channel.remoteAddress();
+        // 连接建立后向服务端获取方法字典
+        ctx.writeAndFlush(new RpcHandshake());
+    }
+
+    /**
+     * 获取方法ID
+     * @param methodKey 方法签名，见ServiceUtil.makeMethodKey
+     * @return 握手未完成或服务端没有该方法时返回0
+     */
+    public int getMethodId(String methodKey) {
+        Integer methodId = methodDictionary.get(methodKey);
+        return methodId != null ? methodId : 0;
+    }
+
+    /**
+     * 将请求封装为RPCFuture，使用默认的超时时间发送
+     * @param request
+     * @return
+     */
+    public RpcFuture sendRequest(final RpcRequest request) {
+        return sendRequest(request, ClientConfig.REQUEST_TIMEOUT);
+    }
+
+    /**
+     * 将请求封装为RPCFuture，放入发送队列后立即返回，不等待写操作完成
+     * 发送队列由EventLoop线程批量写出，一批请求只flush一次（见writeBatch），对调用方透明
+     * 同时在超时时间轮中登记截止时间，到期还没有完成的请求以RpcTimeoutException失败
+     * 超时时间随请求发给服务端，服务端不再执行已经过期的请求
+     * @param request
+     * @param timeoutMillis 超时时间，单位毫秒
+     * @return
+     */
+    public RpcFuture sendRequest(final RpcRequest request, final long timeoutMillis) {
+        final long requestId = requestIdGenerator.incrementAndGet();
+        request.setRequestId(requestId);
+        request.setTimeout(timeoutMillis);
+        final RpcFuture rpcFuture = new RpcFuture(request);
+        rpcFuture.setHandler(this);
+        rpcFuture.setTimeout(TIMEOUT_TIMER.newTimeout(new TimerTask() {
+            @Override
+            public void run(Timeout timeout) throws Exception {
+                expire(rpcFuture, timeoutMillis);
+            }
+        }, timeoutMillis, TimeUnit.MILLISECONDS));
+        pendingCount.incrementAndGet();
+        sendQueue.offer(rpcFuture);
+        scheduleWriteBatch();
+        return rpcFuture;
     }
 
     /**
-     * 将请求封装为RPCFuture
-     * pendingRpcMap存放已经发送出去的异步请求，以便后续使用id查询状态
+     * 发送单向请求：服务端不返回响应，因此不登记超时任务，也不等待响应
+     * 返回的RpcFuture在请求写出后以null完成，写失败时以RpcConnectException失败
      * @param request
      * @return
      */
-    public RpcFuture sendRequest(RpcRequest request) {
+    public RpcFuture sendOneway(final RpcRequest request) {
+        request.setRequestId(requestIdGenerator.incrementAndGet());
+        request.setOneway(true);
+        request.setTimeout(0);
         RpcFuture rpcFuture = new RpcFuture(request);
-        pendingRpcMap.put(request.getRequestId(), rpcFuture);
+        pendingCount.incrementAndGet();
+        sendQueue.offer(rpcFuture);
+        scheduleWriteBatch();
+        return rpcFuture;
+    }
+
+    /**
+     * 请求到期：在EventLoop中从pendingRpcMap移除登记，再以RpcTimeoutException结束请求并触发回调
+     * 与响应的处理在同一个线程中执行，二者只有一个会生效
+     * 还在发送队列中的请求直接结束，writeBatch会跳过已经结束的请求
+     * @param rpcFuture
+     * @param timeoutMillis
+     */
+    private void expire(final RpcFuture rpcFuture, final long timeoutMillis) {
+        final RpcRequest request = rpcFuture.getRequest();
+        Runnable task = new Runnable() {
+            @Override
+            public void run() {
+                if (pendingRpcMap.remove(request.getRequestId()) != null) {
+                    pendingCount.decrementAndGet();
+                    // 超时的请求按超时时间计入响应时间，不响应的节点同样会被判定为慢节点
+                    PeakEwma peakEwma = RpcClientHandler.this.peakEwma;
+                    if (peakEwma != null) {
+                        peakEwma.observe(TimeUnit.MILLISECONDS.toNanos(timeoutMillis));
+                    }
+                    CircuitBreaker circuitBreaker = RpcClientHandler.this.circuitBreaker;
+                    if (circuitBreaker != null) {
+                        circuitBreaker.onFailure(TimeUnit.MILLISECONDS.toNanos(timeoutMillis));
+                    }
+                } else if (rpcFuture.isDone()) {
+                    return;
+                }
+                log.warn("Request {} to {} timeout after {}ms", request.getRequestId(), remotePeer, timeoutMillis);
+                rpcFuture.fail(new RpcTimeoutException(request.getRequestId(), timeoutMillis,
+                        "Request timeout after " + timeoutMillis + "ms. Request id: " + request.getRequestId()
+                                + ". Remote peer: " + remotePeer));
+            }
+        };
+        try {
+            channel.eventLoop().execute(task);
+        } catch (RejectedExecutionException e) {
+            task.run();
+        }
+    }
+
+    /**
+     * 请求被调用方撤销：在EventLoop中移除登记，之后到达的响应会被丢弃
+     * 还在发送队列中的请求由writeBatch跳过
+     * @param rpcFuture
+     */
+    void cancel(final RpcFuture rpcFuture) {
+        final long requestId = rpcFuture.getRequest().getRequestId();
         try {
-            ChannelFuture channelFuture = channel.writeAndFlush(request).sync();
-            if (!channelFuture.isSuccess()) {
-                log.error("Send request {} error", request.getRequestId());
+            channel.eventLoop().execute(new Runnable() {
+                @Override
+                public void run() {
+                    if (pendingRpcMap.remove(requestId) != null) {
+                        pendingCount.decrementAndGet();
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            log.debug("Event loop is shutdown, skip cancel request {}", requestId);
+        }
+    }
+
+    /**
+     * 发送队列非空且还没有提交写任务时，向EventLoop提交一次写任务
+     * 写任务执行之前到达的请求都会在同一批中写出
+     */
+    private void scheduleWriteBatch() {
+        if (sendQueue.isEmpty() || !writeScheduled.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            channel.eventLoop().execute(writeBatchTask);
+        } catch (RejectedExecutionException e) {
+            // EventLoop已经关闭，队列中的请求不会再被写出
+            writeScheduled.set(false);
+            RpcFuture rpcFuture;
+            while ((rpcFuture = sendQueue.poll()) != null) {
+                pendingCount.decrementAndGet();
+                rpcFuture.fail(new RpcConnectException("Event loop is shutdown", e, false));
             }
-        } catch (InterruptedException e) {
-            log.error("Send request exception: " + e.getMessage());
         }
+    }
 
-        return rpcFuture;
+    /**
+     * 在EventLoop线程中执行：从发送队列取出最多batchMaxMessages个请求，
+     * 登记到pendingRpcMap后逐个write，最后只flush一次，多个请求由一次系统调用写出
+     * 单向请求不登记，写出后即完成
+     * 队列中还有请求时再提交一次写任务，避免一个连接长时间占用EventLoop
+     */
+    private void writeBatch() {
+        writeScheduled.set(false);
+        int written = 0;
+        RpcFuture rpcFuture;
+        while (written < batchMaxMessages && (rpcFuture = sendQueue.poll()) != null) {
+            if (rpcFuture.isDone()) {
+                // 还没有写出就已经超时或者被撤销
+                pendingCount.decrementAndGet();
+                continue;
+            }
+            final long requestId = rpcFuture.getRequest().getRequestId();
+            final RpcFuture future = rpcFuture;
+            // 扣除在发送队列中等待的时间，服务端得到的是调用方剩余的等待时间
+            RpcRequest request = future.getRequest();
+            if (request.isOneway()) {
+                pendingCount.decrementAndGet();
+                channel.write(request).addListener(new ChannelFutureListener() {
+                    @Override
+                    public void operationComplete(ChannelFuture channelFuture) throws Exception {
+                        if (channelFuture.isSuccess()) {
+                            future.complete(null);
+                        } else {
+                            log.error("Send oneway request {} error: {}", requestId, channelFuture.cause().toString());
+                            future.fail(writeFailure("Send oneway request " + requestId + " to " + remotePeer + " error",
+                                    channelFuture.cause()));
+                        }
+                    }
+                });
+                ++written;
+                continue;
+            }
+            long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - future.getStartNanos());
+            request.setTimeout(Math.max(1, request.getTimeout() - elapsedMillis));
+            pendingRpcMap.put(requestId, future);
+            channel.write(request).addListener(new ChannelFutureListener() {
+                @Override
+                public void operationComplete(ChannelFuture channelFuture) throws Exception {
+                    if (!channelFuture.isSuccess()) {
+                        log.error("Send request {} error: {}", requestId, channelFuture.cause().toString());
+                        if (pendingRpcMap.remove(requestId) != null) {
+                            pendingCount.decrementAndGet();
+                        }
+                        Throwable cause = writeFailure("Send request " + requestId + " to " + remotePeer + " error",
+                                channelFuture.cause());
+                        // 编码失败与节点无关，不计入熔断
+                        CircuitBreaker circuitBreaker = RpcClientHandler.this.circuitBreaker;
+                        if (circuitBreaker != null && cause instanceof RpcConnectException) {
+                            circuitBreaker.onFailure(System.nanoTime() - future.getStartNanos());
+                        }
+                        future.fail(cause);
+                    }
+                }
+            });
+            ++written;
+        }
+        if (written > 0) {
+            channel.flush();
+        }
+        scheduleWriteBatch();
+    }
+
+    /**
+     * 写出失败的原因：请求无法编码（如参数无法序列化）时换一个节点也会失败，以RpcException直接结束调用；
+     * 其他原因（连接关闭、IO错误）按连接失败处理，请求没有发出，可以换一个节点重试
+     * @param message
+     * @param cause 写出失败的原因
+     * @return
+     */
+    private static RpcException writeFailure(String message, Throwable cause) {
+        if (cause instanceof EncoderException) {
+            return new RpcException(message + ", encode error: " + cause.getMessage(), cause);
+        }
+        return new RpcConnectException(message, cause, false);
+    }
+
+    /**
+     * 握手响应不是RpcResponse，在这里单独处理，其余消息交给channelRead0
+     * @param ctx
+     * @param msg
+     * @throws Exception
+     */
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+        if (msg instanceof RpcHandshake) {
+            Map<String, Integer> methodIds = ((RpcHandshake) msg).getMethodIds();
+            if (methodIds != null) {
+                this.methodDictionary = methodIds;
+                log.info("Receive {} method ids from {}", methodIds.size(), remotePeer);
+            }
+            return;
+        }
+        super.channelRead(ctx, msg);
     }
 
     @Override
     protected void channelRead0(ChannelHandlerContext channelHandlerContext, RpcResponse response) throws Exception {
-        String requestId = response.getRequestId();
+        long requestId = response.getRequestId();
         log.debug("Receive response: " + requestId);
-        RpcFuture rpcFuture = pendingRpcMap.get(requestId);
+        RpcFuture rpcFuture = pendingRpcMap.remove(requestId);
         if (rpcFuture != null) {
-            pendingRpcMap.remove(requestId);
+            pendingCount.decrementAndGet();
+            long latency = System.nanoTime() - rpcFuture.getStartNanos();
+            // 过载响应没有执行请求，返回得很快，不能计入响应时间，否则过载的节点反而显得更快、分到更多请求
+            PeakEwma peakEwma = this.peakEwma;
+            if (peakEwma != null && !response.isOverloaded()) {
+                peakEwma.observe(latency);
+            }
+            // 过载响应说明节点正常但正忙，不计入熔断器，否则健康的节点会因为短暂的过载而被摘除；
+            // 探测请求得到过载响应时，探测名额在超时后由熔断器回收
+            CircuitBreaker circuitBreaker = this.circuitBreaker;
+            if (circuitBreaker != null && !response.isOverloaded()) {
+                if (response.isError()) {
+                    circuitBreaker.onFailure(latency);
+                } else {
+                    circuitBreaker.onSuccess(latency);
+                }
+            }
             rpcFuture.done(response);
         } else {
-            log.warn("Can not get pending response for request id: " + requestId);
+            // 请求已经超时或者被撤销（如对冲请求中较慢的一个），丢弃迟到的响应
+            log.debug("Can not get pending response for request id: " + requestId);
         }
     }
 
+    /**
+     * 连接空闲时发送心跳，避免被服务端当作空闲连接关闭
+     * @param ctx
+     * @param evt
+     * @throws Exception
+     */
+    @Override
+    public void userEventTriggered(ChannelHandlerContext ctx, Object evt) throws Exception {
+        if (evt instanceof IdleStateEvent) {
+            ctx.writeAndFlush(Beat.BEAT_PING);
+            log.debug("Client send beat-ping to " + remotePeer);
+        } else {
+            super.userEventTriggered(ctx, evt);
+        }
+    }
+
+    public void setPeakEwma(PeakEwma peakEwma) {
+        this.peakEwma = peakEwma;
+    }
+
+    /**
+     * 客户端共用的时间轮，请求超时与对冲请求的延迟都由它调度，任务中不能有阻塞操作
+     * @return
+     */
+    public static Timer getTimer() {
+        return TIMEOUT_TIMER;
+    }
+
+    public RpcProtocol getRpcProtocol() {
+        return rpcProtocol;
+    }
+
+    public void setCircuitBreaker(CircuitBreaker circuitBreaker) {
+        this.circuitBreaker = circuitBreaker;
+    }
+
     public void setRpcProtocol(RpcProtocol rpcProtocol) {
         this.rpcProtocol = rpcProtocol;
+        Map<String, Byte> serializerIds = new HashMap<>();
+        Map<String, Byte> compressorIds = new HashMap<>();
+        if (rpcProtocol.getServiceInfoList() != null) {
+            for (RpcServiceInfo serviceInfo : rpcProtocol.getServiceInfoList()) {
+                String serviceKey = ServiceUtil.makeServiceKey(serviceInfo.getServiceName(), serviceInfo.getVersion());
+                Serializer serializer = SerializerRegistry.getInstance().getSerializer(serviceInfo.getSerializer());
+                if (serializer != null) {
+                    serializerIds.put(serviceKey, serializer.getId());
+                } else {
+                    // 本地没有服务端指定的序列化器时，该服务不会被路由到这个连接，调用以RpcException失败，见RoutingTable
+                    log.warn("Can not find serializer: {}, service {} is not routable to {}",
+                            serviceInfo.getSerializer(), serviceKey, remotePeer);
+                }
+                Compressor compressor = CompressorRegistry.getInstance().getCompressor(serviceInfo.getCompressor());
+                if (compressor != null) {
+                    compressorIds.put(serviceKey, compressor.getId());
+                }
+            }
+        }
+        this.serializerIds = serializerIds;
+        this.compressorIds = compressorIds;
+    }
+
+    /**
+     * 获取服务使用的序列化器ID
+     * @param serviceKey 接口名+版本号
+     * @return 服务没有指定序列化器时返回0，即使用默认序列化器
+     */
+    public byte getSerializerId(String serviceKey) {
+        Byte serializerId = serializerIds.get(serviceKey);
+        return serializerId != null ? serializerId : 0;
+    }
+
+    /**
+     * 获取服务使用的压缩器ID
+     * @param serviceKey 接口名+版本号
+     * @return 服务没有指定压缩器时返回0，即不压缩
+     */
+    public byte getCompressorId(String serviceKey) {
+        Byte compressorId = compressorIds.get(serviceKey);
+        return compressorId != null ? compressorId : 0;
+    }
+
+    /**
+     * 获取等待响应的请求数
+     * @return
+     */
+    public int getPendingCount() {
+        return pendingCount.get();
+    }
+
+    public boolean isActive() {
+        return channel != null && channel.isActive();
     }
 
     public void close() {
@@ -1,13 +1,11 @@
 package com.hynis.rpc.client.initializer;
 
 import com.hynis.rpc.client.handler.RpcClientHandler;
+import com.hynis.rpc.common.codec.ChunkedFrameWriter;
+import com.hynis.rpc.common.codec.ProtocolConstant;
 import com.hynis.rpc.common.codec.RpcMsgDecoder;
 import com.hynis.rpc.common.codec.RpcMsgEncoder;
 import com.hynis.rpc.common.config.Beat;
-import com.hynis.rpc.common.entity.RpcRequest;
-import com.hynis.rpc.common.entity.RpcResponse;
-import com.hynis.rpc.common.serializer.Serializer;
-import com.hynis.rpc.common.serializer.protostuff.ProtostuffSerializer;
 import io.netty.channel.ChannelInitializer;
 import io.netty.channel.ChannelPipeline;
 import io.netty.channel.socket.SocketChannel;
@@ -25,15 +23,17 @@ import java.util.concurrent.TimeUnit;
 public class RpcClientInitializer extends ChannelInitializer<SocketChannel> {
     @Override
     protected void initChannel(SocketChannel socketChannel) throws Exception {
-        Serializer serializer = ProtostuffSerializer.class.newInstance();
         ChannelPipeline cp = socketChannel.pipeline();
 
-        // 入站处理器
+        // 入站处理器：解码器需要放在RpcClientHandler之前，RpcClientHandler才能收到解码后的RpcResponse
         cp.addLast(new IdleStateHandler(0, 0, Beat.BEAT_INTERVAL, TimeUnit.SECONDS));
-        cp.addLast(new LengthFieldBasedFrameDecoder(65536, 0, 4, 0, 0));
-        cp.addLast(new RpcMsgEncoder(RpcRequest.class, serializer));
+        // 出站处理器：超过最大帧长度的请求拆分为分块帧写出，需要放在编码器之前
+        cp.addLast(new ChunkedFrameWriter());
+        cp.addLast(new LengthFieldBasedFrameDecoder(ProtocolConstant.MAX_FRAME_LENGTH,
+                ProtocolConstant.LENGTH_FIELD_OFFSET, ProtocolConstant.LENGTH_FIELD_LENGTH, 0, 0));
+        cp.addLast(new RpcMsgDecoder());
+        // 出站处理器：序列化器由每个请求指定（见RpcClientHandler.getSerializerId）
+        cp.addLast(new RpcMsgEncoder());
         cp.addLast(new RpcClientHandler());
-        // 出站处理器
-        cp.addLast(new RpcMsgDecoder(RpcResponse.class, serializer));
     }
 }
@@ -0,0 +1,68 @@
+package com.hynis.rpc.client.proxy;
+
+import com.hynis.rpc.common.annotation.RpcHedge;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author hynis
+ * @date 2026/10/18 21:25
+ *
+ * 一个方法的对冲策略，由方法上的RpcHedge生成
+ * 对冲延迟为固定值，或者该方法最近响应时间的百分位数；同一个服务的所有方法共用一个预算
+ */
+class HedgePolicy {
+    /**
+     * 不对冲
+     */
+    static final HedgePolicy NONE = new HedgePolicy();
+
+    /**
+     * 固定的对冲延迟，单位纳秒，使用百分位数时为-1
+     */
+    private final long delayNanos;
+    /**
+     * 使用百分位数时记录该方法的响应时间，否则为null
+     */
+    private final LatencyRecorder latencyRecorder;
+    private final RetryBudget budget;
+
+    private HedgePolicy() {
+        this.delayNanos = -1;
+        this.latencyRecorder = null;
+        this.budget = null;
+    }
+
+    HedgePolicy(RpcHedge hedge, RetryBudget budget) {
+        if (hedge.delay() > 0) {
+            this.delayNanos = TimeUnit.MILLISECONDS.toNanos(hedge.delay());
+            this.latencyRecorder = null;
+        } else {
+            this.delayNanos = -1;
+            this.latencyRecorder = new LatencyRecorder(hedge.percentile());
+        }
+        this.budget = budget;
+    }
+
+    /**
+     * 获取对冲延迟
+     * @return 单位纳秒，小于0表示暂时不对冲（百分位数的样本不足）
+     */
+    long getDelayNanos() {
+        return latencyRecorder != null ? latencyRecorder.getPercentileNanos() : delayNanos;
+    }
+
+    /**
+     * 记录一次成功调用的响应时间（从发出第一个请求到得到结果）
+     * @param latencyNanos
+     */
+    void record(long latencyNanos) {
+        if (latencyRecorder != null) {
+            latencyRecorder.record(latencyNanos);
+        }
+    }
+
+    RetryBudget getBudget() {
+        return budget;
+    }
+}
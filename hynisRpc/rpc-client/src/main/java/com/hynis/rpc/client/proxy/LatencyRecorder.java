@@ -0,0 +1,57 @@
+package com.hynis.rpc.client.proxy;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * @author hynis
+ * @date 2026/10/18 21:20
+ *
+ * 记录一个方法最近SAMPLES次调用的响应时间，并计算指定的百分位数
+ * 每记录RECOMPUTE_INTERVAL个样本重新排序计算一次，读取时直接返回缓存的结果
+ */
+class LatencyRecorder {
+    private static final int SAMPLES = 1024;
+    private static final int MIN_SAMPLES = 100;
+    private static final int RECOMPUTE_INTERVAL = 64;
+
+    private final double percentile;
+    private final AtomicLongArray samples = new AtomicLongArray(SAMPLES);
+    private final AtomicLong count = new AtomicLong(0);
+    private volatile long percentileNanos = -1;
+
+    /**
+     * @param percentile 百分位数，0~100
+     */
+    LatencyRecorder(double percentile) {
+        this.percentile = Math.max(0, Math.min(100, percentile));
+    }
+
+    void record(long latencyNanos) {
+        long n = count.getAndIncrement();
+        samples.set((int) (n % SAMPLES), latencyNanos);
+        ++n;
+        if (n >= MIN_SAMPLES && n % RECOMPUTE_INTERVAL == 0) {
+            recompute((int) Math.min(n, SAMPLES));
+        }
+    }
+
+    /**
+     * 获取最近响应时间的百分位数
+     * @return 单位纳秒，样本不足MIN_SAMPLES时返回-1
+     */
+    long getPercentileNanos() {
+        return percentileNanos;
+    }
+
+    private void recompute(int size) {
+        long[] sorted = new long[size];
+        for (int i = 0; i < size; ++i) {
+            sorted[i] = samples.get(i);
+        }
+        Arrays.sort(sorted);
+        int index = (int) Math.ceil(percentile / 100 * size) - 1;
+        percentileNanos = sorted[Math.max(0, Math.min(index, size - 1))];
+    }
+}
@@ -1,15 +1,29 @@
 package com.hynis.rpc.client.proxy;
 
+import com.hynis.rpc.client.config.ClientConfig;
 import com.hynis.rpc.client.connect.ConnectionManager;
 import com.hynis.rpc.client.handler.RpcClientHandler;
 import com.hynis.rpc.client.handler.RpcFuture;
+import com.hynis.rpc.common.annotation.RpcHedge;
+import com.hynis.rpc.common.annotation.RpcOneway;
+import com.hynis.rpc.common.annotation.RpcRetry;
+import com.hynis.rpc.common.annotation.RpcRouteKey;
+import com.hynis.rpc.common.context.RpcContext;
 import com.hynis.rpc.common.entity.RpcRequest;
+import com.hynis.rpc.common.exception.RpcException;
+import com.hynis.rpc.common.exception.RpcTimeoutException;
+import com.hynis.rpc.common.serializer.ClassAllowList;
 import com.hynis.rpc.common.util.ServiceUtil;
 import lombok.extern.slf4j.Slf4j;
 
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Method;
-import java.util.UUID;
+import java.lang.reflect.Modifier;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
 
 /**
  * @author hynis
@@ -20,11 +34,51 @@ public class ObjectProxy<T, P> implements InvocationHandler, RpcService<T, P, Se
 
     private Class<T> clazz;
     private String version;
-
+    /**
+     * 缓存每个方法的方法签名，避免每次调用都重新拼接
+     */
+    private final Map<Method, String> methodKeyCache = new ConcurrentHashMap<>();
+    /**
+     * 缓存每个方法作为路由key的参数下标（见RpcRouteKey），没有指定时为-1
+     */
+    private final Map<Method, Integer> routeKeyIndexCache = new ConcurrentHashMap<>();
+    /**
+     * 按方法名缓存路由key的参数下标，用于call(funcName, args)等只知道方法名的异步调用
+     */
+    private final Map<String, Integer> routeKeyIndexByNameCache = new ConcurrentHashMap<>();
+    /**
+     * 缓存每个方法是否为单向调用（见RpcOneway）
+     */
+    private final Map<Method, Boolean> onewayCache = new ConcurrentHashMap<>();
+    private final Map<String, Boolean> onewayByNameCache = new ConcurrentHashMap<>();
+    /**
+     * 缓存每个方法的对冲策略（见RpcHedge），没有标注时为HedgePolicy.NONE
+     */
+    private final Map<Method, HedgePolicy> hedgePolicyCache = new ConcurrentHashMap<>();
+    private final Map<String, HedgePolicy> hedgePolicyByNameCache = new ConcurrentHashMap<>();
+    /**
+     * 每个服务的对冲预算，key为接口名+版本号，同一个服务的所有代理共用
+     */
+    private static final ConcurrentMap<String, RetryBudget> HEDGE_BUDGETS = new ConcurrentHashMap<>();
+    /**
+     * 缓存每个方法的重试策略（见RpcRetry），没有标注时为RetryPolicy.NONE
+     */
+    private final Map<Method, RetryPolicy> retryPolicyCache = new ConcurrentHashMap<>();
+    private final Map<String, RetryPolicy> retryPolicyByNameCache = new ConcurrentHashMap<>();
+    /**
+     * 每个服务的重试预算，key为接口名+版本号，同一个服务的所有代理共用
+     */
+    private static final ConcurrentMap<String, RetryBudget> RETRY_BUDGETS = new ConcurrentHashMap<>();
 
     public ObjectProxy(Class<T> interfaceClass, String version) {
         this.clazz = interfaceClass;
         this.version = version;
+        // 接口方法声明的参数与返回值类型加入反序列化的白名单，响应中的返回值才能被还原
+        // 同时检查RpcRouteKey指定的参数，不能按值生成路由key的方法在创建代理时就失败
+        for (Method method : interfaceClass.getMethods()) {
+            ClassAllowList.getInstance().allowMethodTypes(method);
+            routeKeyIndexCache.put(method, routeKeyIndex(method));
+        }
     }
 
     /**
@@ -57,17 +111,9 @@ public class ObjectProxy<T, P> implements InvocationHandler, RpcService<T, P, Se
             }
         }
         // 2、代理其他方法
-        // 封装为 RpcRequest
-        RpcRequest request = createRequest(method.getDeclaringClass().getName(), method.getName(), args);
-
-//        RpcRequest request = new RpcRequest();
-//        request.setRequestId(UUID.randomUUID().toString());
-//        request.setClassName(method.getDeclaringClass().getName());
-//        request.setMethodName(method.getName());
-//        request.setParameterTypes(method.getParameterTypes());
-//        request.setParameters(args);
-//        request.setVersion(version);
-
+        if (args == null) {
+            args = new Object[0];
+        }
         // Debug模式
         if (log.isDebugEnabled()) {
             log.debug(method.getDeclaringClass().getName());
@@ -76,48 +122,378 @@ public class ObjectProxy<T, P> implements InvocationHandler, RpcService<T, P, Se
                 log.debug(method.getParameterTypes()[i].getName());
             }
             for (int i = 0; i < args.length; ++i) {
-                log.debug(args[i].toString());
+                log.debug(String.valueOf(args[i]));
             }
         }
 
-        String serviceKey = ServiceUtil.makeServiceKey(method.getDeclaringClass().getName(), version);
-        RpcClientHandler handler = ConnectionManager.getInstance().chooseHandler(serviceKey);
-        RpcFuture rpcFuture = handler.sendRequest(request);
-        return rpcFuture.get();
+        final String serviceKey = ServiceUtil.makeServiceKey(method.getDeclaringClass().getName(), version);
+        // 封装为 RpcRequest，握手后只需要携带方法ID
+        String methodKey = methodKeyCache.get(method);
+        if (methodKey == null) {
+            methodKey = ServiceUtil.makeMethodKey(serviceKey, method.getName(), method.getParameterTypes());
+            methodKeyCache.put(method, methodKey);
+        }
+        final String finalMethodKey = methodKey;
+        final String className = method.getDeclaringClass().getName();
+        final String methodName = method.getName();
+        final Object[] finalArgs = args;
+        boolean oneway = isOneway(method);
+        try {
+            RpcFuture rpcFuture = send(serviceKey, getRouteKey(method, args), oneway, getHedgePolicy(serviceKey, method),
+                    getRetryPolicy(serviceKey, method), new RpcInvocation.RequestFactory() {
+                        @Override
+                        public RpcRequest create(RpcClientHandler handler) {
+                            return buildRequest(handler, serviceKey, finalMethodKey, className, methodName, finalArgs);
+                        }
+                    });
+            // 单向调用放入发送队列后立即返回
+            if (oneway) {
+                return null;
+            }
+            return rpcFuture.get();
+        } catch (ExecutionException e) {
+            // 同步调用直接抛出失败原因（RpcRemoteException、RpcTimeoutException、RpcConnectException等）
+            throw toDeclaredException(method, e.getCause());
+        } catch (Exception e) {
+            throw toDeclaredException(method, e);
+        }
+    }
+
+    /**
+     * 代理方法只能抛出RuntimeException、Error与方法声明的受检异常，
+     * 其他的受检异常（如等待响应时被中断）包装为RpcException，否则调用方得到的是UndeclaredThrowableException
+     * @param method 代理的方法
+     * @param cause 调用失败的原因
+     * @return
+     */
+    private static Throwable toDeclaredException(Method method, Throwable cause) {
+        if (cause instanceof RuntimeException || cause instanceof Error) {
+            return cause;
+        }
+        for (Class<?> exceptionType : method.getExceptionTypes()) {
+            if (exceptionType.isInstance(cause)) {
+                return cause;
+            }
+        }
+        if (cause instanceof InterruptedException) {
+            Thread.currentThread().interrupt();
+        }
+        return new RpcException("Call " + method.getName() + " failed: " + cause, cause);
     }
 
     @Override
     public RpcFuture call(String funcName, Object... args) throws Exception {
-        String serviceKey = ServiceUtil.makeServiceKey(this.clazz.getName(), version);
-        RpcClientHandler handler = ConnectionManager.getInstance().chooseHandler(serviceKey);
-        RpcRequest request = createRequest(this.clazz.getName(), funcName, args);
-        RpcFuture rpcFuture = handler.sendRequest(request);
-        return rpcFuture;
+        return callByName(funcName, args);
     }
 
     @Override
     public RpcFuture call(SerializableFunction<T> tSerializableFunction, Object... args) throws Exception {
-        String serviceKey = ServiceUtil.makeServiceKey(this.clazz.getName(), version);
-        RpcClientHandler handler = ConnectionManager.getInstance().chooseHandler(serviceKey);
-        RpcRequest request = createRequest(this.clazz.getName(), tSerializableFunction.getName(), args);
-        RpcFuture rpcFuture = handler.sendRequest(request);
-        return rpcFuture;
+        return callByName(tSerializableFunction.getName(), args);
+    }
+
+    private RpcFuture callByName(final String funcName, final Object[] args) throws Exception {
+        final String serviceKey = ServiceUtil.makeServiceKey(this.clazz.getName(), version);
+        return send(serviceKey, getRouteKey(funcName, args), isOneway(funcName), getHedgePolicy(serviceKey, funcName),
+                getRetryPolicy(serviceKey, funcName), new RpcInvocation.RequestFactory() {
+                    @Override
+                    public RpcRequest create(RpcClientHandler handler) {
+                        return createRequest(handler, serviceKey, clazz.getName(), funcName, args);
+                    }
+                });
     }
 
     /**
-     * 创建RpcRequest对象
+     * 选择连接并发送请求，方法标注了RpcHedge或者RpcRetry时由RpcInvocation负责对冲与重试
+     * 在服务方法中发起的调用（当前线程的RpcContext带有截止时间），超时时间不超过剩余时间，已经过期时直接失败
+     * @param serviceKey
+     * @param routeKey
+     * @param oneway 单向调用，不等待响应，不对冲、不重试
+     * @param hedgePolicy
+     * @param retryPolicy
+     * @param requestFactory 按选中的连接创建请求
+     * @return
+     * @throws Exception
+     */
+    private RpcFuture send(String serviceKey, Object routeKey, boolean oneway, HedgePolicy hedgePolicy, RetryPolicy retryPolicy,
+                           RpcInvocation.RequestFactory requestFactory) throws Exception {
+        long timeoutMillis = ClientConfig.REQUEST_TIMEOUT;
+        RpcContext context = RpcContext.getContext();
+        if (context.hasDeadline()) {
+            long remainingMillis = context.getRemainingMillis();
+            if (remainingMillis <= 0) {
+                throw new RpcTimeoutException(0, 0, "Deadline exceeded before calling service " + serviceKey);
+            }
+            timeoutMillis = Math.min(timeoutMillis, remainingMillis);
+        }
+        RpcClientHandler handler = ConnectionManager.getInstance().chooseHandler(serviceKey, routeKey);
+        if (oneway) {
+            return handler.sendOneway(requestFactory.create(handler));
+        }
+        if (hedgePolicy == HedgePolicy.NONE && retryPolicy == RetryPolicy.NONE) {
+            return handler.sendRequest(requestFactory.create(handler), timeoutMillis);
+        }
+        return new RpcInvocation(serviceKey, routeKey, timeoutMillis, hedgePolicy, retryPolicy, requestFactory)
+                .start(handler);
+    }
+
+    private boolean isOneway(Method method) {
+        Boolean oneway = onewayCache.get(method);
+        if (oneway == null) {
+            oneway = checkOneway(method);
+            onewayCache.put(method, oneway);
+        }
+        return oneway;
+    }
+
+    /**
+     * 按方法名在接口中查找带有RpcOneway的方法，重载方法中任意一个带有注解即可
+     */
+    private boolean isOneway(String methodName) {
+        Boolean oneway = onewayByNameCache.get(methodName);
+        if (oneway == null) {
+            oneway = false;
+            for (Method method : clazz.getMethods()) {
+                if (method.getName().equals(methodName) && checkOneway(method)) {
+                    oneway = true;
+                    break;
+                }
+            }
+            onewayByNameCache.put(methodName, oneway);
+        }
+        return oneway;
+    }
+
+    private static boolean checkOneway(Method method) {
+        if (!method.isAnnotationPresent(RpcOneway.class)) {
+            return false;
+        }
+        if (method.getReturnType() != void.class) {
+            throw new IllegalArgumentException("Oneway method must return void: " + method);
+        }
+        return true;
+    }
+
+    private HedgePolicy getHedgePolicy(String serviceKey, Method method) {
+        HedgePolicy hedgePolicy = hedgePolicyCache.get(method);
+        if (hedgePolicy == null) {
+            hedgePolicy = createHedgePolicy(serviceKey, method.getAnnotation(RpcHedge.class));
+            hedgePolicyCache.put(method, hedgePolicy);
+        }
+        return hedgePolicy;
+    }
+
+    /**
+     * 按方法名在接口中查找带有RpcHedge的方法，重载方法中任意一个带有注解即可
+     */
+    private HedgePolicy getHedgePolicy(String serviceKey, String methodName) {
+        HedgePolicy hedgePolicy = hedgePolicyByNameCache.get(methodName);
+        if (hedgePolicy == null) {
+            RpcHedge hedge = null;
+            for (Method method : clazz.getMethods()) {
+                if (method.getName().equals(methodName) && method.isAnnotationPresent(RpcHedge.class)) {
+                    hedge = method.getAnnotation(RpcHedge.class);
+                    break;
+                }
+            }
+            hedgePolicy = createHedgePolicy(serviceKey, hedge);
+            hedgePolicyByNameCache.put(methodName, hedgePolicy);
+        }
+        return hedgePolicy;
+    }
+
+    private static HedgePolicy createHedgePolicy(String serviceKey, RpcHedge hedge) {
+        if (hedge == null) {
+            return HedgePolicy.NONE;
+        }
+        return new HedgePolicy(hedge, getBudget(HEDGE_BUDGETS, serviceKey,
+                ClientConfig.HEDGE_BUDGET_RATIO, ClientConfig.HEDGE_BUDGET_MAX_TOKENS));
+    }
+
+    private RetryPolicy getRetryPolicy(String serviceKey, Method method) {
+        RetryPolicy retryPolicy = retryPolicyCache.get(method);
+        if (retryPolicy == null) {
+            retryPolicy = createRetryPolicy(serviceKey, method.getAnnotation(RpcRetry.class));
+            retryPolicyCache.put(method, retryPolicy);
+        }
+        return retryPolicy;
+    }
+
+    /**
+     * 按方法名在接口中查找带有RpcRetry的方法，重载方法中任意一个带有注解即可
+     */
+    private RetryPolicy getRetryPolicy(String serviceKey, String methodName) {
+        RetryPolicy retryPolicy = retryPolicyByNameCache.get(methodName);
+        if (retryPolicy == null) {
+            RpcRetry retry = null;
+            for (Method method : clazz.getMethods()) {
+                if (method.getName().equals(methodName) && method.isAnnotationPresent(RpcRetry.class)) {
+                    retry = method.getAnnotation(RpcRetry.class);
+                    break;
+                }
+            }
+            retryPolicy = createRetryPolicy(serviceKey, retry);
+            retryPolicyByNameCache.put(methodName, retryPolicy);
+        }
+        return retryPolicy;
+    }
+
+    private static RetryPolicy createRetryPolicy(String serviceKey, RpcRetry retry) {
+        if (retry == null || retry.maxAttempts() <= 1) {
+            return RetryPolicy.NONE;
+        }
+        return new RetryPolicy(retry, getBudget(RETRY_BUDGETS, serviceKey,
+                ClientConfig.RETRY_BUDGET_RATIO, ClientConfig.RETRY_BUDGET_MAX_TOKENS));
+    }
+
+    private static RetryBudget getBudget(ConcurrentMap<String, RetryBudget> budgets, String serviceKey,
+                                         double ratio, int maxTokens) {
+        RetryBudget budget = budgets.get(serviceKey);
+        if (budget == null) {
+            budget = new RetryBudget(ratio, maxTokens);
+            RetryBudget existing = budgets.putIfAbsent(serviceKey, budget);
+            if (existing != null) {
+                budget = existing;
+            }
+        }
+        return budget;
+    }
+
+    /**
+     * 取出方法上RpcRouteKey指定的参数作为路由key，没有指定时返回null
+     * @param method
+     * @param args
+     * @return
+     */
+    private Object getRouteKey(Method method, Object[] args) {
+        Integer index = routeKeyIndexCache.get(method);
+        if (index == null) {
+            index = routeKeyIndex(method);
+            routeKeyIndexCache.put(method, index);
+        }
+        return index >= 0 && index < args.length ? toRouteKey(args[index]) : null;
+    }
+
+    /**
+     * 按方法名在接口中查找带有RpcRouteKey的方法，重载方法中任意一个带有注解即可
+     * @param methodName
+     * @param args
+     * @return
+     */
+    private Object getRouteKey(String methodName, Object[] args) {
+        Integer index = routeKeyIndexByNameCache.get(methodName);
+        if (index == null) {
+            index = -1;
+            for (Method method : clazz.getMethods()) {
+                if (method.getName().equals(methodName) && routeKeyIndex(method) >= 0) {
+                    index = routeKeyIndex(method);
+                    break;
+                }
+            }
+            routeKeyIndexByNameCache.put(methodName, index);
+        }
+        return index >= 0 && index < args.length ? toRouteKey(args[index]) : null;
+    }
+
+    private static int routeKeyIndex(Method method) {
+        RpcRouteKey routeKey = method.getAnnotation(RpcRouteKey.class);
+        if (routeKey == null) {
+            return -1;
+        }
+        if (routeKey.value() < 0 || routeKey.value() >= method.getParameterTypes().length) {
+            throw new IllegalArgumentException("Invalid route key index " + routeKey.value() + " of method " + method);
+        }
+        // 接口、抽象类与Object的实际类型在调用时才知道，由toRouteKey检查
+        Class<?> type = method.getParameterTypes()[routeKey.value()];
+        if (!type.isArray() && type != Object.class && !Modifier.isAbstract(type.getModifiers())
+                && !VALUE_BASED_TO_STRING.get(type)) {
+            throw new IllegalArgumentException("Route key type " + type.getName() + " of method " + method
+                    + " must override toString()");
+        }
+        return routeKey.value();
+    }
+
+    /**
+     * 一致性哈希按路由key的toString()计算哈希：数组按元素内容生成，
+     * 其他类型必须重写toString()，否则按对象地址生成，同一个值的请求会被分散到不同的节点
+     * @param value 作为路由key的参数
+     * @return
+     */
+    private static Object toRouteKey(Object value) {
+        if (value == null) {
+            return null;
+        }
+        if (value.getClass().isArray()) {
+            String elements = Arrays.deepToString(new Object[]{value});
+            return elements.substring(1, elements.length() - 1);
+        }
+        if (!VALUE_BASED_TO_STRING.get(value.getClass())) {
+            throw new IllegalArgumentException("Route key type " + value.getClass().getName() + " must override toString()");
+        }
+        return value;
+    }
+
+    /**
+     * 类是否重写了Object.toString()
+     */
+    private static final ClassValue<Boolean> VALUE_BASED_TO_STRING = new ClassValue<Boolean>() {
+        @Override
+        protected Boolean computeValue(Class<?> type) {
+            if (type.isPrimitive()) {
+                return true;
+            }
+            try {
+                return type.getMethod("toString").getDeclaringClass() != Object.class;
+            } catch (NoSuchMethodException e) {
+                return false;
+            }
+        }
+    };
+
+    /**
+     * 按实参的运行时类型创建RpcRequest对象
+     * @param handler 发送请求的连接
+     * @param serviceKey
      * @param className
      * @param methodName
      * @param args
      * @return
      */
+    private RpcRequest createRequest(RpcClientHandler handler, String serviceKey, String className, String methodName, Object[] args) {
+        Class[] parameterTypes = new Class[args.length];
+        // Get the right class type
+        for (int i = 0; i < args.length; i++) {
+            parameterTypes[i] = getClassType(args[i]);
+        }
+        String methodKey = ServiceUtil.makeMethodKey(serviceKey, methodName, parameterTypes);
+        return buildRequest(handler, serviceKey, methodKey, className, methodName, args);
+    }
 
-    private RpcRequest createRequest(String className, String methodName, Object[] args) {
+    /**
+     * 创建RpcRequest对象
+     * 连接已完成握手并且服务端有该方法时只携带方法ID与参数，否则携带完整的类名、方法名与参数类型
+     * 消息体使用服务端为该服务指定的序列化器与压缩器
+     * @param handler 发送请求的连接
+     * @param serviceKey
+     * @param methodKey 方法签名
+     * @param className
+     * @param methodName
+     * @param args
+     * @return
+     */
+    private RpcRequest buildRequest(RpcClientHandler handler, String serviceKey, String methodKey,
+                                    String className, String methodName, Object[] args) {
+        // 请求ID在发送时由连接上的计数器生成
         RpcRequest request = new RpcRequest();
-        request.setRequestId(UUID.randomUUID().toString());
+        request.setSerializerId(handler.getSerializerId(serviceKey));
+        request.setCompressorId(handler.getCompressorId(serviceKey));
+        request.setParameters(args);
+        int methodId = handler.getMethodId(methodKey);
+        if (methodId != 0) {
+            request.setMethodId(methodId);
+            return request;
+        }
         request.setClassName(className);
         request.setMethodName(methodName);
-        request.setParameters(args);
         request.setVersion(version);
         Class[] parameterTypes = new Class[args.length];
         // Get the right class type
@@ -133,7 +509,7 @@ public class ObjectProxy<T, P> implements InvocationHandler, RpcService<T, P, Se
                 log.debug(parameterTypes[i].getName());
             }
             for (int i = 0; i < args.length; ++i) {
-                log.debug(args[i].toString());
+                log.debug(String.valueOf(args[i]));
             }
         }
         return request;
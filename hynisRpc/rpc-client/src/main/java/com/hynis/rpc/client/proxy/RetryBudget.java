@@ -0,0 +1,59 @@
+package com.hynis.rpc.client.proxy;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * @author hynis
+ * @date 2026/10/18 21:15
+ *
+ * 额外请求（对冲、重试）的令牌桶预算：每个请求存入ratio个令牌，每个额外请求取出一个令牌，令牌最多maxTokens个
+ * 额外请求数因此不超过请求数的ratio倍（加上桶中预存的令牌），服务端变慢或出错时不会因为额外请求而雪崩
+ * 令牌以千分之一为单位存放在AtomicLong中，不加锁
+ */
+class RetryBudget {
+    private static final long SCALE = 1000;
+
+    private final long depositTokens;
+    private final long maxTokens;
+    private final AtomicLong tokens;
+
+    /**
+     * @param ratio 每个请求存入的令牌数，即额外请求占请求的比例
+     * @param maxTokens 令牌桶容量，初始时桶是满的
+     */
+    RetryBudget(double ratio, int maxTokens) {
+        this.depositTokens = (long) (ratio * SCALE);
+        this.maxTokens = maxTokens * SCALE;
+        this.tokens = new AtomicLong(this.maxTokens);
+    }
+
+    /**
+     * 发出一个请求时存入令牌
+     */
+    void deposit() {
+        long current;
+        long next;
+        do {
+            current = tokens.get();
+            if (current >= maxTokens) {
+                return;
+            }
+            next = Math.min(maxTokens, current + depositTokens);
+        } while (!tokens.compareAndSet(current, next));
+    }
+
+    /**
+     * 尝试取出一个令牌
+     * @return 没有足够的令牌时返回false，此时不应该发送额外请求
+     */
+    boolean tryWithdraw() {
+        long current;
+        do {
+            current = tokens.get();
+            if (current < SCALE) {
+                return false;
+            }
+        } while (!tokens.compareAndSet(current, current - SCALE));
+        return true;
+    }
+}
@@ -0,0 +1,101 @@
+package com.hynis.rpc.client.proxy;
+
+import com.hynis.rpc.common.annotation.RpcRetry;
+import com.hynis.rpc.common.exception.RpcConnectException;
+import com.hynis.rpc.common.exception.RpcOverloadedException;
+import com.hynis.rpc.common.exception.RpcRemoteException;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author hynis
+ * @date 2026/10/18 22:00
+ *
+ * 一个方法的重试策略，由方法上的RpcRetry生成；同一个服务的所有方法共用一个预算
+ */
+class RetryPolicy {
+    /**
+     * 不重试
+     */
+    static final RetryPolicy NONE = new RetryPolicy();
+
+    private final int maxAttempts;
+    private final long backoffNanos;
+    private final long maxBackoffNanos;
+    private final boolean idempotent;
+    private final Class<? extends Throwable>[] retryOn;
+    private final String[] retryOnErrors;
+    private final RetryBudget budget;
+
+    private RetryPolicy() {
+        this.maxAttempts = 1;
+        this.backoffNanos = 0;
+        this.maxBackoffNanos = 0;
+        this.idempotent = false;
+        this.retryOn = null;
+        this.retryOnErrors = null;
+        this.budget = null;
+    }
+
+    RetryPolicy(RpcRetry retry, RetryBudget budget) {
+        this.maxAttempts = Math.max(1, retry.maxAttempts());
+        this.backoffNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, retry.backoff()));
+        this.maxBackoffNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, retry.maxBackoff()));
+        this.idempotent = retry.idempotent();
+        this.retryOn = retry.retryOn();
+        this.retryOnErrors = retry.retryOnErrors();
+        this.budget = budget;
+    }
+
+    int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    RetryBudget getBudget() {
+        return budget;
+    }
+
+    /**
+     * 失败原因是否可以重试
+     * @param cause
+     * @return
+     */
+    boolean isRetryable(Throwable cause) {
+        // 服务端过载拒绝的请求没有被执行，总是可以重试
+        if (cause instanceof RpcOverloadedException) {
+            return true;
+        }
+        if (cause instanceof RpcConnectException) {
+            if (!((RpcConnectException) cause).isRequestSent() || idempotent) {
+                return true;
+            }
+        }
+        for (Class<? extends Throwable> type : retryOn) {
+            if (type.isInstance(cause)) {
+                return true;
+            }
+        }
+        if (cause instanceof RpcRemoteException) {
+            String remoteError = ((RpcRemoteException) cause).getRemoteError();
+            for (String error : retryOnErrors) {
+                if (remoteError != null && remoteError.startsWith(error)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 第retry次重试之前的退避时间：在0到min(maxBackoff, backoff * 2^(retry-1))之间随机选取（full jitter），
+     * 避免大量客户端在同一时刻重试
+     * @param retry 第几次重试，从1开始
+     * @return 单位纳秒
+     */
+    long backoffNanos(int retry) {
+        int shift = Math.min(retry - 1, 30);
+        long bound = backoffNanos > (maxBackoffNanos >> shift) ? maxBackoffNanos : backoffNanos << shift;
+        return bound > 0 ? ThreadLocalRandom.current().nextLong(bound + 1) : 0;
+    }
+}
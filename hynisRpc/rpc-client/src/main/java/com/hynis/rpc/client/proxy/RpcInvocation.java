@@ -0,0 +1,260 @@
+package com.hynis.rpc.client.proxy;
+
+import com.hynis.rpc.client.connect.ConnectionManager;
+import com.hynis.rpc.client.handler.RpcClientHandler;
+import com.hynis.rpc.client.handler.RpcFuture;
+import com.hynis.rpc.common.entity.RpcRequest;
+import com.hynis.rpc.common.protocol.RpcProtocol;
+import io.netty.util.Timeout;
+import io.netty.util.TimerTask;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+
+/**
+ * @author hynis
+ * @date 2026/10/18 21:30
+ *
+ * 一次可能向多个服务器节点发送请求的调用（对冲请求、自动重试）
+ * 1、先向负载均衡选出的节点发送请求，同时按对冲延迟登记定时任务
+ * 2、对冲：到期时第一个请求还没有结果并且预算允许，向另一个节点再发送一次，取先成功的结果，其余请求被撤销
+ * 3、重试：已发出的请求都失败时，如果失败原因可以重试、还有剩余次数并且预算允许，随机退避后换一个没有发送过的节点重试
+ * 4、不再重试时，以最后一个失败原因结束
+ * 5、对冲与重试的请求只使用调用截止时间前剩余的时间，超过截止时间后不再发出新的请求
+ * 返回给调用方的RpcFuture被撤销时，同样撤销所有已发出的请求
+ */
+@Slf4j
+class RpcInvocation {
+
+    /**
+     * 每个节点的方法ID、序列化器可能不同，请求按选中的连接分别创建
+     */
+    interface RequestFactory {
+        RpcRequest create(RpcClientHandler handler);
+    }
+
+    private final String serviceKey;
+    private final Object routeKey;
+    private final HedgePolicy hedgePolicy;
+    private final RetryPolicy retryPolicy;
+    private final RequestFactory requestFactory;
+    private final long startNanos = System.nanoTime();
+    /**
+     * 整个调用的截止时间，System.nanoTime，对冲与重试的请求只使用剩余的时间
+     */
+    private final long deadlineNanos;
+
+    /**
+     * 已发出的请求与其发往的节点，以下字段都在this上加锁访问
+     */
+    private final List<RpcFuture> attempts = new ArrayList<>(2);
+    private final List<RpcProtocol> triedNodes = new ArrayList<>(2);
+    private int inFlight;
+    /**
+     * 已经重试的次数
+     */
+    private int retries;
+    private Timeout hedgeTimeout;
+
+    private RpcFuture result;
+
+    RpcInvocation(String serviceKey, Object routeKey, long timeoutMillis, HedgePolicy hedgePolicy,
+                  RetryPolicy retryPolicy, RequestFactory requestFactory) {
+        this.serviceKey = serviceKey;
+        this.routeKey = routeKey;
+        this.deadlineNanos = startNanos + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        this.hedgePolicy = hedgePolicy;
+        this.retryPolicy = retryPolicy;
+        this.requestFactory = requestFactory;
+    }
+
+    /**
+     * 向选中的连接发送第一个请求
+     * @param handler
+     * @return 调用的结果
+     */
+    RpcFuture start(RpcClientHandler handler) {
+        RpcRequest request = requestFactory.create(handler);
+        result = new RpcFuture(request);
+        result.whenComplete(new BiConsumer<Object, Throwable>() {
+            @Override
+            public void accept(Object value, Throwable throwable) {
+                finish(throwable == null);
+            }
+        });
+        if (hedgePolicy != HedgePolicy.NONE) {
+            hedgePolicy.getBudget().deposit();
+        }
+        if (retryPolicy != RetryPolicy.NONE) {
+            retryPolicy.getBudget().deposit();
+        }
+        synchronized (this) {
+            send(handler, request, Math.max(1, remainingMillis()));
+        }
+        scheduleHedge();
+        return result;
+    }
+
+    private void send(RpcClientHandler handler, RpcRequest request, long timeoutMillis) {
+        triedNodes.add(handler.getRpcProtocol());
+        final RpcFuture attempt = handler.sendRequest(request, timeoutMillis);
+        attempts.add(attempt);
+        ++inFlight;
+        attempt.whenComplete(new BiConsumer<Object, Throwable>() {
+            @Override
+            public void accept(Object value, Throwable throwable) {
+                onAttemptComplete(attempt, value, throwable);
+            }
+        });
+    }
+
+    private void onAttemptComplete(RpcFuture attempt, Object value, Throwable throwable) {
+        if (throwable == null) {
+            result.complete(value);
+            return;
+        }
+        if (attempt.isCancelled()) {
+            return;
+        }
+        long backoffNanos = -1;
+        synchronized (this) {
+            // 还有请求在等待结果时忽略这次失败
+            if (--inFlight > 0) {
+                return;
+            }
+            if (!result.isDone() && retries + 1 < retryPolicy.getMaxAttempts() && retryPolicy.isRetryable(throwable)
+                    && remainingMillis() > 0 && retryPolicy.getBudget().tryWithdraw()) {
+                backoffNanos = retryPolicy.backoffNanos(++retries);
+            }
+        }
+        if (backoffNanos < 0) {
+            result.completeExceptionally(throwable);
+            return;
+        }
+        scheduleRetry(backoffNanos, throwable);
+    }
+
+    private void scheduleRetry(long backoffNanos, final Throwable lastCause) {
+        log.debug("Retry service {} after {} us, cause: {}", serviceKey, backoffNanos / 1000, lastCause.toString());
+        RpcClientHandler.getTimer().newTimeout(new TimerTask() {
+            @Override
+            public void run(Timeout timeout) throws Exception {
+                retry(lastCause);
+            }
+        }, backoffNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * 重试：在时间轮线程中执行，不再选择已经发送过的节点；没有其他节点或者已经超过截止时间时以上一次的失败原因结束
+     * 时间轮线程同时负责所有请求的超时，选择连接时不能等待可用的服务，没有可用的节点时这次调用直接失败
+     * @param lastCause
+     */
+    private void retry(Throwable lastCause) {
+        if (result.isDone()) {
+            return;
+        }
+        if (remainingMillis() <= 0) {
+            result.completeExceptionally(lastCause);
+            return;
+        }
+        RpcClientHandler handler;
+        try {
+            handler = ConnectionManager.getInstance().chooseHandlerNoWait(serviceKey, routeKey, snapshotTriedNodes());
+        } catch (Exception e) {
+            log.debug("Can not retry service {}: {}", serviceKey, e.getMessage());
+            result.completeExceptionally(lastCause);
+            return;
+        }
+        RpcRequest request = requestFactory.create(handler);
+        synchronized (this) {
+            if (result.isDone()) {
+                return;
+            }
+            send(handler, request, Math.max(1, remainingMillis()));
+        }
+    }
+
+    private void scheduleHedge() {
+        long delayNanos = hedgePolicy.getDelayNanos();
+        if (delayNanos < 0) {
+            return;
+        }
+        Timeout timeout = RpcClientHandler.getTimer().newTimeout(new TimerTask() {
+            @Override
+            public void run(Timeout timeout) throws Exception {
+                hedge();
+            }
+        }, delayNanos, TimeUnit.NANOSECONDS);
+        synchronized (this) {
+            hedgeTimeout = timeout;
+        }
+        if (result.isDone()) {
+            timeout.cancel();
+        }
+    }
+
+    /**
+     * 对冲：在时间轮线程中执行，选择一个还没有发送过的节点再发送一次
+     * 正在等待重试（没有请求在等待结果）或者剩余时间不足时不对冲
+     * 时间轮线程同时负责所有请求的超时，选择连接时不能等待可用的服务，没有可用的节点时直接放弃对冲
+     */
+    private void hedge() {
+        synchronized (this) {
+            if (result.isDone() || inFlight == 0 || remainingMillis() <= 0) {
+                return;
+            }
+        }
+        // 先检查预算，预算不足时不参与路由，不影响负载均衡的状态（如轮询计数）
+        if (!hedgePolicy.getBudget().tryWithdraw()) {
+            log.debug("Hedge budget of service {} is exhausted", serviceKey);
+            return;
+        }
+        RpcClientHandler handler;
+        try {
+            handler = ConnectionManager.getInstance().chooseHandlerNoWait(serviceKey, routeKey, snapshotTriedNodes());
+        } catch (Exception e) {
+            log.debug("Skip hedged request of service {}: {}", serviceKey, e.getMessage());
+            return;
+        }
+        RpcRequest request = requestFactory.create(handler);
+        synchronized (this) {
+            if (result.isDone() || inFlight == 0) {
+                return;
+            }
+            send(handler, request, Math.max(1, remainingMillis()));
+        }
+    }
+
+    private long remainingMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(deadlineNanos - System.nanoTime());
+    }
+
+    private synchronized List<RpcProtocol> snapshotTriedNodes() {
+        return new ArrayList<>(triedNodes);
+    }
+
+    /**
+     * 调用结束：撤销还没有结果的请求与对冲任务，成功时记录响应时间
+     * @param success
+     */
+    private void finish(boolean success) {
+        if (success) {
+            hedgePolicy.record(System.nanoTime() - startNanos);
+        }
+        List<RpcFuture> outstanding;
+        synchronized (this) {
+            if (hedgeTimeout != null) {
+                hedgeTimeout.cancel();
+            }
+            outstanding = new ArrayList<>(attempts);
+        }
+        for (RpcFuture attempt : outstanding) {
+            if (!attempt.isDone()) {
+                attempt.cancel(false);
+            }
+        }
+    }
+}
@@ -0,0 +1,265 @@
+package com.hynis.rpc.client.route;
+
+import com.hynis.rpc.client.config.ClientConfig;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author hynis
+ * @date 2026/10/18 20:40
+ *
+ * 服务器节点的熔断器（异常节点摘除），一个节点的所有连接共用一个实例
+ * 1、关闭（CLOSED）：正常路由，按时间分桶的滑动窗口统计请求数、失败数与慢调用数，
+ *    连续失败次数、窗口内的失败率或慢调用率超过阈值时打开熔断器
+ * 2、打开（OPEN）：节点从路由表中摘除，摘除时长从BREAKER_BASE_EJECTION_TIME开始，连续摘除时每次翻倍，不超过BREAKER_MAX_EJECTION_TIME
+ * 3、半开（HALF_OPEN）：摘除时间到后节点回到路由表，但只放行BREAKER_HALF_OPEN_PROBES个探测请求，
+ *    全部成功则关闭熔断器，任意一个失败则再次打开
+ * 状态变化时回调stateListener，由ConnectionManager重新生成路由表；同时摘除的节点比例由RoutingTable限制
+ * 统计与状态转换都很短，直接加锁；路由时读取的状态为volatile，关闭状态下不加锁
+ */
+@Slf4j
+public class CircuitBreaker {
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private static final int BUCKETS = 10;
+    /**
+     * 空桶的时间片编号，System.nanoTime可能为负数，不能用0表示
+     */
+    private static final long EMPTY_EPOCH = Long.MIN_VALUE;
+
+    private final String name;
+    private final Runnable stateListener;
+    /**
+     * 用来在摘除时间到后把熔断器转为半开状态
+     */
+    private final ScheduledExecutorService scheduler;
+    private final long bucketNanos = Math.max(1, TimeUnit.MILLISECONDS.toNanos(ClientConfig.BREAKER_WINDOW) / BUCKETS);
+    private final long slowCallNanos = TimeUnit.MILLISECONDS.toNanos(ClientConfig.BREAKER_SLOW_CALL_THRESHOLD);
+
+    /**
+     * 滑动窗口：第i个桶统计的时间片编号（System.nanoTime / bucketNanos）与该时间片内的请求数、失败数、慢调用数
+     */
+    private final long[] bucketEpochs = new long[BUCKETS];
+    private final int[] totals = new int[BUCKETS];
+    private final int[] failures = new int[BUCKETS];
+    private final int[] slowCalls = new int[BUCKETS];
+    private int consecutiveFailures;
+
+    private volatile State state = State.CLOSED;
+    /**
+     * 连续摘除的次数，决定下一次摘除的时长
+     */
+    private int ejections;
+    /**
+     * 上一次恢复（关闭熔断器）的时间
+     */
+    private long lastClosedNanos = System.nanoTime();
+    /**
+     * 半开状态下已放行的探测请求数与其中成功的数量
+     */
+    private int probes;
+    private int probeSuccesses;
+    private long lastProbeNanos;
+
+    public CircuitBreaker(String name, Runnable stateListener, ScheduledExecutorService scheduler) {
+        this.name = name;
+        this.stateListener = stateListener;
+        this.scheduler = scheduler;
+        resetWindow();
+    }
+
+    /**
+     * 节点是否被摘除
+     * @return
+     */
+    public boolean isOpen() {
+        return state == State.OPEN;
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    /**
+     * 路由选中该节点后调用：关闭状态下总是放行，半开状态下只放行有限的探测请求
+     * 半开状态下探测请求被撤销时不会有结果，超过请求超时时间还没有结论则重新放行探测请求
+     * @return false表示应当改选其他节点
+     */
+    public boolean allowRequest() {
+        if (state != State.HALF_OPEN) {
+            return true;
+        }
+        synchronized (this) {
+            if (state != State.HALF_OPEN) {
+                return true;
+            }
+            long now = System.nanoTime();
+            if (probes >= ClientConfig.BREAKER_HALF_OPEN_PROBES
+                    && now - lastProbeNanos > TimeUnit.MILLISECONDS.toNanos(ClientConfig.REQUEST_TIMEOUT)) {
+                probes = probeSuccesses;
+            }
+            if (probes >= ClientConfig.BREAKER_HALF_OPEN_PROBES) {
+                return false;
+            }
+            ++probes;
+            lastProbeNanos = now;
+            return true;
+        }
+    }
+
+    /**
+     * 记录一次成功的调用
+     * @param latencyNanos 响应时间，单位纳秒
+     */
+    public void onSuccess(long latencyNanos) {
+        record(false, latencyNanos);
+    }
+
+    /**
+     * 记录一次失败的调用（超时、服务端返回错误、写失败）
+     * @param latencyNanos 响应时间，单位纳秒
+     */
+    public void onFailure(long latencyNanos) {
+        record(true, latencyNanos);
+    }
+
+    private void record(boolean failure, long latencyNanos) {
+        long ejectionMillis = 0;
+        synchronized (this) {
+            long now = System.nanoTime();
+            switch (state) {
+                case OPEN:
+                    // 摘除之前发出的请求，结果不再计入
+                    return;
+                case HALF_OPEN:
+                    if (failure) {
+                        ejectionMillis = open(now);
+                    } else if (++probeSuccesses >= ClientConfig.BREAKER_HALF_OPEN_PROBES) {
+                        close(now);
+                    } else {
+                        return;
+                    }
+                    break;
+                default:
+                    boolean slow = slowCallNanos > 0 && latencyNanos >= slowCallNanos;
+                    addToWindow(now, failure, slow);
+                    consecutiveFailures = failure ? consecutiveFailures + 1 : 0;
+                    if (!shouldTrip(now)) {
+                        return;
+                    }
+                    ejectionMillis = open(now);
+                    break;
+            }
+        }
+        if (ejectionMillis > 0) {
+            scheduleHalfOpen(ejectionMillis);
+        }
+        stateListener.run();
+    }
+
+    private void addToWindow(long now, boolean failure, boolean slow) {
+        long epoch = Math.floorDiv(now, bucketNanos);
+        int index = (int) Math.floorMod(epoch, (long) BUCKETS);
+        if (bucketEpochs[index] != epoch) {
+            bucketEpochs[index] = epoch;
+            totals[index] = 0;
+            failures[index] = 0;
+            slowCalls[index] = 0;
+        }
+        ++totals[index];
+        if (failure) {
+            ++failures[index];
+        }
+        if (slow) {
+            ++slowCalls[index];
+        }
+    }
+
+    private boolean shouldTrip(long now) {
+        if (ClientConfig.BREAKER_CONSECUTIVE_FAILURES > 0 && consecutiveFailures >= ClientConfig.BREAKER_CONSECUTIVE_FAILURES) {
+            return true;
+        }
+        long epoch = Math.floorDiv(now, bucketNanos);
+        int total = 0;
+        int failure = 0;
+        int slow = 0;
+        for (int i = 0; i < BUCKETS; ++i) {
+            // 只统计最近BUCKETS个时间片
+            if (bucketEpochs[i] != EMPTY_EPOCH && epoch - bucketEpochs[i] < BUCKETS) {
+                total += totals[i];
+                failure += failures[i];
+                slow += slowCalls[i];
+            }
+        }
+        if (total < ClientConfig.BREAKER_MIN_REQUESTS) {
+            return false;
+        }
+        return failure >= total * ClientConfig.BREAKER_FAILURE_RATE
+                || (slowCallNanos > 0 && slow >= total * ClientConfig.BREAKER_SLOW_CALL_RATE);
+    }
+
+    /**
+     * 打开熔断器，返回本次摘除的时长
+     */
+    private long open(long now) {
+        // 恢复后稳定运行了足够长的时间，摘除时长重新开始计算
+        if (state == State.CLOSED && now - lastClosedNanos > TimeUnit.MILLISECONDS.toNanos(ClientConfig.BREAKER_MAX_EJECTION_TIME)) {
+            ejections = 0;
+        }
+        long ejectionMillis = Math.min(ClientConfig.BREAKER_BASE_EJECTION_TIME << Math.min(ejections, 20),
+                ClientConfig.BREAKER_MAX_EJECTION_TIME);
+        ++ejections;
+        state = State.OPEN;
+        resetWindow();
+        log.warn("Eject {} for {} ms, ejections: {}", name, ejectionMillis, ejections);
+        return ejectionMillis;
+    }
+
+    private void close(long now) {
+        state = State.CLOSED;
+        lastClosedNanos = now;
+        resetWindow();
+        log.info("{} recovered after {} probes", name, probeSuccesses);
+    }
+
+    private void resetWindow() {
+        for (int i = 0; i < BUCKETS; ++i) {
+            bucketEpochs[i] = EMPTY_EPOCH;
+            totals[i] = 0;
+            failures[i] = 0;
+            slowCalls[i] = 0;
+        }
+        consecutiveFailures = 0;
+    }
+
+    private void scheduleHalfOpen(long ejectionMillis) {
+        Runnable halfOpen = new Runnable() {
+            @Override
+            public void run() {
+                synchronized (CircuitBreaker.this) {
+                    if (state != State.OPEN) {
+                        return;
+                    }
+                    state = State.HALF_OPEN;
+                    probes = 0;
+                    probeSuccesses = 0;
+                    lastProbeNanos = System.nanoTime();
+                }
+                log.info("{} is half open, send {} probe requests", name, ClientConfig.BREAKER_HALF_OPEN_PROBES);
+                stateListener.run();
+            }
+        };
+        try {
+            scheduler.schedule(halfOpen, ejectionMillis, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // 客户端正在关闭，不再恢复
+            log.debug("Scheduler is shutdown, skip half open of {}", name);
+        }
+    }
+}
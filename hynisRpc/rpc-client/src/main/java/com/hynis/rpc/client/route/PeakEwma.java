@@ -0,0 +1,74 @@
+package com.hynis.rpc.client.route;
+
+/**
+ * @author hynis
+ * @date 2026/10/18 18:05
+ *
+ * 峰值敏感的指数加权移动平均（Peak EWMA）响应时间
+ * 1、观测值大于当前值时直接取观测值，节点一变慢马上就能反映出来
+ * 2、观测值小于当前值时按距上次观测的时间指数衰减：cost = cost * w + rtt * (1 - w)，w = exp(-Δt / decayTime)
+ * 3、读取时也按经过的时间向0衰减，一段时间没有请求的节点（例如已经恢复的慢节点）会重新获得流量
+ * 一个服务器节点的所有连接共用一个实例，更新与读取都很短，直接加锁
+ */
+public class PeakEwma {
+    /**
+     * 还没有观测值但已经有请求在等待时的惩罚值，避免新节点或卡死的节点因为cost为0而被选中
+     */
+    private static final double PENALTY = (double) (Long.MAX_VALUE >> 16);
+
+    /**
+     * 衰减时间常数，单位纳秒
+     */
+    private final double decayNanos;
+    private long stamp = System.nanoTime();
+    /**
+     * 当前的响应时间估计，单位纳秒
+     */
+    private double cost = 0.0;
+
+    public PeakEwma(long decayMillis) {
+        this.decayNanos = decayMillis * 1000000.0;
+    }
+
+    /**
+     * 记录一次响应时间
+     * @param rttNanos 响应时间，单位纳秒
+     */
+    public synchronized void observe(long rttNanos) {
+        update(rttNanos);
+    }
+
+    /**
+     * 获取当前的响应时间估计，读取时按经过的时间衰减
+     * @return 单位纳秒
+     */
+    public synchronized double getCost() {
+        update(0);
+        return cost;
+    }
+
+    /**
+     * 节点的负载：响应时间估计乘以等待响应的请求数加一
+     * @param pending 等待响应的请求数
+     * @return
+     */
+    public double getLoad(int pending) {
+        double cost = getCost();
+        if (cost == 0.0 && pending != 0) {
+            return PENALTY + pending;
+        }
+        return cost * (pending + 1);
+    }
+
+    private void update(double rtt) {
+        long now = System.nanoTime();
+        long elapsed = Math.max(now - stamp, 0);
+        double w = Math.exp(-elapsed / decayNanos);
+        if (rtt > cost) {
+            cost = rtt;
+        } else {
+            cost = cost * w + rtt * (1.0 - w);
+        }
+        stamp = now;
+    }
+}
@@ -0,0 +1,123 @@
+package com.hynis.rpc.client.route;
+
+import com.hynis.rpc.client.connect.ServerNode;
+import com.hynis.rpc.common.protocol.RpcServiceInfo;
+import com.hynis.rpc.common.serializer.SerializerRegistry;
+import com.hynis.rpc.common.util.ServiceUtil;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * @author hynis
+ * @date 2026/10/18 16:40
+ *
+ * 路由表快照：key为服务名（接口名+版本号），value为提供该服务并且有可用连接的服务器节点数组
+ * 只在服务器节点或连接发生变化时由ConnectionManager重新生成，通过volatile引用发布
+ * 快照创建后不再修改，请求路由时直接读取，不需要加锁，也不会产生临时对象
+ * 熔断器打开的节点被摘除，但每个服务摘除的节点数不超过maxEjectionPercent，超出部分仍然参与路由
+ * 服务端为服务指定的序列化器在本地不存在时，该服务不会被路由到这个节点，见getMissingSerializer
+ */
+public class RoutingTable {
+
+    public static final RoutingTable EMPTY = new RoutingTable(Collections.<String, ServerNode[]>emptyMap(),
+            Collections.<String, String>emptyMap());
+
+    private final Map<String, ServerNode[]> serviceNodes;
+    /**
+     * key为服务名，value为服务端为该服务指定、但本地没有的序列化器名称
+     */
+    private final Map<String, String> missingSerializers;
+
+    private RoutingTable(Map<String, ServerNode[]> serviceNodes, Map<String, String> missingSerializers) {
+        this.serviceNodes = serviceNodes;
+        this.missingSerializers = missingSerializers;
+    }
+
+    /**
+     * 将所有有可用连接的服务器节点按其提供的服务分组，生成路由表
+     * @param serverNodes 所有的服务器节点
+     * @param maxEjectionPercent 每个服务最多摘除的节点百分比
+     * @return
+     */
+    public static RoutingTable build(Collection<ServerNode> serverNodes, int maxEjectionPercent) {
+        Map<String, List<ServerNode>> serviceMap = new HashMap<>();
+        Map<String, String> missingSerializers = new HashMap<>();
+        for (ServerNode serverNode : serverNodes) {
+            // 连接全部断开、正在后台重连的节点不参与路由
+            if (!serverNode.isAvailable()) {
+                continue;
+            }
+            // RpcServiceInfo是一个具体的服务，服务名和版本信息
+            for (RpcServiceInfo serviceInfo : serverNode.getRpcProtocol().getServiceInfoList()) {
+                String serviceKey = ServiceUtil.makeServiceKey(serviceInfo.getServiceName(), serviceInfo.getVersion());
+                // 服务端只接受服务声明的序列化器，本地没有该序列化器时请求一定会被拒绝，不路由到这个节点
+                if (SerializerRegistry.getInstance().getSerializer(serviceInfo.getSerializer()) == null) {
+                    missingSerializers.put(serviceKey, serviceInfo.getSerializer());
+                    continue;
+                }
+                List<ServerNode> nodeList = serviceMap.get(serviceKey);
+                if (nodeList == null) {
+                    nodeList = new ArrayList<>();
+                    serviceMap.put(serviceKey, nodeList);
+                }
+                nodeList.add(serverNode);
+            }
+        }
+        if (serviceMap.isEmpty() && missingSerializers.isEmpty()) {
+            return EMPTY;
+        }
+        Map<String, ServerNode[]> serviceNodes = new HashMap<>(serviceMap.size() * 2);
+        for (Map.Entry<String, List<ServerNode>> entry : serviceMap.entrySet()) {
+            serviceNodes.put(entry.getKey(), eject(entry.getValue(), maxEjectionPercent));
+        }
+        return new RoutingTable(serviceNodes, missingSerializers);
+    }
+
+    /**
+     * 摘除熔断器打开的节点，摘除数量不超过节点数的maxEjectionPercent%（向下取整）
+     */
+    private static ServerNode[] eject(List<ServerNode> nodeList, int maxEjectionPercent) {
+        int maxEjected = nodeList.size() * Math.max(0, maxEjectionPercent) / 100;
+        List<ServerNode> routable = new ArrayList<>(nodeList.size());
+        int ejected = 0;
+        for (ServerNode serverNode : nodeList) {
+            if (serverNode.getCircuitBreaker().isOpen() && ejected < maxEjected) {
+                ++ejected;
+                continue;
+            }
+            routable.add(serverNode);
+        }
+        return routable.toArray(new ServerNode[0]);
+    }
+
+    /**
+     * 获取提供该服务的服务器节点
+     * @param serviceKey 接口名+版本号
+     * @return 没有可用节点时返回null，返回的数组为共享的快照，不能修改
+     */
+    public ServerNode[] getNodes(String serviceKey) {
+        return serviceNodes.get(serviceKey);
+    }
+
+    /**
+     * 获取服务端为该服务指定、但本地没有的序列化器，用于在没有可用节点时给出失败原因
+     * @param serviceKey 接口名+版本号
+     * @return 序列化器名称，序列化器都存在时返回null
+     */
+    public String getMissingSerializer(String serviceKey) {
+        return missingSerializers.get(serviceKey);
+    }
+
+    /**
+     * 是否还没有任何可用的服务器节点；只有缺少序列化器的服务时不为空，调用方不必等待，直接得到失败原因
+     * @return
+     */
+    public boolean isEmpty() {
+        return serviceNodes.isEmpty() && missingSerializers.isEmpty();
+    }
+}
@@ -1,49 +1,49 @@
 package com.hynis.rpc.client.route;
 
-import com.hynis.rpc.client.handler.RpcClientHandler;
-import com.hynis.rpc.common.protocol.RpcProtocol;
-import com.hynis.rpc.common.protocol.RpcServiceInfo;
-import com.hynis.rpc.common.util.ServiceUtil;
-import org.apache.commons.collections4.map.HashedMap;
+import com.hynis.rpc.client.connect.ServerNode;
 
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
 
 /**
  * @author hynis
  * @date 2023/8/19 23:11
+ *
+ * 负载均衡策略：从提供服务的服务器节点中选择一个
+ * 候选节点来自ConnectionManager预先生成的路由表（见RoutingTable），路由时不再按服务名重新分组
+ * 慢启动：按权重选择的策略使用ServerNode.getEffectiveWeight，轮询与LRU通过skipWarmingUp按概率避开正在预热的节点，
+ * 一致性哈希不参与慢启动
  */
 public abstract class RpcLoadBalance {
+
     /**
-     * 将所有的服务器节点的服务按其服务名分类，存于serviceMap中返回
-     * serviceMap：
-     * - key为具体的服务名称
-     * - value为RpcProtocol的列表
-     * @param connectedServerNodeMap
+     * 选择服务器节点
+     * @param serviceKey 接口名+版本号
+     * @param nodes 提供该服务并且有可用连接的服务器节点，不为空；数组为路由表中共享的快照，不能修改
      * @return
+     * @throws Exception
      */
-    protected Map<String, List<RpcProtocol>> getServiceMap(Map<RpcProtocol, RpcClientHandler> connectedServerNodeMap) {
-        Map<String, List<RpcProtocol>> serviceMap = new HashedMap<>();
-        if (connectedServerNodeMap != null && connectedServerNodeMap.size() > 0) {
-            // RpcProtocol是一个host:port下的所有服务列表
-            for (RpcProtocol rpcProtocol : connectedServerNodeMap.keySet()) {
-                // RpcServiceInfo是一个具体的服务，服务名和版本信息
-                for (RpcServiceInfo serviceInfo : rpcProtocol.getServiceInfoList()) {
-                    String serviceKey = ServiceUtil.makeServiceKey(serviceInfo.getServiceName(), serviceInfo.getVersion());
-                    // 如果是
-                    List<RpcProtocol> rpcProtocolList = serviceMap.get(serviceKey);
-                    if (rpcProtocolList == null) {
-                        rpcProtocolList = new ArrayList<>();
-                    }
-                    rpcProtocolList.add(rpcProtocol);
-                    serviceMap.putIfAbsent(serviceKey, rpcProtocolList);
-                }
-            }
-        }
-        return serviceMap;
-    }
+    public abstract ServerNode route(String serviceKey, ServerNode[] nodes) throws Exception;
 
-    public abstract RpcProtocol route(String serviceKey, Map<RpcProtocol, RpcClientHandler> connectedServerNodes) throws Exception;
+    /**
+     * 按路由key选择服务器节点，路由key来自接口方法上RpcRouteKey指定的参数
+     * 默认忽略路由key，需要按key路由的策略（如一致性哈希）重写该方法
+     * @param serviceKey 接口名+版本号
+     * @param nodes 同route(serviceKey, nodes)
+     * @param routeKey 路由key，方法没有指定时为null
+     * @return
+     * @throws Exception
+     */
+    public ServerNode route(String serviceKey, ServerNode[] nodes, Object routeKey) throws Exception {
+        return route(serviceKey, nodes);
+    }
 
+    /**
+     * 不按权重选择的策略（轮询、LRU、一致性哈希）用来实现慢启动：选中的节点正在预热时，以 1 - 预热系数 的概率放弃它
+     * @param node 选中的节点
+     * @return true表示应当改选其他节点
+     */
+    protected static boolean skipWarmingUp(ServerNode node) {
+        double factor = node.getWarmupFactor();
+        return factor < 1 && ThreadLocalRandom.current().nextDouble() >= factor;
+    }
 }
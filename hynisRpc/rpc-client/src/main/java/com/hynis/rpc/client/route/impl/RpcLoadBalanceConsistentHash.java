@@ -1,33 +1,120 @@
 package com.hynis.rpc.client.route.impl;
 
+import com.google.common.base.Charsets;
+import com.google.common.hash.HashFunction;
 import com.google.common.hash.Hashing;
-import com.hynis.rpc.client.handler.RpcClientHandler;
+import com.hynis.rpc.client.connect.ServerNode;
 import com.hynis.rpc.client.route.RpcLoadBalance;
 import com.hynis.rpc.common.protocol.RpcProtocol;
 
-import java.util.List;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * @author hynis
  * @date 2023/9/2 22:10
  *
- * 使用一致性哈希算法，Google提供了实现包
+ * 一致性哈希（ketama）：每个服务器节点在哈希环上放置虚拟节点，数量与节点权重成正比（权重相同时为VIRTUAL_NODES个），哈希函数为murmur3
+ * 请求按路由key（见RpcRouteKey，没有路由key时为服务名）的哈希值顺时针找到第一个虚拟节点
+ * 节点增删时只有相邻区间的key会迁移；哈希环按路由表快照中的节点数组缓存，快照变化时才重新生成
+ * 虚拟节点数按节点的完整权重计算，不参与慢启动：预热期间把key让给其他节点会在每次客户端启动后打散key，
+ * 而key固定在同一个节点上（利用服务端的本地缓存）正是使用一致性哈希的原因
  */
 public class RpcLoadBalanceConsistentHash extends RpcLoadBalance {
-    public RpcProtocol doRoute(String serviceKey, List<RpcProtocol> addressList) {
-        int index = Hashing.consistentHash(serviceKey.hashCode(), addressList.size());
-        return addressList.get(index);
+    /**
+     * 每个服务器节点的平均虚拟节点数，越多分布越均匀
+     */
+    private static final int VIRTUAL_NODES = 160;
+    private static final HashFunction HASH_FUNCTION = Hashing.murmur3_128();
+
+    /**
+     * key为服务名，value为该服务的哈希环
+     */
+    private final Map<String, Ring> ringMap = new ConcurrentHashMap<>();
+
+    @Override
+    public ServerNode route(String serviceKey, ServerNode[] nodes) {
+        return route(serviceKey, nodes, null);
     }
 
     @Override
-    public RpcProtocol route(String serviceKey, Map<RpcProtocol, RpcClientHandler> connectedServerNodes) throws Exception {
-        Map<String, List<RpcProtocol>> serviceMap = getServiceMap(connectedServerNodes);
-        List<RpcProtocol> addressList = serviceMap.get(serviceKey);
-        if (addressList != null && addressList.size() > 0) {
-            return doRoute(serviceKey, addressList);
-        } else {
-            throw new Exception("Can not find connection for service: " + serviceKey);
+    public ServerNode route(String serviceKey, ServerNode[] nodes, Object routeKey) {
+        if (nodes.length == 1) {
+            return nodes[0];
+        }
+        Ring ring = ringMap.get(serviceKey);
+        // 路由表快照重新生成后节点数组会变化，此时重新生成哈希环
+        if (ring == null || ring.nodes != nodes) {
+            ring = new Ring(nodes);
+            ringMap.put(serviceKey, ring);
+        }
+        String key = routeKey != null ? String.valueOf(routeKey) : serviceKey;
+        return ring.get(hash(key));
+    }
+
+    private static long hash(String key) {
+        return HASH_FUNCTION.hashString(key, Charsets.UTF_8).asLong();
+    }
+
+    /**
+     * 哈希环：虚拟节点的哈希值升序排列，owners为对应的服务器节点，创建后不再修改
+     */
+    private static class Ring {
+        private final ServerNode[] nodes;
+        private final long[] hashes;
+        private final ServerNode[] owners;
+
+        Ring(ServerNode[] nodes) {
+            this.nodes = nodes;
+            long totalWeight = 0;
+            for (ServerNode node : nodes) {
+                totalWeight += node.getWeight();
+            }
+            // 虚拟节点数按权重比例分配，权重相同时每个节点VIRTUAL_NODES个
+            int[] virtualNodes = new int[nodes.length];
+            int size = 0;
+            for (int i = 0; i < nodes.length; ++i) {
+                virtualNodes[i] = (int) Math.max(1, Math.round((double) VIRTUAL_NODES * nodes.length * nodes[i].getWeight() / totalWeight));
+                size += virtualNodes[i];
+            }
+            long[][] points = new long[size][];
+            int index = 0;
+            for (int i = 0; i < nodes.length; ++i) {
+                RpcProtocol rpcProtocol = nodes[i].getRpcProtocol();
+                String address = rpcProtocol.getHost() + ":" + rpcProtocol.getPort();
+                for (int v = 0; v < virtualNodes[i]; ++v) {
+                    // 虚拟节点由节点地址决定，与节点在数组中的顺序无关，每个客户端得到的哈希环相同
+                    points[index++] = new long[]{hash(address + "#" + v), i};
+                }
+            }
+            Arrays.sort(points, new Comparator<long[]>() {
+                @Override
+                public int compare(long[] a, long[] b) {
+                    return Long.compare(a[0], b[0]);
+                }
+            });
+            this.hashes = new long[size];
+            this.owners = new ServerNode[size];
+            for (int i = 0; i < size; ++i) {
+                hashes[i] = points[i][0];
+                owners[i] = nodes[(int) points[i][1]];
+            }
+        }
+
+        /**
+         * 顺时针找到第一个哈希值不小于hash的虚拟节点，超过最大值时回到环的起点
+         */
+        ServerNode get(long hash) {
+            int index = Arrays.binarySearch(hashes, hash);
+            if (index < 0) {
+                index = -index - 1;
+                if (index == hashes.length) {
+                    index = 0;
+                }
+            }
+            return owners[index];
         }
     }
 }
@@ -1,8 +1,7 @@
 package com.hynis.rpc.client.route.impl;
 
-import com.hynis.rpc.client.handler.RpcClientHandler;
+import com.hynis.rpc.client.connect.ServerNode;
 import com.hynis.rpc.client.route.RpcLoadBalance;
-import com.hynis.rpc.common.protocol.RpcProtocol;
 
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
@@ -11,12 +10,14 @@ import java.util.concurrent.ConcurrentMap;
 /**
  * @author hynis
  * @date 2023/9/2 22:25
+ *
+ * LFU算法：选择 调用次数 / 权重 最小的节点，节点权重相同时即选择调用次数最少的节点
  */
 public class RpcLoadBalanceLFU extends RpcLoadBalance {
-    private ConcurrentMap<String, HashMap<RpcProtocol, Integer>> jobLfuMap = new ConcurrentHashMap<String, HashMap<RpcProtocol, Integer>>();
+    private ConcurrentMap<String, HashMap<ServerNode, Integer>> jobLfuMap = new ConcurrentHashMap<String, HashMap<ServerNode, Integer>>();
     private long CACHE_VALID_TIME = 0;
 
-    public RpcProtocol doRoute(String serviceKey, List<RpcProtocol> addressList) {
+    public ServerNode doRoute(String serviceKey, List<ServerNode> addressList) {
         // 超时清除缓存
         if (System.currentTimeMillis() > CACHE_VALID_TIME) {
             jobLfuMap.clear();
@@ -24,7 +25,7 @@ public class RpcLoadBalanceLFU extends RpcLoadBalance {
         }
 
         // LFU算法：value存储他被调用的次数
-        HashMap<RpcProtocol, Integer> lfuItemMap = jobLfuMap.get(serviceKey);
+        HashMap<ServerNode, Integer> lfuItemMap = jobLfuMap.get(serviceKey);
         if (lfuItemMap == null) {
             lfuItemMap = new HashMap<>();
             jobLfuMap.putIfAbsent(serviceKey, lfuItemMap);
@@ -32,49 +33,45 @@ public class RpcLoadBalanceLFU extends RpcLoadBalance {
         }
 
         // put new
-        for (RpcProtocol address : addressList) {
+        for (ServerNode address : addressList) {
             if (!lfuItemMap.containsKey(address) || lfuItemMap.get(address) > 1000000) {
                 lfuItemMap.put(address, 0);
             }
         }
 
         // remove old
-        List<RpcProtocol> delKeys = new ArrayList<>();
-        for (RpcProtocol existKey : lfuItemMap.keySet()) {
+        List<ServerNode> delKeys = new ArrayList<>();
+        for (ServerNode existKey : lfuItemMap.keySet()) {
             if (!addressList.contains(existKey)) {
                 delKeys.add(existKey);
             }
         }
         if (delKeys.size() > 0) {
-            for (RpcProtocol delKey : delKeys) {
+            for (ServerNode delKey : delKeys) {
                 lfuItemMap.remove(delKey);
             }
         }
 
-        // load least used count address
-        List<Map.Entry<RpcProtocol, Integer>> lfuItemList = new ArrayList<>(lfuItemMap.entrySet());
-        Collections.sort(lfuItemList, new Comparator<Map.Entry<RpcProtocol, Integer>>() {
+        // load least used count (per weight) address
+        List<Map.Entry<ServerNode, Integer>> lfuItemList = new ArrayList<>(lfuItemMap.entrySet());
+        Collections.sort(lfuItemList, new Comparator<Map.Entry<ServerNode, Integer>>() {
             @Override
-            public int compare(Map.Entry<RpcProtocol, Integer> o1, Map.Entry<RpcProtocol, Integer> o2) {
-                return o1.getValue().compareTo(o2.getValue());
+            public int compare(Map.Entry<ServerNode, Integer> o1, Map.Entry<ServerNode, Integer> o2) {
+                // 交叉相乘比较 调用次数 / 权重
+                return Double.compare(o1.getValue() * o2.getKey().getEffectiveWeight(),
+                        o2.getValue() * o1.getKey().getEffectiveWeight());
             }
         });
 
-        Map.Entry<RpcProtocol, Integer> addressItem = lfuItemList.get(0);
-        RpcProtocol minAddress = addressItem.getKey();
+        Map.Entry<ServerNode, Integer> addressItem = lfuItemList.get(0);
+        ServerNode minAddress = addressItem.getKey();
         addressItem.setValue(addressItem.getValue() + 1);
 
         return minAddress;
     }
 
     @Override
-    public RpcProtocol route(String serviceKey, Map<RpcProtocol, RpcClientHandler> connectedServerNodes) throws Exception {
-        Map<String, List<RpcProtocol>> serviceMap = getServiceMap(connectedServerNodes);
-        List<RpcProtocol> addressList = serviceMap.get(serviceKey);
-        if (addressList != null && addressList.size() > 0) {
-            return doRoute(serviceKey, addressList);
-        } else {
-            throw new Exception("Can not find connection for service: " + serviceKey);
-        }
+    public ServerNode route(String serviceKey, ServerNode[] nodes) {
+        return doRoute(serviceKey, Arrays.asList(nodes));
     }
 }
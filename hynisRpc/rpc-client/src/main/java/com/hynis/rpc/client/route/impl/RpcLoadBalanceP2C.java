@@ -0,0 +1,40 @@
+package com.hynis.rpc.client.route.impl;
+
+import com.hynis.rpc.client.connect.ServerNode;
+import com.hynis.rpc.client.route.RpcLoadBalance;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * @author hynis
+ * @date 2026/10/18 17:20
+ *
+ * "Power of Two Choices"：随机选出两个不同的节点，取等待响应的请求数较少的一个
+ * 请求数来自每个连接上的计数器（RpcClientHandler.getPendingCount），某个节点变慢（如GC停顿）时请求会堆积在该节点上，
+ * 之后的请求自然避开它；只比较两个节点，既不需要遍历所有节点，也不会让所有客户端同时涌向同一个最空闲的节点
+ * 节点权重不同时比较 (等待数 + 1) / 权重，大权重的节点可以承担更多的并发请求
+ * 不加锁，也不产生临时对象
+ */
+public class RpcLoadBalanceP2C extends RpcLoadBalance {
+
+    @Override
+    public ServerNode route(String serviceKey, ServerNode[] nodes) {
+        int size = nodes.length;
+        if (size == 1) {
+            return nodes[0];
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int first = random.nextInt(size);
+        // 第二个节点从其余size-1个节点中选取，保证与第一个不同
+        int second = random.nextInt(size - 1);
+        if (second >= first) {
+            ++second;
+        }
+        ServerNode a = nodes[first];
+        ServerNode b = nodes[second];
+        // 交叉相乘比较 (等待数 + 1) / 权重，权重相同时即比较等待数
+        double loadA = (a.getPendingCount() + 1) * b.getEffectiveWeight();
+        double loadB = (b.getPendingCount() + 1) * a.getEffectiveWeight();
+        return loadA <= loadB ? a : b;
+    }
+}
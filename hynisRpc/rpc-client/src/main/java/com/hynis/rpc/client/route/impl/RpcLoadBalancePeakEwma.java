@@ -0,0 +1,35 @@
+package com.hynis.rpc.client.route.impl;
+
+import com.hynis.rpc.client.connect.ServerNode;
+import com.hynis.rpc.client.route.RpcLoadBalance;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * @author hynis
+ * @date 2026/10/18 18:20
+ *
+ * 基于响应时间的负载均衡：随机选出两个不同的节点，取负载较低的一个
+ * 负载 = 峰值EWMA响应时间 * (等待响应的请求数 + 1)，见PeakEwma
+ * 慢节点的响应时间估计会立刻升高从而少分到请求，恢复后估计值随时间衰减，重新获得流量
+ * 节点权重不同时比较 负载 / 权重
+ */
+public class RpcLoadBalancePeakEwma extends RpcLoadBalance {
+
+    @Override
+    public ServerNode route(String serviceKey, ServerNode[] nodes) {
+        int size = nodes.length;
+        if (size == 1) {
+            return nodes[0];
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int first = random.nextInt(size);
+        int second = random.nextInt(size - 1);
+        if (second >= first) {
+            ++second;
+        }
+        ServerNode a = nodes[first];
+        ServerNode b = nodes[second];
+        return a.getPeakEwmaLoad() / a.getEffectiveWeight() <= b.getPeakEwmaLoad() / b.getEffectiveWeight() ? a : b;
+    }
+}
@@ -1,11 +1,8 @@
 package com.hynis.rpc.client.route.impl;
 
-import com.hynis.rpc.client.handler.RpcClientHandler;
+import com.hynis.rpc.client.connect.ServerNode;
 import com.hynis.rpc.client.route.RpcLoadBalance;
-import com.hynis.rpc.common.protocol.RpcProtocol;
 
-import java.util.List;
-import java.util.Map;
 import java.util.concurrent.atomic.AtomicInteger;
 
 /**
@@ -13,38 +10,26 @@ import java.util.concurrent.atomic.AtomicInteger;
  * @date 2023/8/19 23:12
  *
  * "Round Robin" 是一种简单的负载均衡策略，循环发放
+ * 不考虑节点权重，按权重分配请求见RpcLoadBalanceWeightedRoundRobin
  */
 public class RpcLoadBalanceRoundRobin extends RpcLoadBalance {
 
     private AtomicInteger roundRobin = new AtomicInteger(0);
 
     /**
-     *
+     * 从给定的服务器节点数组中选择一个节点：计数器取余轮流选取
      * @param serviceKey
-     * @param connectedServerNodeMap
+     * @param nodes
      * @return
-     * @throws Exception
      */
     @Override
-    public RpcProtocol route(String serviceKey, Map<RpcProtocol, RpcClientHandler> connectedServerNodeMap) throws Exception {
-        Map<String, List<RpcProtocol>> serviceMap = getServiceMap(connectedServerNodeMap);
-        List<RpcProtocol> addressList = serviceMap.get(serviceKey);
-        if (addressList != null && addressList.size() > 0) {
-            return doRoute(addressList);
-        } else {
-            throw new Exception("Can not find connection for service: " + serviceKey);
+    public ServerNode route(String serviceKey, ServerNode[] nodes) {
+        // 计数器溢出为负数后仍然得到非负的下标
+        int index = (roundRobin.getAndIncrement() & Integer.MAX_VALUE) % nodes.length;
+        // 慢启动：选中的节点正在预热时按概率改选轮询的下一个节点，被让出的请求仍然均匀地分给其他节点
+        if (nodes.length > 1 && skipWarmingUp(nodes[index])) {
+            index = (roundRobin.getAndIncrement() & Integer.MAX_VALUE) % nodes.length;
         }
-    }
-
-    /**
-     * 从给定的服务器节点列表中选择一个节点：哈希取余选取
-     * @param addressList
-     * @return
-     */
-    public RpcProtocol doRoute(List<RpcProtocol> addressList) {
-        // 获取节点服务器的个数
-        int size = addressList.size();
-        int index = (roundRobin.getAndAdd(1) + size) % size;
-        return addressList.get(index);
+        return nodes[index];
     }
 }
@@ -0,0 +1,65 @@
+package com.hynis.rpc.client.route.impl;
+
+import com.hynis.rpc.client.connect.ServerNode;
+import com.hynis.rpc.client.route.RpcLoadBalance;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * @author hynis
+ * @date 2026/10/18 20:10
+ *
+ * 平滑加权轮询（与Nginx的实现相同）：每次选择时所有节点的当前值加上各自的权重，选出当前值最大的节点，再把它的当前值减去权重之和
+ * 每个节点分到的请求比例等于权重比例，并且同一个节点的请求均匀地穿插在其他节点之间，不会连续地集中到大权重节点上
+ * 权重来自服务端注册的RpcProtocol，并考虑慢启动（见ServerNode.getEffectiveWeight），所有节点权重相同时退化为普通轮询
+ */
+public class RpcLoadBalanceWeightedRoundRobin extends RpcLoadBalance {
+
+    /**
+     * key为服务名，value为该服务各个节点的当前值
+     */
+    private final Map<String, WeightedState> stateMap = new ConcurrentHashMap<>();
+
+    @Override
+    public ServerNode route(String serviceKey, ServerNode[] nodes) {
+        if (nodes.length == 1) {
+            return nodes[0];
+        }
+        WeightedState state = stateMap.get(serviceKey);
+        // 路由表快照重新生成后节点数组会变化，此时重新开始计数
+        if (state == null || state.nodes != nodes) {
+            state = new WeightedState(nodes);
+            stateMap.put(serviceKey, state);
+        }
+        return state.next();
+    }
+
+    private static class WeightedState {
+        private final ServerNode[] nodes;
+        private final double[] current;
+
+        WeightedState(ServerNode[] nodes) {
+            this.nodes = nodes;
+            this.current = new double[nodes.length];
+        }
+
+        /**
+         * 每次选择都读取节点的最新权重，节点权重变化后立即生效
+         */
+        synchronized ServerNode next() {
+            double total = 0;
+            int best = 0;
+            for (int i = 0; i < nodes.length; ++i) {
+                double weight = nodes[i].getEffectiveWeight();
+                current[i] += weight;
+                total += weight;
+                if (current[i] > current[best]) {
+                    best = i;
+                }
+            }
+            current[best] -= total;
+            return nodes[best];
+        }
+    }
+}
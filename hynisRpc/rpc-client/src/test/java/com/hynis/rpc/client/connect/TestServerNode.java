@@ -0,0 +1,77 @@
+package com.hynis.rpc.client.connect;
+
+import com.hynis.rpc.common.protocol.RpcProtocol;
+import com.hynis.rpc.common.protocol.RpcServiceInfo;
+import io.netty.bootstrap.Bootstrap;
+import io.netty.channel.DefaultEventLoopGroup;
+import io.netty.channel.EventLoopGroup;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * @author hynis
+ * @date 2026/10/18 17:30
+ *
+ * 不建立连接的服务器节点，可用状态、等待数与负载由测试直接设置，用于测试负载均衡
+ */
+public class TestServerNode extends ServerNode {
+    /**
+     * 熔断器用来调度半开状态转换，测试中不会真正建立连接
+     */
+    private static final EventLoopGroup GROUP = new DefaultEventLoopGroup(1);
+
+    private volatile boolean available = true;
+    private volatile int pendingCount;
+    private volatile double peakEwmaLoad;
+
+    public TestServerNode(int port, String... serviceKeys) {
+        this(port, 0, serviceKeys);
+    }
+
+    public TestServerNode(int port, int weight, String... serviceKeys) {
+        super(protocol(port, weight, serviceKeys), new Bootstrap().group(GROUP), 1, 1000, () -> { });
+    }
+
+    private static RpcProtocol protocol(int port, int weight, String... serviceKeys) {
+        List<RpcServiceInfo> serviceInfoList = new ArrayList<>();
+        for (String serviceKey : serviceKeys) {
+            RpcServiceInfo serviceInfo = new RpcServiceInfo();
+            serviceInfo.setServiceName(serviceKey);
+            serviceInfoList.add(serviceInfo);
+        }
+        RpcProtocol rpcProtocol = new RpcProtocol();
+        rpcProtocol.setHost("127.0.0.1");
+        rpcProtocol.setPort(port);
+        rpcProtocol.setWeight(weight);
+        rpcProtocol.setServiceInfoList(serviceInfoList);
+        return rpcProtocol;
+    }
+
+    @Override
+    public boolean isAvailable() {
+        return available;
+    }
+
+    public void setAvailable(boolean available) {
+        this.available = available;
+    }
+
+    @Override
+    public int getPendingCount() {
+        return pendingCount;
+    }
+
+    public void setPendingCount(int pendingCount) {
+        this.pendingCount = pendingCount;
+    }
+
+    @Override
+    public double getPeakEwmaLoad() {
+        return peakEwmaLoad;
+    }
+
+    public void setPeakEwmaLoad(double peakEwmaLoad) {
+        this.peakEwmaLoad = peakEwmaLoad;
+    }
+}
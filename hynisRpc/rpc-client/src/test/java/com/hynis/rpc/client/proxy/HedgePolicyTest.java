@@ -0,0 +1,68 @@
+package com.hynis.rpc.client.proxy;
+
+import com.hynis.rpc.common.annotation.RpcHedge;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author hynis
+ * @date 2026/10/18 21:40
+ */
+public class HedgePolicyTest {
+
+    interface HedgedService {
+        @RpcHedge(delay = 20)
+        String fixed();
+
+        @RpcHedge(percentile = 95)
+        String percentile();
+    }
+
+    private static RpcHedge hedge(String methodName) throws NoSuchMethodException {
+        return HedgedService.class.getMethod(methodName).getAnnotation(RpcHedge.class);
+    }
+
+    @Test
+    public void fixedDelay() throws NoSuchMethodException {
+        HedgePolicy policy = new HedgePolicy(hedge("fixed"), new RetryBudget(0.1, 10));
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(20), policy.getDelayNanos());
+        policy.record(TimeUnit.SECONDS.toNanos(1));
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(20), policy.getDelayNanos());
+    }
+
+    @Test
+    public void percentileDelayNeedsSamples() throws NoSuchMethodException {
+        HedgePolicy policy = new HedgePolicy(hedge("percentile"), new RetryBudget(0.1, 10));
+        assertTrue(policy.getDelayNanos() < 0);
+        for (int i = 1; i <= 1024; ++i) {
+            policy.record(i);
+        }
+        assertEquals(973, policy.getDelayNanos());
+    }
+
+    /**
+     * 同一个服务的方法共用一个预算，对冲请求数不超过请求数的比例
+     */
+    @Test
+    public void methodsShareBudget() throws NoSuchMethodException {
+        RetryBudget budget = new RetryBudget(0.5, 1);
+        HedgePolicy fixed = new HedgePolicy(hedge("fixed"), budget);
+        HedgePolicy percentile = new HedgePolicy(hedge("percentile"), budget);
+        assertSame(fixed.getBudget(), percentile.getBudget());
+
+        assertTrue(fixed.getBudget().tryWithdraw());
+        assertFalse(percentile.getBudget().tryWithdraw());
+        fixed.getBudget().deposit();
+        percentile.getBudget().deposit();
+        assertTrue(percentile.getBudget().tryWithdraw());
+        assertFalse(fixed.getBudget().tryWithdraw());
+        assertNull(HedgePolicy.NONE.getBudget());
+    }
+}
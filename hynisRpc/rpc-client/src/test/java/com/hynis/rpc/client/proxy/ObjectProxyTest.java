@@ -0,0 +1,56 @@
+package com.hynis.rpc.client.proxy;
+
+import com.hynis.rpc.common.annotation.RpcRouteKey;
+import org.junit.Test;
+
+import java.io.Serializable;
+
+/**
+ * @author hynis
+ * @date 2026/10/19 15:20
+ */
+public class ObjectProxyTest {
+
+    static class Pojo {
+        long id;
+    }
+
+    interface ValueKeyService {
+        @RpcRouteKey(0)
+        String byName(String name);
+
+        @RpcRouteKey(0)
+        String byId(long id);
+
+        @RpcRouteKey(0)
+        String byIds(long[] ids);
+
+        @RpcRouteKey(0)
+        String byKey(Serializable key);
+    }
+
+    interface PojoKeyService {
+        @RpcRouteKey(0)
+        String byPojo(Pojo pojo);
+    }
+
+    interface InvalidIndexService {
+        @RpcRouteKey(1)
+        String byName(String name);
+    }
+
+    @Test
+    public void acceptsValueBasedRouteKeys() {
+        new ObjectProxy<ValueKeyService, Object>(ValueKeyService.class, "");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsRouteKeyWithoutToString() {
+        new ObjectProxy<PojoKeyService, Object>(PojoKeyService.class, "");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsInvalidRouteKeyIndex() {
+        new ObjectProxy<InvalidIndexService, Object>(InvalidIndexService.class, "");
+    }
+}
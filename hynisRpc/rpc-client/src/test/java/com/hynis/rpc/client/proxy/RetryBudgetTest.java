@@ -0,0 +1,67 @@
+package com.hynis.rpc.client.proxy;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author hynis
+ * @date 2026/10/18 21:35
+ */
+public class RetryBudgetTest {
+
+    private static int drain(RetryBudget budget) {
+        int withdrawn = 0;
+        while (budget.tryWithdraw()) {
+            ++withdrawn;
+        }
+        return withdrawn;
+    }
+
+    @Test
+    public void startsFull() {
+        RetryBudget budget = new RetryBudget(0.1, 10);
+        assertEquals(10, drain(budget));
+        assertFalse(budget.tryWithdraw());
+    }
+
+    @Test
+    public void extraRequestsFollowRatio() {
+        RetryBudget budget = new RetryBudget(0.1, 10);
+        drain(budget);
+        for (int i = 0; i < 9; ++i) {
+            budget.deposit();
+        }
+        assertFalse(budget.tryWithdraw());
+        budget.deposit();
+        assertTrue(budget.tryWithdraw());
+        assertFalse(budget.tryWithdraw());
+
+        // 100个请求之后最多发出10个额外请求
+        for (int i = 0; i < 100; ++i) {
+            budget.deposit();
+        }
+        assertEquals(10, drain(budget));
+    }
+
+    @Test
+    public void tokensAreCapped() {
+        RetryBudget budget = new RetryBudget(0.5, 3);
+        for (int i = 0; i < 100; ++i) {
+            budget.deposit();
+        }
+        assertEquals(3, drain(budget));
+    }
+
+    @Test
+    public void zeroRatioOnlySpendsInitialTokens() {
+        RetryBudget budget = new RetryBudget(0, 2);
+        assertEquals(2, drain(budget));
+        for (int i = 0; i < 100; ++i) {
+            budget.deposit();
+        }
+        assertFalse(budget.tryWithdraw());
+    }
+}
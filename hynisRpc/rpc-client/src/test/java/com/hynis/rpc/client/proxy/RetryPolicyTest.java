@@ -0,0 +1,92 @@
+package com.hynis.rpc.client.proxy;
+
+import com.hynis.rpc.common.annotation.RpcRetry;
+import com.hynis.rpc.common.exception.RpcConnectException;
+import com.hynis.rpc.common.exception.RpcException;
+import com.hynis.rpc.common.exception.RpcOverloadedException;
+import com.hynis.rpc.common.exception.RpcRemoteException;
+import com.hynis.rpc.common.exception.RpcTimeoutException;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author hynis
+ * @date 2026/10/18 22:10
+ */
+public class RetryPolicyTest {
+
+    interface RetriedService {
+        @RpcRetry
+        String unsentOnly();
+
+        @RpcRetry(idempotent = true)
+        String idempotent();
+
+        @RpcRetry(retryOn = RpcTimeoutException.class,
+                retryOnErrors = "java.util.concurrent.RejectedExecutionException")
+        String optIn();
+
+        @RpcRetry(maxAttempts = 5, backoff = 10, maxBackoff = 25)
+        String backoff();
+    }
+
+    private static RetryPolicy policy(String methodName) throws NoSuchMethodException {
+        RpcRetry retry = RetriedService.class.getMethod(methodName).getAnnotation(RpcRetry.class);
+        return new RetryPolicy(retry, new RetryBudget(0.1, 10));
+    }
+
+    @Test
+    public void retriesUnsentRequestsByDefault() throws NoSuchMethodException {
+        RetryPolicy policy = policy("unsentOnly");
+        assertTrue(policy.isRetryable(new RpcConnectException("write failed", null, false)));
+        // 请求可能已经被执行
+        assertFalse(policy.isRetryable(new RpcConnectException("connection closed", null, true)));
+        assertFalse(policy.isRetryable(new RpcTimeoutException(1L, 1000, "timeout")));
+        assertFalse(policy.isRetryable(new RpcRemoteException("java.lang.IllegalStateException: boom")));
+    }
+
+    @Test
+    public void idempotentMethodsRetrySentRequests() throws NoSuchMethodException {
+        RetryPolicy policy = policy("idempotent");
+        assertTrue(policy.isRetryable(new RpcConnectException("connection closed", null, true)));
+        assertFalse(policy.isRetryable(new RpcException("unknown")));
+    }
+
+    @Test
+    public void retryOnAndRetryOnErrorsOptIn() throws NoSuchMethodException {
+        RetryPolicy policy = policy("optIn");
+        assertTrue(policy.isRetryable(new RpcTimeoutException(1L, 1000, "timeout")));
+        assertTrue(policy.isRetryable(new RpcRemoteException(
+                "java.util.concurrent.RejectedExecutionException: queue is full")));
+        assertFalse(policy.isRetryable(new RpcRemoteException("java.lang.IllegalStateException: boom")));
+    }
+
+    /**
+     * 过载拒绝的请求没有被执行，不幂等的方法也可以重试
+     */
+    @Test
+    public void overloadIsAlwaysRetryable() throws NoSuchMethodException {
+        assertTrue(policy("unsentOnly").isRetryable(new RpcOverloadedException("overloaded")));
+    }
+
+    /**
+     * 退避上限从backoff开始每次翻倍，不超过maxBackoff
+     */
+    @Test
+    public void backoffIsBoundedAndCapped() throws NoSuchMethodException {
+        RetryPolicy policy = policy("backoff");
+        assertEquals(5, policy.getMaxAttempts());
+        long[] bounds = {10, 20, 25, 25};
+        for (int retry = 1; retry <= bounds.length; ++retry) {
+            for (int i = 0; i < 100; ++i) {
+                long backoff = policy.backoffNanos(retry);
+                assertTrue(backoff >= 0 && backoff <= TimeUnit.MILLISECONDS.toNanos(bounds[retry - 1]));
+            }
+        }
+    }
+}
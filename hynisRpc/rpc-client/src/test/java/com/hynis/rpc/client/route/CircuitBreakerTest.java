@@ -0,0 +1,144 @@
+package com.hynis.rpc.client.route;
+
+import com.hynis.rpc.client.config.ClientConfig;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author hynis
+ * @date 2026/10/18 20:50
+ */
+public class CircuitBreakerTest {
+
+    /**
+     * 只记录调度的任务与延迟，由测试手动执行，不需要等待真实的摘除时间
+     */
+    private static class ManualScheduler extends ScheduledThreadPoolExecutor {
+        private final List<Runnable> tasks = new ArrayList<>();
+        private final List<Long> delays = new ArrayList<>();
+
+        ManualScheduler() {
+            super(1);
+        }
+
+        @Override
+        public ScheduledFuture<?> schedule(Runnable command, long delay, TimeUnit unit) {
+            tasks.add(command);
+            delays.add(unit.toMillis(delay));
+            return null;
+        }
+
+        void runAll() {
+            List<Runnable> pending = new ArrayList<>(tasks);
+            tasks.clear();
+            for (Runnable task : pending) {
+                task.run();
+            }
+        }
+    }
+
+    private final AtomicInteger stateChanges = new AtomicInteger();
+    private ManualScheduler scheduler;
+    private CircuitBreaker breaker;
+
+    @Before
+    public void setUp() {
+        scheduler = new ManualScheduler();
+        breaker = new CircuitBreaker("test", stateChanges::incrementAndGet, scheduler);
+    }
+
+    @After
+    public void tearDown() {
+        scheduler.shutdownNow();
+    }
+
+    private void trip() {
+        for (int i = 0; i < ClientConfig.BREAKER_CONSECUTIVE_FAILURES; ++i) {
+            breaker.onFailure(0);
+        }
+    }
+
+    @Test
+    public void opensAfterConsecutiveFailures() {
+        for (int i = 0; i < ClientConfig.BREAKER_CONSECUTIVE_FAILURES - 1; ++i) {
+            breaker.onFailure(0);
+        }
+        // 成功的调用使连续失败次数重新计数
+        breaker.onSuccess(0);
+        for (int i = 0; i < ClientConfig.BREAKER_CONSECUTIVE_FAILURES - 1; ++i) {
+            breaker.onFailure(0);
+        }
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        assertEquals(0, stateChanges.get());
+
+        breaker.onFailure(0);
+        assertTrue(breaker.isOpen());
+        assertEquals(1, stateChanges.get());
+        assertEquals(Long.valueOf(ClientConfig.BREAKER_BASE_EJECTION_TIME), scheduler.delays.get(0));
+    }
+
+    @Test
+    public void halfOpenClosesAfterProbesSucceed() {
+        trip();
+        // 摘除期间的结果不再计入
+        breaker.onSuccess(0);
+        assertTrue(breaker.isOpen());
+
+        scheduler.runAll();
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        assertEquals(2, stateChanges.get());
+        for (int i = 0; i < ClientConfig.BREAKER_HALF_OPEN_PROBES; ++i) {
+            assertTrue(breaker.allowRequest());
+        }
+        // 探测请求数已满，其余请求改选其他节点
+        assertFalse(breaker.allowRequest());
+
+        for (int i = 0; i < ClientConfig.BREAKER_HALF_OPEN_PROBES - 1; ++i) {
+            breaker.onSuccess(0);
+            assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        }
+        breaker.onSuccess(0);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        assertEquals(3, stateChanges.get());
+        assertTrue(breaker.allowRequest());
+    }
+
+    @Test
+    public void probeFailureReopensWithLongerEjection() {
+        trip();
+        scheduler.runAll();
+        assertTrue(breaker.allowRequest());
+        breaker.onFailure(0);
+
+        assertTrue(breaker.isOpen());
+        assertEquals(Long.valueOf(Math.min(ClientConfig.BREAKER_BASE_EJECTION_TIME * 2,
+                ClientConfig.BREAKER_MAX_EJECTION_TIME)), scheduler.delays.get(1));
+    }
+
+    @Test
+    public void opensWhenFailureRateExceeded() {
+        // 失败与成功交替，连续失败次数不会达到阈值，但失败率达到50%
+        for (int i = 0; i < ClientConfig.BREAKER_MIN_REQUESTS - 1; ++i) {
+            if (i % 2 == 0) {
+                breaker.onFailure(0);
+            } else {
+                breaker.onSuccess(0);
+            }
+        }
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        breaker.onFailure(0);
+        assertTrue(breaker.isOpen());
+    }
+}
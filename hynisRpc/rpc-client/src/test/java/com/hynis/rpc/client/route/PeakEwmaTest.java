@@ -0,0 +1,41 @@
+package com.hynis.rpc.client.route;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author hynis
+ * @date 2026/10/18 18:25
+ */
+public class PeakEwmaTest {
+
+    @Test
+    public void peakIsTakenImmediately() {
+        PeakEwma peakEwma = new PeakEwma(10000);
+        peakEwma.observe(TimeUnit.MILLISECONDS.toNanos(1));
+        peakEwma.observe(TimeUnit.MILLISECONDS.toNanos(100));
+        assertTrue(peakEwma.getCost() > TimeUnit.MILLISECONDS.toNanos(99));
+        // 等待中的请求数放大负载
+        assertTrue(peakEwma.getLoad(3) > 3 * peakEwma.getCost());
+    }
+
+    @Test
+    public void costDecaysAfterPeak() throws InterruptedException {
+        PeakEwma peakEwma = new PeakEwma(10);
+        peakEwma.observe(TimeUnit.MILLISECONDS.toNanos(100));
+        Thread.sleep(100);
+        peakEwma.observe(TimeUnit.MILLISECONDS.toNanos(1));
+        assertTrue(peakEwma.getCost() < TimeUnit.MILLISECONDS.toNanos(2));
+    }
+
+    @Test
+    public void nodeWithoutSamplesIsPenalizedWhenBusy() {
+        PeakEwma peakEwma = new PeakEwma(10000);
+        assertEquals(0.0, peakEwma.getLoad(0), 0.0);
+        assertTrue(peakEwma.getLoad(1) > TimeUnit.SECONDS.toNanos(3600));
+    }
+}
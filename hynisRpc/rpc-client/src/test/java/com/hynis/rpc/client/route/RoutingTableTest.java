@@ -0,0 +1,136 @@
+package com.hynis.rpc.client.route;
+
+import com.hynis.rpc.client.connect.ServerNode;
+import com.hynis.rpc.common.protocol.RpcProtocol;
+import com.hynis.rpc.common.protocol.RpcServiceInfo;
+import io.netty.bootstrap.Bootstrap;
+import io.netty.channel.DefaultEventLoopGroup;
+import io.netty.channel.EventLoopGroup;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+/**
+ * @author hynis
+ * @date 2026/10/18 16:55
+ */
+public class RoutingTableTest {
+    /**
+     * 熔断器用来调度半开状态转换，测试中不会真正建立连接
+     */
+    private static final EventLoopGroup GROUP = new DefaultEventLoopGroup(1);
+
+    /**
+     * 不建立连接的服务器节点，是否可用由测试直接设置
+     */
+    private static class Node extends ServerNode {
+        private volatile boolean available = true;
+
+        Node(int port, String... serviceNames) {
+            super(protocol(port, serviceNames), new Bootstrap().group(GROUP), 1, 1000, () -> { });
+        }
+
+        @Override
+        public boolean isAvailable() {
+            return available;
+        }
+
+        /**
+         * 连续失败直到熔断器打开
+         */
+        void eject() {
+            while (!getCircuitBreaker().isOpen()) {
+                getCircuitBreaker().onFailure(0);
+            }
+        }
+    }
+
+    private static RpcProtocol protocol(int port, String... serviceNames) {
+        List<RpcServiceInfo> serviceInfoList = new ArrayList<>();
+        for (String serviceName : serviceNames) {
+            RpcServiceInfo serviceInfo = new RpcServiceInfo();
+            serviceInfo.setServiceName(serviceName);
+            serviceInfo.setVersion("1.0");
+            serviceInfoList.add(serviceInfo);
+        }
+        RpcProtocol rpcProtocol = new RpcProtocol();
+        rpcProtocol.setHost("127.0.0.1");
+        rpcProtocol.setPort(port);
+        rpcProtocol.setServiceInfoList(serviceInfoList);
+        return rpcProtocol;
+    }
+
+    @Test
+    public void groupsNodesByServiceKey() {
+        Node a = new Node(8001, "HelloService", "EchoService");
+        Node b = new Node(8002, "HelloService");
+        RoutingTable routingTable = RoutingTable.build(Arrays.<ServerNode>asList(a, b), 50);
+
+        assertFalse(routingTable.isEmpty());
+        // 服务名为接口名+版本号
+        assertArrayEquals(new ServerNode[]{a, b}, routingTable.getNodes("HelloService#1.0"));
+        assertArrayEquals(new ServerNode[]{a}, routingTable.getNodes("EchoService#1.0"));
+        assertNull(routingTable.getNodes("HelloService"));
+        assertNull(routingTable.getNodes("UnknownService#1.0"));
+    }
+
+    @Test
+    public void skipsUnavailableNodes() {
+        Node a = new Node(8001, "HelloService");
+        Node b = new Node(8002, "HelloService");
+        b.available = false;
+        assertArrayEquals(new ServerNode[]{a},
+                RoutingTable.build(Arrays.<ServerNode>asList(a, b), 50).getNodes("HelloService#1.0"));
+
+        a.available = false;
+        assertSame(RoutingTable.EMPTY, RoutingTable.build(Arrays.<ServerNode>asList(a, b), 50));
+        assertSame(RoutingTable.EMPTY, RoutingTable.build(Collections.<ServerNode>emptyList(), 50));
+    }
+
+    /**
+     * 服务端只接受服务声明的序列化器，本地没有该序列化器的服务不路由到对应的节点
+     */
+    @Test
+    public void skipsServicesWithMissingSerializer() {
+        Node a = new Node(8001, "HelloService");
+        Node b = new Node(8002, "HelloService");
+        a.getRpcProtocol().getServiceInfoList().get(0).setSerializer("unknown");
+        RoutingTable routingTable = RoutingTable.build(Arrays.<ServerNode>asList(a, b), 50);
+        assertArrayEquals(new ServerNode[]{b}, routingTable.getNodes("HelloService#1.0"));
+
+        routingTable = RoutingTable.build(Collections.<ServerNode>singletonList(a), 50);
+        assertFalse(routingTable.isEmpty());
+        assertNull(routingTable.getNodes("HelloService#1.0"));
+        assertEquals("unknown", routingTable.getMissingSerializer("HelloService#1.0"));
+        assertNull(routingTable.getMissingSerializer("EchoService#1.0"));
+    }
+
+    @Test
+    public void ejectsOpenNodesUpToMaxPercent() {
+        Node a = new Node(8001, "HelloService");
+        Node b = new Node(8002, "HelloService");
+        Node c = new Node(8003, "HelloService");
+        Node d = new Node(8004, "HelloService");
+        List<ServerNode> nodes = Arrays.<ServerNode>asList(a, b, c, d);
+
+        a.eject();
+        assertArrayEquals(new ServerNode[]{b, c, d}, RoutingTable.build(nodes, 50).getNodes("HelloService#1.0"));
+
+        // 最多摘除4 * 50% = 2个节点，其余熔断器打开的节点仍然参与路由
+        b.eject();
+        c.eject();
+        assertArrayEquals(new ServerNode[]{c, d}, RoutingTable.build(nodes, 50).getNodes("HelloService#1.0"));
+
+        // 节点太少，一个都不能摘除
+        assertEquals(3, RoutingTable.build(Arrays.<ServerNode>asList(a, b, d), 10).getNodes("HelloService#1.0").length);
+    }
+}
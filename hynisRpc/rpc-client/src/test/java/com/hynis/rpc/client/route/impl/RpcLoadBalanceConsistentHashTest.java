@@ -0,0 +1,88 @@
+package com.hynis.rpc.client.route.impl;
+
+import com.hynis.rpc.client.connect.ServerNode;
+import com.hynis.rpc.client.connect.TestServerNode;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author hynis
+ * @date 2026/10/18 18:45
+ */
+public class RpcLoadBalanceConsistentHashTest {
+
+    private static final int KEYS = 10000;
+
+    private static ServerNode[] nodes(int count) {
+        ServerNode[] nodes = new ServerNode[count];
+        for (int i = 0; i < count; ++i) {
+            nodes[i] = new TestServerNode(8001 + i, "HelloService");
+        }
+        return nodes;
+    }
+
+    private static Map<String, Integer> route(RpcLoadBalanceConsistentHash loadBalance, ServerNode[] nodes) {
+        Map<String, Integer> ports = new HashMap<>();
+        for (int i = 0; i < KEYS; ++i) {
+            String key = "user-" + i;
+            ports.put(key, loadBalance.route("HelloService", nodes, key).getRpcProtocol().getPort());
+        }
+        return ports;
+    }
+
+    @Test
+    public void sameKeyRoutesToSameNode() {
+        ServerNode[] nodes = nodes(4);
+        RpcLoadBalanceConsistentHash loadBalance = new RpcLoadBalanceConsistentHash();
+        ServerNode first = loadBalance.route("HelloService", nodes, 42L);
+        for (int i = 0; i < 100; ++i) {
+            assertSame(first, loadBalance.route("HelloService", nodes, 42L));
+        }
+        // 不同的客户端（节点数组顺序不同）得到相同的结果
+        ServerNode[] reversed = {nodes[3], nodes[2], nodes[1], nodes[0]};
+        assertSame(first, new RpcLoadBalanceConsistentHash().route("HelloService", reversed, 42L));
+    }
+
+    @Test
+    public void removingNodeOnlyMovesItsKeys() {
+        ServerNode[] nodes = nodes(5);
+        RpcLoadBalanceConsistentHash loadBalance = new RpcLoadBalanceConsistentHash();
+        Map<String, Integer> before = route(loadBalance, nodes);
+
+        ServerNode[] remaining = {nodes[0], nodes[1], nodes[3], nodes[4]};
+        int removedPort = nodes[2].getRpcProtocol().getPort();
+        Map<String, Integer> after = route(loadBalance, remaining);
+        for (Map.Entry<String, Integer> entry : before.entrySet()) {
+            if (entry.getValue() != removedPort) {
+                assertEquals(entry.getKey(), entry.getValue(), after.get(entry.getKey()));
+            }
+        }
+    }
+
+    @Test
+    public void keysAreSpreadByWeight() {
+        ServerNode[] nodes = {new TestServerNode(8001, 1, "HelloService"), new TestServerNode(8002, 3, "HelloService")};
+        Map<String, Integer> ports = route(new RpcLoadBalanceConsistentHash(), nodes);
+        int light = 0;
+        for (int port : ports.values()) {
+            if (port == 8001) {
+                ++light;
+            }
+        }
+        // 期望为1/4，虚拟节点的分布有一定的偏差
+        assertTrue(String.valueOf(light), light > KEYS * 0.15 && light < KEYS * 0.35);
+    }
+
+    @Test
+    public void routesByServiceKeyWithoutRouteKey() {
+        ServerNode[] nodes = nodes(3);
+        RpcLoadBalanceConsistentHash loadBalance = new RpcLoadBalanceConsistentHash();
+        assertSame(loadBalance.route("HelloService", nodes, "HelloService"), loadBalance.route("HelloService", nodes, null));
+    }
+}
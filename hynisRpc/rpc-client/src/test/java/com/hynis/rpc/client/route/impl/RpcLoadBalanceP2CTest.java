@@ -0,0 +1,68 @@
+package com.hynis.rpc.client.route.impl;
+
+import com.hynis.rpc.client.connect.ServerNode;
+import com.hynis.rpc.client.connect.TestServerNode;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author hynis
+ * @date 2026/10/18 17:35
+ */
+public class RpcLoadBalanceP2CTest {
+
+    private final RpcLoadBalanceP2C loadBalance = new RpcLoadBalanceP2C();
+
+    @Test
+    public void prefersNodeWithFewerPendingRequests() {
+        TestServerNode idle = new TestServerNode(8001, "HelloService");
+        TestServerNode busy = new TestServerNode(8002, "HelloService");
+        busy.setPendingCount(10);
+        ServerNode[] nodes = {idle, busy};
+        for (int i = 0; i < 100; ++i) {
+            assertSame(idle, loadBalance.route("HelloService", nodes));
+        }
+    }
+
+    @Test
+    public void heavierNodeTakesMorePendingRequests() {
+        TestServerNode light = new TestServerNode(8001, 1, "HelloService");
+        TestServerNode heavy = new TestServerNode(8002, 4, "HelloService");
+        // (3 + 1) / 4 < (1 + 1) / 1
+        heavy.setPendingCount(3);
+        light.setPendingCount(1);
+        ServerNode[] nodes = {light, heavy};
+        for (int i = 0; i < 100; ++i) {
+            assertSame(heavy, loadBalance.route("HelloService", nodes));
+        }
+    }
+
+    /**
+     * 最忙的节点永远不会同时是两个候选中等待数较少的一个，其余节点按等待数从少到多依次分到更少的请求
+     */
+    @Test
+    public void neverChoosesBusiestNode() {
+        ServerNode[] nodes = new ServerNode[4];
+        for (int i = 0; i < nodes.length; ++i) {
+            TestServerNode node = new TestServerNode(8001 + i, "HelloService");
+            node.setPendingCount(i);
+            nodes[i] = node;
+        }
+        int[] counts = new int[nodes.length];
+        for (int i = 0; i < 10000; ++i) {
+            ++counts[loadBalance.route("HelloService", nodes).getPendingCount()];
+        }
+        assertTrue(counts[0] > counts[1] && counts[1] > counts[2]);
+        assertEquals(0, counts[3]);
+    }
+
+    @Test
+    public void singleNodeIsAlwaysChosen() {
+        TestServerNode node = new TestServerNode(8001, "HelloService");
+        node.setPendingCount(100);
+        assertSame(node, loadBalance.route("HelloService", new ServerNode[]{node}));
+    }
+}
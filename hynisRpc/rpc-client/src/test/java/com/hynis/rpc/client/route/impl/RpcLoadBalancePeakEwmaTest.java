@@ -0,0 +1,38 @@
+package com.hynis.rpc.client.route.impl;
+
+import com.hynis.rpc.client.connect.ServerNode;
+import com.hynis.rpc.client.connect.TestServerNode;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertSame;
+
+/**
+ * @author hynis
+ * @date 2026/10/18 18:30
+ */
+public class RpcLoadBalancePeakEwmaTest {
+
+    private final RpcLoadBalancePeakEwma loadBalance = new RpcLoadBalancePeakEwma();
+
+    @Test
+    public void prefersNodeWithLowerLoad() {
+        TestServerNode fast = new TestServerNode(8001, "HelloService");
+        TestServerNode slow = new TestServerNode(8002, "HelloService");
+        fast.setPeakEwmaLoad(TimeUnit.MILLISECONDS.toNanos(1));
+        slow.setPeakEwmaLoad(TimeUnit.MILLISECONDS.toNanos(50));
+        ServerNode[] nodes = {fast, slow};
+        for (int i = 0; i < 100; ++i) {
+            assertSame(fast, loadBalance.route("HelloService", nodes));
+        }
+
+        // 按权重折算：50 / 100 < 1 / 1
+        TestServerNode heavy = new TestServerNode(8003, 100, "HelloService");
+        heavy.setPeakEwmaLoad(TimeUnit.MILLISECONDS.toNanos(50));
+        ServerNode[] weighted = {fast, heavy};
+        for (int i = 0; i < 100; ++i) {
+            assertSame(heavy, loadBalance.route("HelloService", weighted));
+        }
+    }
+}
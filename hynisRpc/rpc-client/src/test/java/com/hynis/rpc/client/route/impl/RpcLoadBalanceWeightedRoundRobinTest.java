@@ -0,0 +1,55 @@
+package com.hynis.rpc.client.route.impl;
+
+import com.hynis.rpc.client.connect.ServerNode;
+import com.hynis.rpc.client.connect.TestServerNode;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * @author hynis
+ * @date 2026/10/18 19:05
+ */
+public class RpcLoadBalanceWeightedRoundRobinTest {
+
+    private final RpcLoadBalanceWeightedRoundRobin loadBalance = new RpcLoadBalanceWeightedRoundRobin();
+
+    @Test
+    public void distributionFollowsWeights() {
+        ServerNode[] nodes = {new TestServerNode(8001, 1, "HelloService"),
+                new TestServerNode(8002, 2, "HelloService"), new TestServerNode(8003, 5, "HelloService")};
+        int[] counts = new int[nodes.length];
+        for (int i = 0; i < 800; ++i) {
+            ServerNode node = loadBalance.route("HelloService", nodes);
+            ++counts[node.getRpcProtocol().getPort() - 8001];
+        }
+        assertArrayEquals(new int[]{100, 200, 500}, counts);
+    }
+
+    /**
+     * 与Nginx相同的平滑加权轮询：权重5、1、1时的选择顺序为 a a b a c a a
+     */
+    @Test
+    public void selectionIsSmooth() {
+        ServerNode a = new TestServerNode(8001, 5, "HelloService");
+        ServerNode b = new TestServerNode(8002, 1, "HelloService");
+        ServerNode c = new TestServerNode(8003, 1, "HelloService");
+        ServerNode[] nodes = {a, b, c};
+        ServerNode[] expected = {a, a, b, a, c, a, a};
+        ServerNode[] actual = new ServerNode[expected.length];
+        for (int i = 0; i < expected.length; ++i) {
+            actual[i] = loadBalance.route("HelloService", nodes);
+        }
+        assertArrayEquals(expected, actual);
+    }
+
+    @Test
+    public void equalWeightsDegradeToRoundRobin() {
+        ServerNode[] nodes = {new TestServerNode(8001, 0, "HelloService"),
+                new TestServerNode(8002, 0, "HelloService"), new TestServerNode(8003, 0, "HelloService")};
+        for (int i = 0; i < 9; ++i) {
+            assertEquals(nodes[i % 3], loadBalance.route("HelloService", nodes));
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package com.hynis.rpc.common.annotation;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * @author hynis
+ * @date 2026/10/18 23:10
+ *
+ * 舱壁隔离：标注在服务接口或者实现类的方法上，该方法在名为value的独立线程池中执行，
+ * 同名的方法（可以属于不同的服务）共用一个线程池；整个服务的隔离见RpcService.bulkhead
+ * 线程池的大小见ServerConfig.bulkheadThreads与ServerConfig.bulkheadQueueSize
+ * 线程池满时服务端直接返回过载响应，耗时的方法不会占满其他服务的线程
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface RpcBulkhead {
+    /**
+     * 线程池名称
+     */
+    String value();
+}
@@ -0,0 +1,28 @@
+package com.hynis.rpc.common.annotation;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * @author hynis
+ * @date 2026/10/18 21:10
+ *
+ * 对冲请求：标注在服务接口的方法上，第一个请求超过一定时间还没有完成时，向另一个服务器节点再发送一次，取先返回的结果
+ * 同一个调用可能在两个节点上执行，只能用于幂等的方法（如查询）
+ * 对冲请求数受预算限制（见ClientConfig.HEDGE_BUDGET_RATIO），不会成倍放大服务端的负载
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface RpcHedge {
+    /**
+     * 固定的对冲延迟，单位毫秒，大于0时使用该值，否则使用percentile
+     */
+    long delay() default 0;
+
+    /**
+     * 对冲延迟取该方法最近响应时间的百分位数（0~100），样本不足时不发送对冲请求
+     */
+    double percentile() default 95;
+}
@@ -0,0 +1,19 @@
+package com.hynis.rpc.common.annotation;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * @author hynis
+ * @date 2026/10/19 10:40
+ *
+ * 单向调用：标注在服务接口的返回值为void的方法上，客户端把请求放入发送队列后立即返回，
+ * 服务端执行后不返回响应；调用方无法得知服务端是否执行成功，不进行对冲与重试
+ * 通过call(funcName, args)异步调用时，返回的RpcFuture在请求写出后完成，结果为null
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface RpcOneway {
+}
@@ -0,0 +1,49 @@
+package com.hynis.rpc.common.annotation;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * @author hynis
+ * @date 2026/10/18 21:55
+ *
+ * 自动重试：标注在服务接口的方法上，调用失败时换一个没有失败过的服务器节点重试，两次重试之间随机退避
+ * 默认只重试一定没有被服务端执行的请求（请求没有写出、服务端过载拒绝），idempotent为true时连接断开的请求也会重试，
+ * 其他失败（如超时、服务端的某些异常）需要通过retryOn与retryOnErrors指定
+ * 重试次数受每个服务的预算限制（见ClientConfig.RETRY_BUDGET_RATIO），服务端大面积出错时重试不会放大负载
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface RpcRetry {
+    /**
+     * 最多尝试的次数，包括第一次
+     */
+    int maxAttempts() default 3;
+
+    /**
+     * 第一次重试的退避上限，单位毫秒，之后每次翻倍，实际退避时间在0到上限之间随机选取
+     */
+    long backoff() default 10;
+
+    /**
+     * 退避时间的最大值，单位毫秒
+     */
+    long maxBackoff() default 1000;
+
+    /**
+     * 方法是否幂等，幂等的方法在连接断开（请求可能已经被执行）时也会重试
+     */
+    boolean idempotent() default false;
+
+    /**
+     * 需要重试的本地异常类型，如RpcTimeoutException
+     */
+    Class<? extends Throwable>[] retryOn() default {};
+
+    /**
+     * 需要重试的服务端异常的类名，如"java.util.concurrent.RejectedExecutionException"
+     */
+    String[] retryOnErrors() default {};
+}
@@ -0,0 +1,25 @@
+package com.hynis.rpc.common.annotation;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * @author hynis
+ * @date 2026/10/18 19:30
+ *
+ * 标注在服务接口的方法上，指定用哪一个参数作为路由key
+ * 使用一致性哈希负载均衡（RpcLoadBalanceConsistentHash）时，路由key相同的请求会落到同一个服务器节点上，
+ * 便于利用服务端的本地缓存；没有标注的方法按服务名路由
+ * 路由key按参数的toString()计算哈希，toString()必须按值生成（String、数字、枚举或者重写了toString()的类），
+ * 数组按元素内容生成；参数类型没有重写toString()时创建代理失败
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface RpcRouteKey {
+    /**
+     * 作为路由key的参数下标，从0开始
+     */
+    int value() default 0;
+}
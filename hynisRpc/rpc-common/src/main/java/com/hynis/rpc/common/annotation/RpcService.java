@@ -27,4 +27,22 @@ public @interface RpcService {
      * 服务的版本号
       */
     String version() default "";
+
+    /**
+     * 服务使用的序列化器名称，如protostuff、kryo、hessian、json，为空时使用默认序列化器
+     * 名称会随服务信息注册到注册中心，客户端调用该服务时使用同一个序列化器
+     */
+    String serializer() default "";
+
+    /**
+     * 服务使用的压缩器名称，如snappy、lz4，为空时不压缩
+     * 只有序列化后不小于压缩阈值（CodecConfig.COMPRESS_THRESHOLD）的消息体才会被压缩
+     */
+    String compressor() default "";
+
+    /**
+     * 服务使用的舱壁（独立线程池）名称，同名的服务共用一个线程池，为空时使用服务端的公共线程池
+     * 方法上的RpcBulkhead优先于这里的设置
+     */
+    String bulkhead() default "";
 }
@@ -0,0 +1,156 @@
+package com.hynis.rpc.common.codec;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.CompositeByteBuf;
+import io.netty.channel.ChannelDuplexHandler;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
+import lombok.extern.slf4j.Slf4j;
+
+import java.nio.channels.ClosedChannelException;
+import java.util.ArrayDeque;
+import java.util.Queue;
+
+/**
+ * @author hynis
+ * @date 2026/10/17 23:20
+ *
+ * 分块写出：RpcMsgEncoder编码后的帧如果超过MAX_FRAME_LENGTH，就拆分为多个分块帧写出
+ * 1、不超过MAX_FRAME_LENGTH的帧直接写出，不会排在大消息的后面
+ * 2、多个大消息轮流写出一个分块，并且只在通道可写时写出，避免一个大消息占满发送缓冲区而阻塞其他调用
+ * 需要放在RpcMsgEncoder之前（更靠近pipeline头部），只在EventLoop线程中执行，不需要加锁
+ */
+@Slf4j
+public class ChunkedFrameWriter extends ChannelDuplexHandler {
+
+    /**
+     * 等待写出的大消息
+     */
+    private final Queue<ChunkStream> streams = new ArrayDeque<>();
+
+    @Override
+    public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
+        if (msg instanceof ByteBuf && ((ByteBuf) msg).readableBytes() > ProtocolConstant.MAX_FRAME_LENGTH) {
+            streams.add(new ChunkStream((ByteBuf) msg, promise));
+            return;
+        }
+        ctx.write(msg, promise);
+    }
+
+    @Override
+    public void flush(ChannelHandlerContext ctx) throws Exception {
+        writeChunks(ctx);
+        ctx.flush();
+    }
+
+    @Override
+    public void channelWritabilityChanged(ChannelHandlerContext ctx) throws Exception {
+        if (ctx.channel().isWritable()) {
+            writeChunks(ctx);
+            ctx.flush();
+        }
+        super.channelWritabilityChanged(ctx);
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        failStreams(new ClosedChannelException());
+        super.channelInactive(ctx);
+    }
+
+    @Override
+    public void handlerRemoved(ChannelHandlerContext ctx) throws Exception {
+        failStreams(new ClosedChannelException());
+    }
+
+    /**
+     * 轮流从每个大消息中取出一个分块写出，直到通道不可写或者所有大消息都已写完
+     * @param ctx
+     */
+    private void writeChunks(ChannelHandlerContext ctx) {
+        while (ctx.channel().isWritable() && !streams.isEmpty()) {
+            ChunkStream stream = streams.poll();
+            if (!stream.writeChunk(ctx)) {
+                streams.add(stream);
+            }
+        }
+    }
+
+    private void failStreams(Throwable cause) {
+        ChunkStream stream;
+        while ((stream = streams.poll()) != null) {
+            stream.fail(cause);
+        }
+    }
+
+    /**
+     * 一个正在分块写出的大消息
+     */
+    private static class ChunkStream {
+        /**
+         * 编码后的完整帧：消息头 + 消息体
+         */
+        private final ByteBuf frame;
+        private final ChannelPromise promise;
+        private final int headerIndex;
+        private final byte flags;
+
+        ChunkStream(ByteBuf frame, ChannelPromise promise) {
+            this.frame = frame;
+            this.promise = promise;
+            this.headerIndex = frame.readerIndex();
+            this.flags = frame.getByte(headerIndex + ProtocolConstant.FLAGS_OFFSET);
+            // 之后只读取消息体
+            frame.skipBytes(ProtocolConstant.HEADER_LENGTH);
+        }
+
+        /**
+         * 写出下一个分块：复制原来的消息头，修改flags与长度，后面跟消息体的切片（不拷贝）
+         * @param ctx
+         * @return 是否已经写出最后一个分块
+         */
+        boolean writeChunk(ChannelHandlerContext ctx) {
+            int length = Math.min(frame.readableBytes(), ProtocolConstant.MAX_CHUNK_LENGTH);
+            boolean last = length == frame.readableBytes();
+
+            ByteBuf header = ctx.alloc().buffer(ProtocolConstant.HEADER_LENGTH);
+            header.writeBytes(frame, headerIndex, ProtocolConstant.HEADER_LENGTH);
+            int chunkFlags = flags | ProtocolConstant.FLAG_CHUNK | (last ? ProtocolConstant.FLAG_LAST_CHUNK : 0);
+            header.setByte(ProtocolConstant.FLAGS_OFFSET, chunkFlags);
+            header.setInt(ProtocolConstant.LENGTH_FIELD_OFFSET, length);
+            CompositeByteBuf chunk = ctx.alloc().compositeBuffer(2);
+            chunk.addComponents(true, header, frame.readRetainedSlice(length));
+
+            if (last) {
+                frame.release();
+                ctx.write(chunk).addListener(new ChannelFutureListener() {
+                    @Override
+                    public void operationComplete(ChannelFuture future) throws Exception {
+                        if (future.isSuccess()) {
+                            promise.trySuccess();
+                        } else {
+                            promise.tryFailure(future.cause());
+                        }
+                    }
+                });
+            } else {
+                ctx.write(chunk).addListener(new ChannelFutureListener() {
+                    @Override
+                    public void operationComplete(ChannelFuture future) throws Exception {
+                        if (!future.isSuccess()) {
+                            promise.tryFailure(future.cause());
+                        }
+                    }
+                });
+            }
+            return last;
+        }
+
+        void fail(Throwable cause) {
+            frame.release();
+            promise.tryFailure(cause);
+        }
+    }
+}
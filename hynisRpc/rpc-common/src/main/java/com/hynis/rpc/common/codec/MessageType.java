@@ -0,0 +1,62 @@
+package com.hynis.rpc.common.codec;
+
+/**
+ * @author hynis
+ * @date 2026/10/17 20:05
+ *
+ * 消息类型，放在消息头中传输
+ */
+public enum MessageType {
+    /**
+     * 请求
+     */
+    REQUEST((byte) 1),
+    /**
+     * 响应
+     */
+    RESPONSE((byte) 2),
+    /**
+     * 心跳，没有消息体
+     */
+    HEARTBEAT((byte) 3),
+    /**
+     * 单向请求，服务端执行后不返回响应
+     */
+    ONEWAY((byte) 4),
+    /**
+     * 握手，客户端获取服务端的方法字典
+     */
+    HANDSHAKE((byte) 5);
+
+    private final byte code;
+
+    MessageType(byte code) {
+        this.code = code;
+    }
+
+    public byte getCode() {
+        return code;
+    }
+
+    /**
+     * 根据消息头中的类型码获取消息类型
+     * @param code
+     * @return 未知的类型码返回null
+     */
+    public static MessageType valueOf(byte code) {
+        switch (code) {
+            case 1:
+                return REQUEST;
+            case 2:
+                return RESPONSE;
+            case 3:
+                return HEARTBEAT;
+            case 4:
+                return ONEWAY;
+            case 5:
+                return HANDSHAKE;
+            default:
+                return null;
+        }
+    }
+}
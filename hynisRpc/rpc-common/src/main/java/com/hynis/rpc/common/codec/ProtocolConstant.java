@@ -0,0 +1,57 @@
+package com.hynis.rpc.common.codec;
+
+/**
+ * @author hynis
+ * @date 2026/10/17 20:02
+ *
+ * Rpc协议的数据帧格式：固定长度的消息头 + 消息体
+ * +-------+---------+------+------------+-------+-----------+--------+----------+
+ * | magic | version | type | serializer | flags | requestId | length |   body   |
+ * |  2B   |   1B    |  1B  |     1B     |  1B   |    8B     |   4B   | length B |
+ * +-------+---------+------+------------+-------+-----------+--------+----------+
+ * - magic：魔数，用于快速识别非法的数据帧
+ * - version：协议版本号
+ * - type：消息类型，见MessageType
+ * - serializer：消息体使用的序列化器ID
+ * - flags：标志位，高4位为压缩器ID（0表示未压缩），低4位中FLAG_CHUNK、FLAG_LAST_CHUNK标识分块传输
+ * - requestId：请求ID，由每个连接上的计数器生成，心跳固定为0
+ * - length：消息体长度
+ * 超过MAX_FRAME_LENGTH的消息会被拆分为多个分块帧，每个分块帧带有完整的消息头（相同的请求ID），
+ * 接收方按请求ID重组，见ChunkedFrameWriter与RpcMsgDecoder
+ */
+public class ProtocolConstant {
+    public static final short MAGIC = (short) 0x4879;
+    public static final byte VERSION = 1;
+
+    public static final int HEADER_LENGTH = 18;
+    /**
+     * flags在消息头中的偏移量
+     */
+    public static final int FLAGS_OFFSET = 5;
+    /**
+     * flags中压缩器ID的位置：高4位
+     */
+    public static final int FLAG_COMPRESS_SHIFT = 4;
+    /**
+     * 该帧是一个分块，消息体只是完整消息体的一部分
+     */
+    public static final int FLAG_CHUNK = 0x01;
+    /**
+     * 该帧是最后一个分块
+     */
+    public static final int FLAG_LAST_CHUNK = 0x02;
+    /**
+     * 长度字段在消息头中的偏移量与长度，供LengthFieldBasedFrameDecoder使用
+     */
+    public static final int LENGTH_FIELD_OFFSET = 14;
+    public static final int LENGTH_FIELD_LENGTH = 4;
+
+    /**
+     * 数据帧的最大长度
+     */
+    public static final int MAX_FRAME_LENGTH = 65536;
+    /**
+     * 每个分块帧中消息体的最大长度
+     */
+    public static final int MAX_CHUNK_LENGTH = MAX_FRAME_LENGTH - HEADER_LENGTH;
+}
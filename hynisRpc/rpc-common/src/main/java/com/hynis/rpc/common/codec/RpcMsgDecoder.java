@@ -1,51 +1,326 @@
 package com.hynis.rpc.common.codec;
 
+import com.hynis.rpc.common.compress.Compressor;
+import com.hynis.rpc.common.compress.CompressorRegistry;
+import com.hynis.rpc.common.config.Beat;
+import com.hynis.rpc.common.config.CodecConfig;
+import com.hynis.rpc.common.entity.RpcHandshake;
+import com.hynis.rpc.common.entity.RpcRequest;
+import com.hynis.rpc.common.entity.RpcResponse;
 import com.hynis.rpc.common.serializer.Serializer;
+import com.hynis.rpc.common.serializer.SerializerRegistry;
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.CompositeByteBuf;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.codec.ByteToMessageDecoder;
+import io.netty.handler.codec.CorruptedFrameException;
+import io.netty.util.collection.LongObjectHashMap;
+import io.netty.util.collection.LongObjectMap;
 import lombok.extern.slf4j.Slf4j;
 
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 /**
  * @author hynis
  * @date 2022/2/23 23:33
- * 解码器
+ * 解码器：按ProtocolConstant中的格式读取消息头，再根据消息类型与消息头中的序列化器ID反序列化消息体
+ * flags中带有压缩器ID时先把消息体解压到池化的临时缓冲区
+ * 分块传输的消息按请求ID把各个分块组合为CompositeByteBuf（不拷贝），收到最后一个分块后再解码，
+ * 每个连接上同时重组的消息数量与缓存的字节数都有上限，超过时关闭连接，对端不能无限占用内存
+ * 无法解码的请求直接返回错误响应，无法解码的响应以错误结束对应的调用，调用方不必等到超时；
+ * 魔数、版本号或者消息类型非法时，之后的数据也无法再正确解析，直接关闭连接
+ * 服务端只接受服务声明的序列化器（见acceptedSerializerIds），不会用其他已注册的序列化器解析对端发来的数据
  */
 @Slf4j
 public class RpcMsgDecoder extends ByteToMessageDecoder {
 
-    private Class<?> genericClass;
-    private Serializer serializer;
+    private final SerializerRegistry serializerRegistry = SerializerRegistry.getInstance();
+    private final CompressorRegistry compressorRegistry = CompressorRegistry.getInstance();
+    /**
+     * 消息体（分块重组后）的最大长度
+     */
+    private final int maxMessageLength;
+    /**
+     * 正在接收的分块消息，key为请求ID，不同请求的分块可以交替到达
+     * 解码器只在该连接的EventLoop线程中执行，不需要加锁
+     */
+    private final LongObjectMap<CompositeByteBuf> chunkMap = new LongObjectHashMap<>();
+    /**
+     * 超过最大长度而被丢弃的分块消息，之后的分块直接跳过，直到最后一个分块
+     */
+    private final Set<Long> discardedChunks = new HashSet<>();
+    /**
+     * 同时在重组（包括正在丢弃）的分块消息的最大数量
+     */
+    private final int maxChunkedMessages;
+    /**
+     * 为重组分块消息缓存的最大字节数
+     */
+    private final long maxChunkedBytes;
+    /**
+     * chunkMap中已经缓存的字节数
+     */
+    private long chunkedBytes;
+    /**
+     * 接受的序列化器ID，为null时接受所有已注册的序列化器（客户端）
+     * 服务端传入服务声明的序列化器ID（注册服务时更新），默认序列化器（握手使用）总是接受
+     */
+    private final Set<Byte> acceptedSerializerIds;
 
-    public RpcMsgDecoder(Class<?> genericClass, Serializer serializer) {
-        this.genericClass = genericClass;
-        this.serializer = serializer;
+    public RpcMsgDecoder() {
+        this(CodecConfig.MAX_MESSAGE_LENGTH);
     }
+
+    public RpcMsgDecoder(int maxMessageLength) {
+        this(maxMessageLength, null);
+    }
+
+    public RpcMsgDecoder(Set<Byte> acceptedSerializerIds) {
+        this(CodecConfig.MAX_MESSAGE_LENGTH, acceptedSerializerIds);
+    }
+
+    public RpcMsgDecoder(int maxMessageLength, Set<Byte> acceptedSerializerIds) {
+        this(maxMessageLength, CodecConfig.MAX_CHUNKED_MESSAGES, CodecConfig.MAX_CHUNKED_BYTES, acceptedSerializerIds);
+    }
+
+    public RpcMsgDecoder(int maxMessageLength, int maxChunkedMessages, long maxChunkedBytes, Set<Byte> acceptedSerializerIds) {
+        this.maxMessageLength = maxMessageLength;
+        this.maxChunkedMessages = maxChunkedMessages;
+        this.maxChunkedBytes = maxChunkedBytes;
+        this.acceptedSerializerIds = acceptedSerializerIds;
+    }
+
     @Override
     protected void decode(ChannelHandlerContext channelHandlerContext, ByteBuf in, List<Object> out) throws Exception {
-        // 小于一个int（即4个字节）将不再读取
-        if (in.readableBytes() < 4) {
+        // 不足一个消息头将不再读取
+        if (in.readableBytes() < ProtocolConstant.HEADER_LENGTH) {
             return;
         }
         // 标记当前读的位置
         in.markReaderIndex();
-        // 读一个int，这个int标记了长度
+        short magic = in.readShort();
+        byte version = in.readByte();
+        if (magic != ProtocolConstant.MAGIC || version != ProtocolConstant.VERSION) {
+            throw protocolError(channelHandlerContext, in, "Invalid frame, magic: " + magic + ", version: " + version);
+        }
+        byte type = in.readByte();
+        byte serializerId = in.readByte();
+        byte flags = in.readByte();
+        long requestId = in.readLong();
         int dataLength = in.readInt();
         // 检查剩余的可读字节数是否足够读取完整的数据，如果不足则回退到之前标记的读取位置并返回
         if (in.readableBytes() < dataLength) {
             in.resetReaderIndex();
             return;
         }
-        byte[] data = new byte[dataLength];
-        in.readBytes(data);
-        Object obj = null;
+        boolean chunk = (flags & ProtocolConstant.FLAG_CHUNK) != 0;
+        boolean lastChunk = (flags & ProtocolConstant.FLAG_LAST_CHUNK) != 0;
+
+        MessageType messageType = MessageType.valueOf(type);
+        if (messageType == null) {
+            throw protocolError(channelHandlerContext, in, "Unknown message type: " + type + ", request id: " + requestId);
+        }
+        if (chunk && discardedChunks.contains(requestId)) {
+            skipFrame(in, dataLength, true, lastChunk, requestId);
+            return;
+        }
+        // 新的分块消息（包括之后会被丢弃的）：同时在重组的消息数量达到上限时关闭连接
+        if (chunk && !chunkMap.containsKey(requestId) && chunkMap.size() + discardedChunks.size() >= maxChunkedMessages) {
+            throw protocolError(channelHandlerContext, in, "Too many chunked messages in progress: " + maxChunkedMessages);
+        }
+        Serializer serializer = serializerRegistry.getSerializer(serializerId);
+        if (serializer == null) {
+            log.error("Unsupported serializer: {}, request id: {}", serializerId, requestId);
+            discardMessage(in, dataLength, chunk, lastChunk, requestId);
+            failMessage(channelHandlerContext, messageType, requestId, "Unsupported serializer: " + serializerId, out);
+            return;
+        }
+        if (!isAccepted(serializer)) {
+            log.error("Serializer {} is not accepted, request id: {}", serializer.getName(), requestId);
+            discardMessage(in, dataLength, chunk, lastChunk, requestId);
+            failMessage(channelHandlerContext, messageType, requestId, "Serializer " + serializer.getName() + " is not accepted", out);
+            return;
+        }
+        byte compressorId = (byte) ((flags & 0xFF) >>> ProtocolConstant.FLAG_COMPRESS_SHIFT);
+        Compressor compressor = null;
+        if (compressorId != 0) {
+            compressor = compressorRegistry.getCompressor(compressorId);
+            if (compressor == null) {
+                log.error("Unsupported compressor: {}, request id: {}", compressorId, requestId);
+                discardMessage(in, dataLength, chunk, lastChunk, requestId);
+                failMessage(channelHandlerContext, messageType, requestId, "Unsupported compressor: " + compressorId, out);
+                return;
+            }
+        }
+
+        if (!chunk) {
+            // 直接从帧中切出数据部分交给序列化器，不再拷贝到新的byte[]中
+            // 帧在本次decode之后即被完整读取，由ByteToMessageDecoder负责释放
+            decodeBody(channelHandlerContext, in.readSlice(dataLength), messageType, serializer, compressor,
+                    serializerId, compressorId, requestId, out);
+            return;
+        }
+        CompositeByteBuf composite = chunkMap.get(requestId);
+        if (composite == null) {
+            composite = channelHandlerContext.alloc().compositeBuffer(Integer.MAX_VALUE);
+            chunkMap.put(requestId, composite);
+        }
+        if (composite.readableBytes() + dataLength > maxMessageLength) {
+            log.error("Chunked message exceeds max length {}, request id: {}", maxMessageLength, requestId);
+            discardMessage(in, dataLength, true, lastChunk, requestId);
+            // 让调用方尽快失败，而不是一直等到超时
+            failMessage(channelHandlerContext, messageType, requestId, "Message exceeds max length " + maxMessageLength, out);
+            return;
+        }
+        if (chunkedBytes + dataLength > maxChunkedBytes) {
+            throw protocolError(channelHandlerContext, in, "Chunked messages exceed max buffered bytes: " + maxChunkedBytes);
+        }
+        // 保留帧中的数据部分而不是拷贝，重组后的消息体由多个分块组成
+        composite.addComponent(true, in.readRetainedSlice(dataLength));
+        chunkedBytes += dataLength;
+        if (!lastChunk) {
+            return;
+        }
+        chunkMap.remove(requestId);
+        chunkedBytes -= composite.readableBytes();
         try {
-            obj = serializer.deserialize(data, genericClass);
-            out.add(obj);
+            decodeBody(channelHandlerContext, composite, messageType, serializer, compressor,
+                    serializerId, compressorId, requestId, out);
+        } finally {
+            composite.release();
+        }
+    }
+
+    private void decodeBody(ChannelHandlerContext ctx, ByteBuf data, MessageType messageType,
+                            Serializer serializer, Compressor compressor, byte serializerId, byte compressorId,
+                            long requestId, List<Object> out) {
+        ByteBuf decompressed = null;
+        try {
+            if (compressor != null) {
+                decompressed = ctx.alloc().buffer();
+                compressor.decompress(data, decompressed, maxMessageLength);
+                data = decompressed;
+            }
+            switch (messageType) {
+                case HEARTBEAT:
+                    out.add(Beat.BEAT_PING);
+                    break;
+                case REQUEST:
+                case ONEWAY:
+                    RpcRequest request = (RpcRequest) serializer.deserialize(data, RpcRequest.class);
+                    request.setRequestId(requestId);
+                    request.setOneway(messageType == MessageType.ONEWAY);
+                    request.setSerializerId(serializerId);
+                    request.setCompressorId(compressorId);
+                    out.add(request);
+                    break;
+                case RESPONSE:
+                    RpcResponse response = (RpcResponse) serializer.deserialize(data, RpcResponse.class);
+                    response.setRequestId(requestId);
+                    response.setSerializerId(serializerId);
+                    response.setCompressorId(compressorId);
+                    out.add(response);
+                    break;
+                case HANDSHAKE:
+                    out.add(serializer.deserialize(data, RpcHandshake.class));
+                    break;
+                default:
+                    break;
+            }
         } catch (Exception ex) {
             log.error("Decode error: " + ex.toString());
+            failMessage(ctx, messageType, requestId, "Decode error: " + ex.toString(), out);
+        } finally {
+            if (decompressed != null) {
+                decompressed.release();
+            }
+        }
+    }
+
+    private boolean isAccepted(Serializer serializer) {
+        return acceptedSerializerIds == null || serializer == serializerRegistry.getDefaultSerializer()
+                || acceptedSerializerIds.contains(serializer.getId());
+    }
+
+    /**
+     * 非法的数据帧：之后的数据也无法再正确解析，丢弃全部数据并关闭连接
+     */
+    private static CorruptedFrameException protocolError(ChannelHandlerContext ctx, ByteBuf in, String message) {
+        in.skipBytes(in.readableBytes());
+        ctx.close();
+        return new CorruptedFrameException(message);
+    }
+
+    /**
+     * 丢弃无法解码的消息：跳过当前帧，如果是分块消息并且还有后续分块，后续分块同样跳过
+     */
+    private void discardMessage(ByteBuf in, int dataLength, boolean chunk, boolean lastChunk, long requestId) {
+        skipFrame(in, dataLength, chunk, lastChunk, requestId);
+        if (chunk && !lastChunk) {
+            discardedChunks.add(requestId);
+        }
+    }
+
+    /**
+     * 无法解码的请求直接返回错误响应，无法解码的响应以错误结束对应的调用，调用方不必等到超时
+     * 单向请求、握手与心跳只记录日志
+     * @param ctx
+     * @param messageType
+     * @param requestId
+     * @param error 错误信息
+     * @param out
+     */
+    private static void failMessage(ChannelHandlerContext ctx, MessageType messageType, long requestId,
+                                    String error, List<Object> out) {
+        RpcResponse response = new RpcResponse();
+        response.setRequestId(requestId);
+        response.setError(error);
+        if (messageType == MessageType.REQUEST) {
+            // 编码器在解码器之后，需要从pipeline尾部写出；序列化器ID为0，使用默认序列化器
+            ctx.channel().writeAndFlush(response);
+        } else if (messageType == MessageType.RESPONSE) {
+            out.add(response);
+        }
+    }
+
+    /**
+     * 跳过无法解码的帧，如果是分块消息，同时丢弃已经收到的分块
+     */
+    private void skipFrame(ByteBuf in, int dataLength, boolean chunk, boolean lastChunk, long requestId) {
+        in.skipBytes(dataLength);
+        if (!chunk) {
+            return;
+        }
+        CompositeByteBuf composite = chunkMap.remove(requestId);
+        if (composite != null) {
+            chunkedBytes -= composite.readableBytes();
+            composite.release();
+        }
+        if (lastChunk) {
+            discardedChunks.remove(requestId);
         }
     }
+
+    /**
+     * 连接关闭或者解码器被移除时释放还没有重组完成的分块
+     * @param ctx
+     * @throws Exception
+     */
+    @Override
+    protected void handlerRemoved0(ChannelHandlerContext ctx) throws Exception {
+        for (CompositeByteBuf composite : chunkMap.values()) {
+            composite.release();
+        }
+        chunkMap.clear();
+        chunkedBytes = 0;
+        discardedChunks.clear();
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        handlerRemoved0(ctx);
+        super.channelInactive(ctx);
+    }
 }
@@ -1,6 +1,14 @@
 package com.hynis.rpc.common.codec;
 
+import com.hynis.rpc.common.compress.Compressor;
+import com.hynis.rpc.common.compress.CompressorRegistry;
+import com.hynis.rpc.common.config.Beat;
+import com.hynis.rpc.common.config.CodecConfig;
+import com.hynis.rpc.common.entity.RpcHandshake;
+import com.hynis.rpc.common.entity.RpcRequest;
+import com.hynis.rpc.common.entity.RpcResponse;
 import com.hynis.rpc.common.serializer.Serializer;
+import com.hynis.rpc.common.serializer.SerializerRegistry;
 import io.netty.buffer.ByteBuf;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.codec.MessageToByteEncoder;
@@ -9,27 +17,41 @@ import lombok.extern.slf4j.Slf4j;
 /**
  * @author hynis
  * @date 2022/2/23 23:33
- * 编码器
+ * 编码器：按ProtocolConstant中的格式写出消息头与消息体
+ * 消息体使用消息自身指定的序列化器，未指定时使用默认序列化器
+ * 消息指定了压缩器并且消息体不小于压缩阈值时压缩消息体，并在flags中记录压缩器ID
  */
 @Slf4j
-public class RpcMsgEncoder extends MessageToByteEncoder {
+public class RpcMsgEncoder extends MessageToByteEncoder<Object> {
 
+    private final SerializerRegistry serializerRegistry = SerializerRegistry.getInstance();
+    private final CompressorRegistry compressorRegistry = CompressorRegistry.getInstance();
     /**
-     * 要序列化的对象类型
+     * 压缩阈值，消息体小于该长度时不压缩
      */
-    private Class<?> genericClass;
+    private final int compressThreshold;
+
+    public RpcMsgEncoder() {
+        this(CodecConfig.COMPRESS_THRESHOLD);
+    }
+
+    public RpcMsgEncoder(int compressThreshold) {
+        this.compressThreshold = compressThreshold;
+    }
+
     /**
-     * 要使用的序列化器
+     * 只编码RpcRequest、RpcResponse与RpcHandshake，其他消息（如关闭连接时写出的空ByteBuf）直接向下传递
+     * @param msg
+     * @return
      */
-    private Serializer serializer;
-
-    public RpcMsgEncoder(Class<?> genericClass, Serializer serializer) {
-        this.genericClass = genericClass;
-        this.serializer = serializer;
+    @Override
+    public boolean acceptOutboundMessage(Object msg) {
+        return msg instanceof RpcRequest || msg instanceof RpcResponse || msg instanceof RpcHandshake;
     }
 
     /**
-     * 编码
+     * 编码：先写出消息头并预留长度字段，序列化器直接把对象写入out（池化的直接内存），
+     * 写完后再根据写入的字节数回填长度字段
      * @param channelHandlerContext
      * @param in
      * @param out
@@ -37,14 +59,89 @@ public class RpcMsgEncoder extends MessageToByteEncoder {
      */
     @Override
     protected void encode(ChannelHandlerContext channelHandlerContext, Object in, ByteBuf out) throws Exception {
-        if (genericClass.isInstance(in)) {
-            try {
-                byte[] data = serializer.serialize(in);
-                out.writeInt(data.length);
-                out.writeBytes(data);
-            } catch (Exception ex) {
-                log.error("Encode error: " + ex.toString());
+        MessageType messageType;
+        long requestId;
+        byte serializerId = 0;
+        byte compressorId = 0;
+        if (in instanceof RpcRequest) {
+            RpcRequest request = (RpcRequest) in;
+            requestId = request.getRequestId();
+            serializerId = request.getSerializerId();
+            compressorId = request.getCompressorId();
+            if (requestId == Beat.BEAT_ID) {
+                messageType = MessageType.HEARTBEAT;
+            } else if (request.isOneway()) {
+                messageType = MessageType.ONEWAY;
+            } else {
+                messageType = MessageType.REQUEST;
+            }
+        } else if (in instanceof RpcResponse) {
+            messageType = MessageType.RESPONSE;
+            RpcResponse response = (RpcResponse) in;
+            requestId = response.getRequestId();
+            serializerId = response.getSerializerId();
+            compressorId = response.getCompressorId();
+        } else {
+            messageType = MessageType.HANDSHAKE;
+            requestId = 0;
+        }
+
+        Serializer serializer = serializerId != 0 ? serializerRegistry.getSerializer(serializerId) : null;
+        if (serializer == null) {
+            serializer = serializerRegistry.getDefaultSerializer();
+        }
+
+        int headerIndex = out.writerIndex();
+        out.writeShort(ProtocolConstant.MAGIC);
+        out.writeByte(ProtocolConstant.VERSION);
+        out.writeByte(messageType.getCode());
+        out.writeByte(serializer.getId());
+        out.writeByte(0);
+        out.writeLong(requestId);
+        out.writeInt(0);
+        // 心跳没有消息体
+        if (messageType == MessageType.HEARTBEAT) {
+            return;
+        }
+        try {
+            int bodyIndex = out.writerIndex();
+            serializer.serialize(in, out);
+            Compressor compressor = compressorRegistry.getCompressor(compressorId);
+            if (compressor != null && out.writerIndex() - bodyIndex >= compressThreshold) {
+                compress(channelHandlerContext, compressor, out, headerIndex, bodyIndex);
+            }
+            out.setInt(headerIndex + ProtocolConstant.LENGTH_FIELD_OFFSET,
+                    out.writerIndex() - headerIndex - ProtocolConstant.HEADER_LENGTH);
+        } catch (Exception ex) {
+            // 丢弃写了一半的数据，异常由MessageToByteEncoder包装为EncoderException，使这次写出失败，
+            // 发送方可以据此区分编码失败与连接失败
+            out.writerIndex(headerIndex);
+            log.error("Encode error: " + ex.toString());
+            throw ex;
+        }
+    }
+
+    /**
+     * 把out中的消息体压缩到池化的临时缓冲区，压缩后变小才替换原来的消息体并设置flags
+     * @param ctx
+     * @param compressor
+     * @param out
+     * @param headerIndex
+     * @param bodyIndex
+     */
+    private void compress(ChannelHandlerContext ctx, Compressor compressor, ByteBuf out, int headerIndex, int bodyIndex) {
+        int bodyLength = out.writerIndex() - bodyIndex;
+        ByteBuf compressed = ctx.alloc().buffer(bodyLength);
+        try {
+            compressor.compress(out.slice(bodyIndex, bodyLength), compressed);
+            if (compressed.readableBytes() < bodyLength) {
+                out.writerIndex(bodyIndex);
+                out.writeBytes(compressed);
+                out.setByte(headerIndex + ProtocolConstant.FLAGS_OFFSET,
+                        compressor.getId() << ProtocolConstant.FLAG_COMPRESS_SHIFT);
             }
+        } finally {
+            compressed.release();
         }
     }
 }
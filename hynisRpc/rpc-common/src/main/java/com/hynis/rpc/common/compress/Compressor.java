@@ -0,0 +1,40 @@
+package com.hynis.rpc.common.compress;
+
+import io.netty.buffer.ByteBuf;
+
+/**
+ * @author hynis
+ * @date 2026/10/17 22:30
+ *
+ * 压缩器抽象类，对序列化后的消息体进行压缩与解压
+ * 实现类通过SPI（META-INF/services/com.hynis.rpc.common.compress.Compressor）注册到CompressorRegistry，
+ * 因此需要提供public的无参构造方法
+ */
+public abstract class Compressor {
+    /**
+     * 压缩器ID，写在消息头flags的高4位，因此取值为1~15，0表示未压缩
+     * @return
+     */
+    public abstract byte getId();
+
+    /**
+     * 压缩器名称，服务通过@RpcService的compressor属性按名称选择压缩器
+     * @return
+     */
+    public abstract String getName();
+
+    /**
+     * 压缩：读完in中所有可读的字节，压缩后写入out
+     * @param in
+     * @param out
+     */
+    public abstract void compress(ByteBuf in, ByteBuf out);
+
+    /**
+     * 解压：读完in中所有可读的字节，解压后写入out
+     * @param in
+     * @param out
+     * @param maxLength 解压后的最大长度，超过时抛出异常，避免异常的数据帧占用过多内存
+     */
+    public abstract void decompress(ByteBuf in, ByteBuf out, int maxLength);
+}
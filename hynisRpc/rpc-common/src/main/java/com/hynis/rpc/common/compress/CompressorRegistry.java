@@ -0,0 +1,89 @@
+package com.hynis.rpc.common.compress;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * @author hynis
+ * @date 2026/10/17 22:35
+ *
+ * 压缩器注册表：启动时通过SPI加载所有的压缩器，按消息头中的压缩器ID或者按名称查找
+ */
+@Slf4j
+public class CompressorRegistry {
+
+    private static class SingletonHolder {
+        private static final CompressorRegistry instance = new CompressorRegistry();
+    }
+
+    public static CompressorRegistry getInstance() {
+        return SingletonHolder.instance;
+    }
+
+    /**
+     * 压缩器ID只有4位，直接用数组存放
+     */
+    private final Compressor[] idCompressors = new Compressor[16];
+    private final Map<String, Compressor> nameCompressors = new ConcurrentHashMap<>();
+
+    private CompressorRegistry() {
+        Iterator<Compressor> iterator = ServiceLoader.load(Compressor.class).iterator();
+        while (true) {
+            try {
+                if (!iterator.hasNext()) {
+                    break;
+                }
+                register(iterator.next());
+            } catch (ServiceConfigurationError | LinkageError e) {
+                // 某个压缩器依赖的类库不在classpath中时跳过它，不影响其他压缩器
+                log.warn("Can not load compressor: {}", e.getMessage());
+            }
+        }
+    }
+
+    private synchronized void register(Compressor compressor) {
+        int index = compressor.getId();
+        if (index <= 0 || index >= idCompressors.length) {
+            log.warn("Compressor id must be in [1, 15], skip compressor: {}", compressor.getClass().getName());
+            return;
+        }
+        Compressor old = idCompressors[index];
+        if (old != null) {
+            log.warn("Compressor id {} is used by {}, skip compressor: {}",
+                    index, old.getClass().getName(), compressor.getClass().getName());
+            return;
+        }
+        idCompressors[index] = compressor;
+        nameCompressors.put(compressor.getName(), compressor);
+        log.info("Register compressor: {}, id: {}", compressor.getName(), index);
+    }
+
+    /**
+     * 按ID查找压缩器
+     * @param id 消息头flags中的压缩器ID
+     * @return 找不到时返回null
+     */
+    public Compressor getCompressor(int id) {
+        if (id <= 0 || id >= idCompressors.length) {
+            return null;
+        }
+        return idCompressors[id];
+    }
+
+    /**
+     * 按名称查找压缩器
+     * @param name 压缩器名称
+     * @return 名称为空或者找不到时返回null
+     */
+    public Compressor getCompressor(String name) {
+        if (name == null || name.isEmpty()) {
+            return null;
+        }
+        return nameCompressors.get(name);
+    }
+}
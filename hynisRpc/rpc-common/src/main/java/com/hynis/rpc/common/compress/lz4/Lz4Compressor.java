@@ -0,0 +1,70 @@
+package com.hynis.rpc.common.compress.lz4;
+
+import com.hynis.rpc.common.compress.Compressor;
+import io.netty.buffer.ByteBuf;
+import io.netty.handler.codec.DecoderException;
+import net.jpountz.lz4.LZ4Compressor;
+import net.jpountz.lz4.LZ4Factory;
+import net.jpountz.lz4.LZ4SafeDecompressor;
+
+import java.nio.ByteBuffer;
+
+/**
+ * @author hynis
+ * @date 2026/10/17 22:40
+ *
+ * LZ4压缩器，压缩后的格式为：原始长度（4B） + LZ4块
+ * 直接在ByteBuf对应的ByteBuffer上压缩与解压，不需要中间的byte[]
+ */
+public class Lz4Compressor extends Compressor {
+
+    public static final byte ID = 2;
+    public static final String NAME = "lz4";
+
+    /**
+     * LZ4的压缩器与解压器都是线程安全的
+     */
+    private final LZ4Compressor compressor = LZ4Factory.fastestInstance().fastCompressor();
+    private final LZ4SafeDecompressor decompressor = LZ4Factory.fastestInstance().safeDecompressor();
+
+    @Override
+    public byte getId() {
+        return ID;
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public void compress(ByteBuf in, ByteBuf out) {
+        int length = in.readableBytes();
+        int maxCompressedLength = compressor.maxCompressedLength(length);
+        out.ensureWritable(4 + maxCompressedLength);
+        out.writeInt(length);
+        ByteBuffer src = in.nioBuffer(in.readerIndex(), length);
+        ByteBuffer dest = out.nioBuffer(out.writerIndex(), maxCompressedLength);
+        int compressedLength = compressor.compress(src, src.position(), length, dest, dest.position(), maxCompressedLength);
+        out.writerIndex(out.writerIndex() + compressedLength);
+        in.skipBytes(length);
+    }
+
+    @Override
+    public void decompress(ByteBuf in, ByteBuf out, int maxLength) {
+        int length = in.readInt();
+        if (length < 0 || length > maxLength) {
+            throw new DecoderException("Decompressed length " + length + " exceeds max length " + maxLength);
+        }
+        out.ensureWritable(length);
+        int compressedLength = in.readableBytes();
+        ByteBuffer src = in.nioBuffer(in.readerIndex(), compressedLength);
+        ByteBuffer dest = out.nioBuffer(out.writerIndex(), length);
+        int decompressedLength = decompressor.decompress(src, src.position(), compressedLength, dest, dest.position(), length);
+        if (decompressedLength != length) {
+            throw new DecoderException("Decompressed length " + decompressedLength + " does not match " + length);
+        }
+        out.writerIndex(out.writerIndex() + length);
+        in.skipBytes(compressedLength);
+    }
+}
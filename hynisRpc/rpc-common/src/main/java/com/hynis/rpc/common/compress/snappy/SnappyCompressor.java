@@ -0,0 +1,60 @@
+package com.hynis.rpc.common.compress.snappy;
+
+import com.hynis.rpc.common.compress.Compressor;
+import io.netty.buffer.ByteBuf;
+import io.netty.handler.codec.DecoderException;
+import io.netty.handler.codec.compression.Snappy;
+
+/**
+ * @author hynis
+ * @date 2026/10/17 22:45
+ *
+ * Snappy压缩器，使用Netty自带的Snappy实现
+ * Netty的Snappy只支持不超过64KB的回溯距离，因此与SnappyFrameEncoder一样按块压缩，
+ * 压缩后的格式为：若干个 块长度（4B） + Snappy块
+ */
+public class SnappyCompressor extends Compressor {
+
+    public static final byte ID = 1;
+    public static final String NAME = "snappy";
+
+    private static final int MAX_BLOCK_LENGTH = Short.MAX_VALUE;
+
+    @Override
+    public byte getId() {
+        return ID;
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public void compress(ByteBuf in, ByteBuf out) {
+        // Snappy对象带有解码状态，不是线程安全的，每次使用新的对象（编码本身不使用这些状态）
+        Snappy snappy = new Snappy();
+        while (in.isReadable()) {
+            int blockLength = Math.min(in.readableBytes(), MAX_BLOCK_LENGTH);
+            int lengthIndex = out.writerIndex();
+            out.writeInt(0);
+            // encode不一定会把in的读指针移动到块的末尾，因此传入切片
+            snappy.encode(in.readSlice(blockLength), out, blockLength);
+            out.setInt(lengthIndex, out.writerIndex() - lengthIndex - 4);
+        }
+    }
+
+    @Override
+    public void decompress(ByteBuf in, ByteBuf out, int maxLength) {
+        Snappy snappy = new Snappy();
+        int startIndex = out.writerIndex();
+        while (in.isReadable()) {
+            int blockLength = in.readInt();
+            snappy.decode(in.readSlice(blockLength), out);
+            snappy.reset();
+            if (out.writerIndex() - startIndex > maxLength) {
+                throw new DecoderException("Decompressed length exceeds max length " + maxLength);
+            }
+        }
+    }
+}
@@ -18,10 +18,11 @@ public class Beat {
     public static final int BEAT_TIMEOUT = 3 * BEAT_INTERVAL;
     /**
      * 心跳发送的请求ID，标识此请求是一个心跳请求
+     * 普通请求的ID由连接上的计数器从1开始生成，0保留给心跳
      */
-    public static final String BEAT_ID = "BEAT_PING_PONG";
+    public static final long BEAT_ID = 0L;
 
-    public static RpcRequest BEAT_PING;
+    public static final RpcRequest BEAT_PING;
 
     static {
         BEAT_PING = new RpcRequest();
@@ -0,0 +1,30 @@
+package com.hynis.rpc.common.config;
+
+/**
+ * @author hynis
+ * @date 2026/10/17 22:50
+ *
+ * 编解码相关的配置，可以通过启动参数（-D）修改
+ */
+public class CodecConfig {
+    /**
+     * 压缩阈值：序列化后的消息体不小于该长度时才压缩，小消息压缩的收益抵不上CPU开销
+     */
+    public static final int COMPRESS_THRESHOLD = Integer.getInteger("hynis.rpc.compress.threshold", 2048);
+    /**
+     * 消息体（分块重组、解压后）的最大长度
+     */
+    public static final int MAX_MESSAGE_LENGTH = Integer.getInteger("hynis.rpc.message.maxLength", 64 * 1024 * 1024);
+    /**
+     * 每个连接上同时在重组的分块消息的最大数量，超过时关闭连接
+     */
+    public static final int MAX_CHUNKED_MESSAGES = Integer.getInteger("hynis.rpc.chunk.maxMessages", 64);
+    /**
+     * 每个连接上为重组分块消息缓存的最大字节数，超过时关闭连接
+     */
+    public static final long MAX_CHUNKED_BYTES = Long.getLong("hynis.rpc.chunk.maxBytes", 256L * 1024 * 1024);
+    /**
+     * 另外允许反序列化的包或者类，逗号分隔的前缀，见ClassAllowList
+     */
+    public static final String SERIALIZER_ALLOW_LIST = System.getProperty("hynis.rpc.serializer.allowList", "");
+}
@@ -0,0 +1,79 @@
+package com.hynis.rpc.common.context;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author hynis
+ * @date 2026/10/18 22:40
+ *
+ * 当前线程中正在处理的Rpc请求的上下文，由服务端在调用服务方法之前设置，调用结束后清除
+ * 服务方法可以通过RpcContext.getContext()得到调用方的截止时间，在截止时间之后放弃没有意义的工作；
+ * 服务方法中再发起的Rpc调用，超时时间不会超过剩余时间，截止时间沿调用链向下传递
+ * 截止时间按本机的System.nanoTime计算，不依赖两台机器的时钟同步
+ */
+public class RpcContext {
+
+    private static final ThreadLocal<RpcContext> LOCAL = new ThreadLocal<RpcContext>() {
+        @Override
+        protected RpcContext initialValue() {
+            return new RpcContext();
+        }
+    };
+
+    /**
+     * 截止时间，System.nanoTime，没有截止时间时hasDeadline为false
+     */
+    private long deadlineNanos;
+    private boolean hasDeadline;
+
+    public static RpcContext getContext() {
+        return LOCAL.get();
+    }
+
+    /**
+     * 清除当前线程的上下文，服务端在请求处理结束时调用
+     */
+    public static void removeContext() {
+        LOCAL.remove();
+    }
+
+    /**
+     * 设置截止时间
+     * @param deadlineNanos System.nanoTime
+     */
+    public void setDeadline(long deadlineNanos) {
+        this.deadlineNanos = deadlineNanos;
+        this.hasDeadline = true;
+    }
+
+    public void clearDeadline() {
+        this.hasDeadline = false;
+    }
+
+    public boolean hasDeadline() {
+        return hasDeadline;
+    }
+
+    public long getDeadlineNanos() {
+        return deadlineNanos;
+    }
+
+    /**
+     * 距离截止时间的剩余时间
+     * @return 单位毫秒，没有截止时间时返回Long.MAX_VALUE，已经过期时返回值小于等于0
+     */
+    public long getRemainingMillis() {
+        if (!hasDeadline) {
+            return Long.MAX_VALUE;
+        }
+        return TimeUnit.NANOSECONDS.toMillis(deadlineNanos - System.nanoTime());
+    }
+
+    /**
+     * 是否已经超过截止时间，调用方已经不再等待结果
+     * @return
+     */
+    public boolean isExpired() {
+        return hasDeadline && System.nanoTime() - deadlineNanos >= 0;
+    }
+}
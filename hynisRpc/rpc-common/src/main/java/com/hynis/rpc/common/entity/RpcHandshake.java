@@ -0,0 +1,21 @@
+package com.hynis.rpc.common.entity;
+
+import lombok.Data;
+
+import java.util.Map;
+
+/**
+ * @author hynis
+ * @date 2026/10/17 21:10
+ *
+ * 握手消息：连接建立后客户端发起握手，服务端返回方法字典
+ * 之后客户端的请求只需要携带方法ID与参数，不再重复发送接口名、方法名、版本号与参数类型
+ */
+@Data
+public class RpcHandshake {
+    /**
+     * 方法字典：key为方法签名（见ServiceUtil.makeMethodKey），value为服务端分配的方法ID
+     * 客户端发起握手时为空
+     */
+    private Map<String, Integer> methodIds;
+}
@@ -8,7 +8,32 @@ import lombok.Data;
  */
 @Data
 public class RpcRequest {
-    private String requestId;
+    /**
+     * 请求ID，由每个连接上的计数器生成，放在消息头中传输，不参与序列化
+     */
+    private transient long requestId;
+    /**
+     * 是否为单向请求（服务端不返回响应），通过消息头中的消息类型传输，不参与序列化
+     */
+    private transient boolean oneway;
+    /**
+     * 消息体使用的序列化器ID，放在消息头中传输，为0时使用默认序列化器
+     */
+    private transient byte serializerId;
+    /**
+     * 消息体使用的压缩器ID，为0时不压缩；消息体小于压缩阈值时同样不压缩
+     */
+    private transient byte compressorId;
+    /**
+     * 方法ID，由服务端在握手时分配，为0表示未使用方法ID
+     * 不为0时className、methodName、parameterTypes、version均为空，不再重复传输
+     */
+    private int methodId;
+    /**
+     * 调用方还愿意等待的时间，单位毫秒，为0表示没有截止时间
+     * 发送时按剩余时间填写，服务端收到请求后换算为本机的截止时间，过期的请求不再执行
+     */
+    private long timeout;
     private String className;
     private String methodName;
     private Class<?>[] parameterTypes;
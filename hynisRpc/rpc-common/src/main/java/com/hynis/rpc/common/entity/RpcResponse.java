@@ -11,13 +11,25 @@ import lombok.Data;
 @Data
 public class RpcResponse {
     /**
-     * 对应的requestID
+     * 对应的requestID，放在消息头中传输，不参与序列化
      */
-    private String requestId;
+    private transient long requestId;
+    /**
+     * 消息体使用的序列化器ID，与对应请求的序列化器相同
+     */
+    private transient byte serializerId;
+    /**
+     * 消息体使用的压缩器ID，与对应请求的压缩器相同
+     */
+    private transient byte compressorId;
     /**
      * 如果代理执行方法时出错，此值将不为null
      */
     private String error;
+    /**
+     * 服务端过载（线程池已满等）拒绝了请求，此时请求没有被执行，客户端可以换一个节点重试
+     */
+    private boolean overloaded;
     private Object result;
 
     public boolean isError() {
@@ -0,0 +1,24 @@
+package com.hynis.rpc.common.exception;
+
+/**
+ * @author hynis
+ * @date 2026/10/18 21:50
+ *
+ * 连接上的失败：请求没有写出（写失败、EventLoop已关闭），或者等待响应时连接断开
+ * 没有写出的请求一定没有被服务端执行，可以安全地重试；连接断开时请求可能已经被执行，只有幂等的方法才能重试
+ */
+public class RpcConnectException extends RpcException {
+    /**
+     * 请求是否已经写出
+     */
+    private final boolean requestSent;
+
+    public RpcConnectException(String message, Throwable cause, boolean requestSent) {
+        super(message, cause);
+        this.requestSent = requestSent;
+    }
+
+    public boolean isRequestSent() {
+        return requestSent;
+    }
+}
@@ -0,0 +1,18 @@
+package com.hynis.rpc.common.exception;
+
+/**
+ * @author hynis
+ * @date 2026/10/18 15:30
+ *
+ * Rpc调用失败：服务端返回了错误，或者请求在本地失败
+ */
+public class RpcException extends RuntimeException {
+
+    public RpcException(String message) {
+        super(message);
+    }
+
+    public RpcException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
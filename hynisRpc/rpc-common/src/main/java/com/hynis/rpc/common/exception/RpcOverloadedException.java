@@ -0,0 +1,15 @@
+package com.hynis.rpc.common.exception;
+
+/**
+ * @author hynis
+ * @date 2026/10/18 23:15
+ *
+ * 服务端过载，没有执行请求就拒绝了（见RpcResponse.overloaded）
+ * 请求一定没有被执行，无论方法是否幂等都可以换一个节点重试
+ */
+public class RpcOverloadedException extends RpcRemoteException {
+
+    public RpcOverloadedException(String remoteError) {
+        super(remoteError);
+    }
+}
@@ -0,0 +1,20 @@
+package com.hynis.rpc.common.exception;
+
+/**
+ * @author hynis
+ * @date 2026/10/18 21:50
+ *
+ * 服务端执行请求时抛出了异常，remoteError为服务端异常的toString，以异常的类名开头
+ */
+public class RpcRemoteException extends RpcException {
+    private final String remoteError;
+
+    public RpcRemoteException(String remoteError) {
+        super("Response error: " + remoteError);
+        this.remoteError = remoteError;
+    }
+
+    public String getRemoteError() {
+        return remoteError;
+    }
+}
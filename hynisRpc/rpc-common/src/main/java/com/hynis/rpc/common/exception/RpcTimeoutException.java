@@ -0,0 +1,32 @@
+package com.hynis.rpc.common.exception;
+
+/**
+ * @author hynis
+ * @date 2026/10/18 14:10
+ *
+ * 请求在截止时间之前没有收到响应
+ */
+public class RpcTimeoutException extends RuntimeException {
+    /**
+     * 请求ID
+     */
+    private final long requestId;
+    /**
+     * 请求的超时时间，单位毫秒
+     */
+    private final long timeoutMillis;
+
+    public RpcTimeoutException(long requestId, long timeoutMillis, String message) {
+        super(message);
+        this.requestId = requestId;
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    public long getRequestId() {
+        return requestId;
+    }
+
+    public long getTimeoutMillis() {
+        return timeoutMillis;
+    }
+}
@@ -8,12 +8,21 @@ import java.util.List;
 /**
  * @author hynis
  * @date 2023/8/3 15:50
- * Rpc协议：主机号、端口、支持的服务列表
+ * Rpc协议：主机号、端口、权重、支持的服务列表
  */
 @Data
 public class RpcProtocol {
+    /**
+     * 没有声明权重（旧版本服务端注册的数据）时使用的权重
+     */
+    public static final int DEFAULT_WEIGHT = 1;
+
     private String host;
     private int port;
+    /**
+     * 服务端声明的处理能力（如CPU核数），客户端按权重比例分配请求，为0表示没有声明
+     */
+    private int weight;
     private List<RpcServiceInfo> serviceInfoList;
 
     public String toJson() {
@@ -8,12 +8,20 @@ import java.io.Serializable;
 /**
  * @author hynis
  * @date 2023/8/3 11:36
- * Rpc服务信息：服务名、版本信息
+ * Rpc服务信息：服务名、版本信息、序列化器、压缩器
  */
 @Data
 public class RpcServiceInfo implements Serializable {
     private String serviceName;
     private String version;
+    /**
+     * 服务使用的序列化器名称，为空时使用默认序列化器
+     */
+    private String serializer;
+    /**
+     * 服务使用的压缩器名称，为空时不压缩
+     */
+    private String compressor;
 
     /**
      * 使用Jackson进行序列化
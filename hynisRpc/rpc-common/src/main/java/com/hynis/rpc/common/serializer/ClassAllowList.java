@@ -0,0 +1,151 @@
+package com.hynis.rpc.common.serializer;
+
+import com.hynis.rpc.common.config.CodecConfig;
+import lombok.extern.slf4j.Slf4j;
+
+import java.lang.reflect.GenericArrayType;
+import java.lang.reflect.Method;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * @author hynis
+ * @date 2026/10/19 14:00
+ *
+ * 反序列化的类白名单：序列化器按数据中的类名创建对象，如果不加限制，对端可以让任意类被反序列化（反序列化漏洞的利用方式）
+ * 只允许以下的类：
+ * 1、JDK的基本类型、集合与时间类型（java.lang、java.util、java.math、java.time，除去反射、进程、类加载器等），以及框架自身的类
+ * 2、服务接口方法声明的参数与返回值类型（包括泛型参数），注册服务与创建代理时自动加入
+ * 3、-Dhynis.rpc.serializer.allowList指定的包或者类，逗号分隔的前缀，如 com.example.dto.,com.example.model.User
+ * 以上类型的子类需要通过第3种方式加入；数组按元素类型判断
+ */
+@Slf4j
+public class ClassAllowList {
+
+    private static class SingletonHolder {
+        private static final ClassAllowList instance = new ClassAllowList(parsePrefixes(CodecConfig.SERIALIZER_ALLOW_LIST));
+    }
+
+    public static ClassAllowList getInstance() {
+        return SingletonHolder.instance;
+    }
+
+    private static final List<String> DEFAULT_ALLOWED = Arrays.asList(
+            "java.lang.", "java.util.", "java.math.", "java.time.", "com.hynis.rpc.");
+    private static final List<String> DENIED = Arrays.asList(
+            "java.lang.reflect.", "java.lang.invoke.", "java.lang.Process", "java.lang.Runtime",
+            "java.lang.ClassLoader", "java.lang.Thread", "java.lang.System", "java.util.logging.");
+
+    /**
+     * 与允许、禁止的前缀等价的正则表达式，按类名匹配，不需要加载类
+     */
+    private final Pattern pattern;
+    /**
+     * 服务接口方法声明的类型，只允许类本身，不包括子类
+     */
+    private final Set<String> allowedClasses = ConcurrentHashMap.newKeySet();
+    /**
+     * 按前缀判断的结果，按类缓存
+     */
+    private final ClassValue<Boolean> prefixAllowed = new ClassValue<Boolean>() {
+        @Override
+        protected Boolean computeValue(Class<?> type) {
+            return pattern.matcher(type.getName()).matches();
+        }
+    };
+
+    public ClassAllowList(List<String> extraPrefixes) {
+        List<String> prefixes = new ArrayList<>(DEFAULT_ALLOWED);
+        prefixes.addAll(extraPrefixes);
+        this.pattern = Pattern.compile(
+                // 对象数组按元素类型判断，如[Lcom.hynis.rpc.common.entity.RpcRequest;
+                "(?:\\[+L)?(?!" + join(DENIED) + ")(?:" + join(prefixes) + ")[^;\\[]*;?"
+                        // 基本类型与基本类型数组
+                        + "|\\[+[ZBCSIJFD]|boolean|byte|char|short|int|long|float|double|void");
+    }
+
+    private static String join(List<String> prefixes) {
+        StringBuilder builder = new StringBuilder();
+        for (String prefix : prefixes) {
+            if (builder.length() > 0) {
+                builder.append('|');
+            }
+            builder.append(Pattern.quote(prefix));
+        }
+        return builder.toString();
+    }
+
+    private static List<String> parsePrefixes(String value) {
+        List<String> prefixes = new ArrayList<>();
+        for (String prefix : value.split(",")) {
+            prefix = prefix.trim();
+            if (!prefix.isEmpty()) {
+                prefixes.add(prefix);
+            }
+        }
+        return prefixes;
+    }
+
+    /**
+     * 按类名判断是否允许反序列化，不会加载类
+     * @param className Class.getName()格式的类名
+     * @return
+     */
+    public boolean isAllowed(String className) {
+        if (pattern.matcher(className).matches()) {
+            return true;
+        }
+        // 对象数组按元素类型判断
+        int dimensions = 0;
+        while (dimensions < className.length() && className.charAt(dimensions) == '[') {
+            ++dimensions;
+        }
+        if (dimensions > 0 && className.startsWith("L", dimensions) && className.endsWith(";")) {
+            className = className.substring(dimensions + 1, className.length() - 1);
+        }
+        return allowedClasses.contains(className);
+    }
+
+    public boolean isAllowed(Class<?> type) {
+        while (type.isArray()) {
+            type = type.getComponentType();
+        }
+        return type.isPrimitive() || allowedClasses.contains(type.getName()) || prefixAllowed.get(type);
+    }
+
+    /**
+     * 允许方法声明的参数与返回值类型，包括泛型参数与数组的元素类型
+     * @param method 服务接口的方法
+     */
+    public void allowMethodTypes(Method method) {
+        for (Type type : method.getGenericParameterTypes()) {
+            allowType(type);
+        }
+        allowType(method.getGenericReturnType());
+    }
+
+    private void allowType(Type type) {
+        if (type instanceof Class) {
+            Class<?> clazz = (Class<?>) type;
+            while (clazz.isArray()) {
+                clazz = clazz.getComponentType();
+            }
+            if (!clazz.isPrimitive() && allowedClasses.add(clazz.getName()) && !prefixAllowed.get(clazz)) {
+                log.info("Allow class to be deserialized: {}", clazz.getName());
+            }
+        } else if (type instanceof ParameterizedType) {
+            allowType(((ParameterizedType) type).getRawType());
+            for (Type argument : ((ParameterizedType) type).getActualTypeArguments()) {
+                allowType(argument);
+            }
+        } else if (type instanceof GenericArrayType) {
+            allowType(((GenericArrayType) type).getGenericComponentType());
+        }
+    }
+}
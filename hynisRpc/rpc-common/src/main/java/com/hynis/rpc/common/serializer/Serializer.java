@@ -1,12 +1,29 @@
 package com.hynis.rpc.common.serializer;
 
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+
 /**
  * @author hynis
  * @date 2023/8/14 10:17
  *
  * 序列化器抽象类，需要满足序列化与反序列化两种操作
+ * 实现类通过SPI（META-INF/services/com.hynis.rpc.common.serializer.Serializer）注册到SerializerRegistry，
+ * 因此需要提供public的无参构造方法
  */
 public abstract class Serializer {
+    /**
+     * 序列化器ID，写在每个数据帧的消息头中，接收方据此选择反序列化器
+     * @return
+     */
+    public abstract byte getId();
+
+    /**
+     * 序列化器名称，服务通过@RpcService的serializer属性按名称选择序列化器
+     * @return
+     */
+    public abstract String getName();
+
     /**
      * 序列化：将对象序列化为字节数组
      * @param obj
@@ -15,6 +32,17 @@ public abstract class Serializer {
      */
     public abstract <T> byte[] serialize(T obj);
 
+    /**
+     * 序列化：将对象直接写入ByteBuf
+     * 默认实现先序列化为字节数组再写入，子类可以重写此方法直接写入（池化的直接内存），省去中间的字节数组
+     * @param obj
+     * @param out
+     * @param <T>
+     */
+    public <T> void serialize(T obj, ByteBuf out) {
+        out.writeBytes(serialize(obj));
+    }
+
     /**
      * 反序列化：将字节数组转为对象
      * @param bytes
@@ -23,4 +51,18 @@ public abstract class Serializer {
      * @param <T>
      */
     public abstract <T> Object deserialize(byte[] bytes, Class<T> clazz);
+
+    /**
+     * 反序列化：直接从ByteBuf中读取对象，会读完in中所有可读的字节
+     * 默认实现先把数据拷贝为字节数组，子类可以重写此方法直接读取ByteBuf（包括池化的直接内存），省去一次拷贝
+     * @param in
+     * @param clazz
+     * @return
+     * @param <T>
+     */
+    public <T> Object deserialize(ByteBuf in, Class<T> clazz) {
+        byte[] bytes = ByteBufUtil.getBytes(in);
+        in.skipBytes(bytes.length);
+        return deserialize(bytes, clazz);
+    }
 }
@@ -0,0 +1,102 @@
+package com.hynis.rpc.common.serializer;
+
+import com.hynis.rpc.common.serializer.protostuff.ProtostuffSerializer;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * @author hynis
+ * @date 2026/10/17 21:40
+ *
+ * 序列化器注册表：启动时通过SPI加载所有的序列化器，按消息头中的序列化器ID或者按名称查找
+ * 新增序列化器只需要在classpath中加入实现类并在META-INF/services中声明，不需要修改框架代码
+ */
+@Slf4j
+public class SerializerRegistry {
+
+    private static class SingletonHolder {
+        private static final SerializerRegistry instance = new SerializerRegistry();
+    }
+
+    public static SerializerRegistry getInstance() {
+        return SingletonHolder.instance;
+    }
+
+    /**
+     * 按ID索引的序列化器，ID为一个字节，直接用数组存放
+     */
+    private final Serializer[] idSerializers = new Serializer[256];
+    private final Map<String, Serializer> nameSerializers = new ConcurrentHashMap<>();
+    /**
+     * 默认序列化器：服务没有指定或者指定的序列化器不可用时使用，握手与心跳也使用它
+     */
+    private final Serializer defaultSerializer;
+
+    private SerializerRegistry() {
+        Iterator<Serializer> iterator = ServiceLoader.load(Serializer.class).iterator();
+        while (true) {
+            try {
+                if (!iterator.hasNext()) {
+                    break;
+                }
+                register(iterator.next());
+            } catch (ServiceConfigurationError | LinkageError e) {
+                // 某个序列化器依赖的类库不在classpath中时跳过它，不影响其他序列化器
+                log.warn("Can not load serializer: {}", e.getMessage());
+            }
+        }
+        Serializer serializer = getSerializer(ProtostuffSerializer.ID);
+        if (serializer == null) {
+            serializer = new ProtostuffSerializer();
+            register(serializer);
+        }
+        this.defaultSerializer = serializer;
+    }
+
+    private synchronized void register(Serializer serializer) {
+        int index = serializer.getId() & 0xFF;
+        if (index == 0) {
+            log.warn("Serializer id 0 is reserved, skip serializer: {}", serializer.getClass().getName());
+            return;
+        }
+        Serializer old = idSerializers[index];
+        if (old != null) {
+            log.warn("Serializer id {} is used by {}, skip serializer: {}",
+                    index, old.getClass().getName(), serializer.getClass().getName());
+            return;
+        }
+        idSerializers[index] = serializer;
+        nameSerializers.put(serializer.getName(), serializer);
+        log.info("Register serializer: {}, id: {}", serializer.getName(), index);
+    }
+
+    /**
+     * 按ID查找序列化器
+     * @param id 消息头中的序列化器ID
+     * @return 找不到时返回null
+     */
+    public Serializer getSerializer(byte id) {
+        return idSerializers[id & 0xFF];
+    }
+
+    /**
+     * 按名称查找序列化器
+     * @param name 序列化器名称，为空时返回默认序列化器
+     * @return 找不到时返回null
+     */
+    public Serializer getSerializer(String name) {
+        if (name == null || name.isEmpty()) {
+            return defaultSerializer;
+        }
+        return nameSerializers.get(name);
+    }
+
+    public Serializer getDefaultSerializer() {
+        return defaultSerializer;
+    }
+}
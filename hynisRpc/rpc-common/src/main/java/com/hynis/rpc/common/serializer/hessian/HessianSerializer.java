@@ -0,0 +1,102 @@
+package com.hynis.rpc.common.serializer.hessian;
+
+import com.caucho.hessian.io.Hessian2Input;
+import com.caucho.hessian.io.Hessian2Output;
+import com.caucho.hessian.io.SerializerFactory;
+import com.hynis.rpc.common.serializer.ClassAllowList;
+import com.hynis.rpc.common.serializer.Serializer;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufInputStream;
+import io.netty.buffer.ByteBufOutputStream;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * @author hynis
+ * @date 2026/10/17 21:55
+ *
+ * Hessian2序列化器
+ */
+public class HessianSerializer extends Serializer {
+
+    public static final byte ID = 3;
+    public static final String NAME = "hessian";
+
+    /**
+     * SerializerFactory缓存了每个类的序列化方式，所有线程共用一个
+     * 请求、响应等实体类没有实现Serializable，因此需要允许序列化非Serializable的类，
+     * 可以反序列化的类由ClassAllowList限制：数据中的类名不在白名单中时不加载该类，Hessian按Map读取
+     */
+    private final SerializerFactory serializerFactory = new SerializerFactory() {
+        @Override
+        public Class<?> loadSerializedClass(String className) throws ClassNotFoundException {
+            if (!ClassAllowList.getInstance().isAllowed(className)) {
+                throw new ClassNotFoundException("Class is not allowed to be deserialized: " + className);
+            }
+            return super.loadSerializedClass(className);
+        }
+    };
+
+    public HessianSerializer() {
+        serializerFactory.setAllowNonSerializable(true);
+    }
+
+    @Override
+    public byte getId() {
+        return ID;
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public <T> byte[] serialize(T obj) {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        writeTo(obj, outputStream);
+        return outputStream.toByteArray();
+    }
+
+    @Override
+    public <T> void serialize(T obj, ByteBuf out) {
+        writeTo(obj, new ByteBufOutputStream(out));
+    }
+
+    private void writeTo(Object obj, OutputStream outputStream) {
+        Hessian2Output output = new Hessian2Output(outputStream);
+        output.setSerializerFactory(serializerFactory);
+        try {
+            output.writeObject(obj);
+            output.flush();
+        } catch (Exception e) {
+            throw new IllegalStateException(e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public <T> Object deserialize(byte[] bytes, Class<T> clazz) {
+        return readFrom(new ByteArrayInputStream(bytes), clazz);
+    }
+
+    @Override
+    public <T> Object deserialize(ByteBuf in, Class<T> clazz) {
+        int length = in.readableBytes();
+        Object message = readFrom(new ByteBufInputStream(in.slice(), false), clazz);
+        in.skipBytes(length);
+        return message;
+    }
+
+    private Object readFrom(InputStream inputStream, Class<?> clazz) {
+        Hessian2Input input = new Hessian2Input(inputStream);
+        input.setSerializerFactory(serializerFactory);
+        try {
+            return input.readObject(clazz);
+        } catch (Exception e) {
+            throw new IllegalStateException(e.getMessage(), e);
+        }
+    }
+}
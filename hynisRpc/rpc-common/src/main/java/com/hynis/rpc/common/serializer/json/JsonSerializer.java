@@ -0,0 +1,115 @@
+package com.hynis.rpc.common.serializer.json;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.MapperFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.cfg.MapperConfig;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.fasterxml.jackson.databind.jsontype.PolymorphicTypeValidator;
+import com.hynis.rpc.common.serializer.ClassAllowList;
+import com.hynis.rpc.common.serializer.Serializer;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufInputStream;
+import io.netty.buffer.ByteBufOutputStream;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * @author hynis
+ * @date 2026/10/17 22:00
+ *
+ * 基于Jackson的JSON序列化器
+ * 请求参数与返回值都是Object，需要在JSON中带上类型信息才能还原为原来的类型
+ * JSON中的类型由对端决定，只允许ClassAllowList中的类，在加载类之前按类名检查
+ * 与JsonUtil（用于注册中心中的服务信息）使用不同的ObjectMapper，互不影响
+ */
+public class JsonSerializer extends Serializer {
+
+    public static final byte ID = 4;
+    public static final String NAME = "json";
+
+    private final ObjectMapper objectMapper = JsonMapper.builder()
+            // transient字段（如请求ID）放在消息头中传输，不参与序列化
+            .enable(MapperFeature.PROPAGATE_TRANSIENT_MARKER)
+            .disable(SerializationFeature.FAIL_ON_EMPTY_BEANS)
+            .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+            .activateDefaultTyping(new AllowListTypeValidator(), ObjectMapper.DefaultTyping.EVERYTHING)
+            .build();
+
+    @Override
+    public byte getId() {
+        return ID;
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public <T> byte[] serialize(T obj) {
+        try {
+            return objectMapper.writeValueAsBytes(obj);
+        } catch (Exception e) {
+            throw new IllegalStateException(e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public <T> void serialize(T obj, ByteBuf out) {
+        try {
+            // ByteBufOutputStream同时实现了DataOutput，这里按OutputStream写出
+            OutputStream outputStream = new ByteBufOutputStream(out);
+            objectMapper.writeValue(outputStream, obj);
+        } catch (Exception e) {
+            throw new IllegalStateException(e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public <T> Object deserialize(byte[] bytes, Class<T> clazz) {
+        try {
+            return objectMapper.readValue(bytes, clazz);
+        } catch (Exception e) {
+            throw new IllegalStateException(e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public <T> Object deserialize(ByteBuf in, Class<T> clazz) {
+        int length = in.readableBytes();
+        try {
+            Object message;
+            if (in.hasArray()) {
+                message = objectMapper.readValue(in.array(), in.arrayOffset() + in.readerIndex(), length, clazz);
+            } else {
+                InputStream inputStream = new ByteBufInputStream(in.slice(), false);
+                message = objectMapper.readValue(inputStream, clazz);
+            }
+            in.skipBytes(length);
+            return message;
+        } catch (Exception e) {
+            throw new IllegalStateException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 按ClassAllowList校验JSON中的类型：先按类名判断，不允许的类不会被加载
+     */
+    private static class AllowListTypeValidator extends PolymorphicTypeValidator.Base {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public Validity validateSubClassName(MapperConfig<?> config, JavaType baseType, String subClassName) {
+            return ClassAllowList.getInstance().isAllowed(subClassName) ? Validity.ALLOWED : Validity.DENIED;
+        }
+
+        @Override
+        public Validity validateSubType(MapperConfig<?> config, JavaType baseType, JavaType subType) {
+            return ClassAllowList.getInstance().isAllowed(subType.getRawClass()) ? Validity.ALLOWED : Validity.DENIED;
+        }
+    }
+}
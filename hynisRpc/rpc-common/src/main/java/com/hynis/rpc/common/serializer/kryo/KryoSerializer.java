@@ -0,0 +1,163 @@
+package com.hynis.rpc.common.serializer.kryo;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.KryoException;
+import com.esotericsoftware.kryo.Registration;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+import com.esotericsoftware.kryo.util.DefaultClassResolver;
+import com.esotericsoftware.kryo.util.DefaultInstantiatorStrategy;
+import com.esotericsoftware.kryo.util.MapReferenceResolver;
+import com.esotericsoftware.kryo.util.Pool;
+import com.hynis.rpc.common.serializer.ClassAllowList;
+import com.hynis.rpc.common.serializer.Serializer;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufInputStream;
+import io.netty.buffer.ByteBufOutputStream;
+import org.objenesis.strategy.StdInstantiatorStrategy;
+
+/**
+ * @author hynis
+ * @date 2026/10/17 21:50
+ *
+ * Kryo序列化器：Kryo实例不是线程安全的，创建的代价也比较高，因此放在池中复用
+ * 不要求两端按相同顺序提前注册类，但只允许ClassAllowList中的类（见AllowListClassResolver）
+ */
+public class KryoSerializer extends Serializer {
+
+    public static final byte ID = 2;
+    public static final String NAME = "kryo";
+
+    private static final int BUFFER_SIZE = 4096;
+
+    private final Pool<Kryo> kryoPool = new Pool<Kryo>(true, false, 64) {
+        @Override
+        protected Kryo create() {
+            Kryo kryo = new Kryo(new AllowListClassResolver(), new MapReferenceResolver());
+            // 不要求提前注册类，两端的类不需要按相同顺序注册，由AllowListClassResolver限制可以使用的类
+            kryo.setRegistrationRequired(false);
+            kryo.setReferences(true);
+            // 没有无参构造方法的类使用Objenesis创建
+            kryo.setInstantiatorStrategy(new DefaultInstantiatorStrategy(new StdInstantiatorStrategy()));
+            return kryo;
+        }
+    };
+
+    private final Pool<Output> outputPool = new Pool<Output>(true, false, 64) {
+        @Override
+        protected Output create() {
+            return new Output(BUFFER_SIZE, -1);
+        }
+    };
+
+    @Override
+    public byte getId() {
+        return ID;
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public <T> byte[] serialize(T obj) {
+        Kryo kryo = kryoPool.obtain();
+        Output output = outputPool.obtain();
+        try {
+            output.reset();
+            kryo.writeObject(output, obj);
+            return output.toBytes();
+        } catch (Exception e) {
+            throw new IllegalStateException(e.getMessage(), e);
+        } finally {
+            outputPool.free(output);
+            kryoPool.free(kryo);
+        }
+    }
+
+    /**
+     * 池中的Output作为缓冲区，写满后刷入out
+     * @param obj
+     * @param out
+     * @param <T>
+     */
+    @Override
+    public <T> void serialize(T obj, ByteBuf out) {
+        Kryo kryo = kryoPool.obtain();
+        Output output = outputPool.obtain();
+        try {
+            output.setOutputStream(new ByteBufOutputStream(out));
+            kryo.writeObject(output, obj);
+            output.flush();
+        } catch (Exception e) {
+            throw new IllegalStateException(e.getMessage(), e);
+        } finally {
+            output.setOutputStream(null);
+            outputPool.free(output);
+            kryoPool.free(kryo);
+        }
+    }
+
+    @Override
+    public <T> Object deserialize(byte[] bytes, Class<T> clazz) {
+        Kryo kryo = kryoPool.obtain();
+        try {
+            return kryo.readObject(new Input(bytes), clazz);
+        } catch (Exception e) {
+            throw new IllegalStateException(e.getMessage(), e);
+        } finally {
+            kryoPool.free(kryo);
+        }
+    }
+
+    /**
+     * 堆内存直接使用底层数组，其他情况以流的方式读取
+     * @param in
+     * @param clazz
+     * @return
+     * @param <T>
+     */
+    @Override
+    public <T> Object deserialize(ByteBuf in, Class<T> clazz) {
+        int length = in.readableBytes();
+        Kryo kryo = kryoPool.obtain();
+        try {
+            Input input;
+            if (in.hasArray()) {
+                input = new Input(in.array(), in.arrayOffset() + in.readerIndex(), length);
+            } else {
+                input = new Input(new ByteBufInputStream(in.slice(), false), Math.min(length, BUFFER_SIZE));
+            }
+            Object message = kryo.readObject(input, clazz);
+            in.skipBytes(length);
+            return message;
+        } catch (Exception e) {
+            throw new IllegalStateException(e.getMessage(), e);
+        } finally {
+            kryoPool.free(kryo);
+        }
+    }
+
+    /**
+     * 只允许ClassAllowList中的类：读取数据中的类名时在加载类之前检查，隐式注册（第一次写出或者读取某个类）时再检查一次
+     */
+    private static class AllowListClassResolver extends DefaultClassResolver {
+        @Override
+        protected Class getTypeByName(String className) {
+            Class type = super.getTypeByName(className);
+            if (type == null && !ClassAllowList.getInstance().isAllowed(className)) {
+                throw new KryoException("Class is not allowed to be deserialized: " + className);
+            }
+            return type;
+        }
+
+        @Override
+        public Registration registerImplicit(Class type) {
+            if (!ClassAllowList.getInstance().isAllowed(type)) {
+                throw new KryoException("Class is not allowed to be serialized: " + type.getName());
+            }
+            return super.registerImplicit(type);
+        }
+    }
+}
@@ -1,13 +1,20 @@
 package com.hynis.rpc.common.serializer.protostuff;
 
+import com.hynis.rpc.common.serializer.ClassAllowList;
 import com.hynis.rpc.common.serializer.Serializer;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufInputStream;
+import io.netty.buffer.ByteBufOutputStream;
+import io.protostuff.ByteBufferInput;
 import io.protostuff.LinkedBuffer;
 import io.protostuff.ProtostuffIOUtil;
 import io.protostuff.Schema;
+import io.protostuff.runtime.DefaultIdStrategy;
 import io.protostuff.runtime.RuntimeSchema;
 import org.springframework.objenesis.Objenesis;
 import org.springframework.objenesis.ObjenesisStd;
 
+import java.nio.ByteBuffer;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
@@ -17,14 +24,48 @@ import java.util.concurrent.ConcurrentHashMap;
  */
 public class ProtostuffSerializer extends Serializer {
 
-    private Map<Class<?>, Schema<?>> cachedSchema = new ConcurrentHashMap<>();
+    public static final byte ID = 1;
+    public static final String NAME = "protostuff";
+
+    /**
+     * 每个线程复用一个LinkedBuffer，避免每次序列化都分配一块新的缓冲区
+     * 序列化在同一个线程内不会嵌套执行，用完clear即可复用
+     */
+    private static final ThreadLocal<LinkedBuffer> LOCAL_BUFFER =
+            ThreadLocal.withInitial(() -> LinkedBuffer.allocate(LinkedBuffer.DEFAULT_BUFFER_SIZE));
+
+    /**
+     * 请求参数、返回值等Object类型的字段会在数据中带上类名，由对端决定，只允许加载ClassAllowList中的类（见AllowListClassLoader）
+     * IdStrategy按类名缓存用到过的类，缓存中的类不会再经过类加载器，因此反序列化使用单独的IdStrategy，
+     * 不与序列化以及其他使用Protostuff默认IdStrategy的代码共用，其中只有经过白名单检查的类
+     */
+    private static final DefaultIdStrategy READ_STRATEGY = new DefaultIdStrategy();
+    private static final DefaultIdStrategy WRITE_STRATEGY = new DefaultIdStrategy();
+
+    /**
+     * 原上下文类加载器 -> 只加载白名单中的类的类加载器
+     */
+    private static final Map<ClassLoader, ClassLoader> allowListClassLoaders = new ConcurrentHashMap<>();
+
+    private Map<Class<?>, Schema<?>> readSchemas = new ConcurrentHashMap<>();
+    private Map<Class<?>, Schema<?>> writeSchemas = new ConcurrentHashMap<>();
 
     private Objenesis objenesis = new ObjenesisStd(true);
 
+    @Override
+    public byte getId() {
+        return ID;
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
     @Override
     public <T> byte[] serialize(T obj) {
         Class<T> cls = (Class<T>) obj.getClass();
-        LinkedBuffer buffer = LinkedBuffer.allocate(LinkedBuffer.DEFAULT_BUFFER_SIZE);
+        LinkedBuffer buffer = LOCAL_BUFFER.get();
         try {
             Schema<T> schema = getSchema(cls);
             return ProtostuffIOUtil.toByteArray(obj, schema, buffer);
@@ -35,21 +76,116 @@ public class ProtostuffSerializer extends Serializer {
         }
     }
 
+    /**
+     * 直接序列化到ByteBuf：LinkedBuffer写满后就刷入out，
+     * 不会先生成完整的byte[]再拷贝，大对象也只有LinkedBuffer到ByteBuf这一次拷贝
+     * @param obj
+     * @param out
+     * @param <T>
+     */
+    @Override
+    public <T> void serialize(T obj, ByteBuf out) {
+        Class<T> cls = (Class<T>) obj.getClass();
+        LinkedBuffer buffer = LOCAL_BUFFER.get();
+        try {
+            Schema<T> schema = getSchema(cls);
+            ProtostuffIOUtil.writeTo(new ByteBufOutputStream(out), obj, schema, buffer);
+        } catch (Exception e) {
+            throw new IllegalStateException(e.getMessage(), e);
+        } finally {
+            buffer.clear();
+        }
+    }
+
     @SuppressWarnings("unchecked")
     private <T> Schema<T> getSchema(Class<T> cls) {
         // 如果不存在，就使用RuntimeSchema::createFrom创建一个新的Schema
-        return (Schema<T>) cachedSchema.computeIfAbsent(cls, RuntimeSchema::createFrom);
+        return (Schema<T>) writeSchemas.computeIfAbsent(cls, type -> RuntimeSchema.createFrom(type, WRITE_STRATEGY));
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> Schema<T> getReadSchema(Class<T> cls) {
+        return (Schema<T>) readSchemas.computeIfAbsent(cls, type -> RuntimeSchema.createFrom(type, READ_STRATEGY));
     }
 
     @Override
     public <T> Object deserialize(byte[] bytes, Class<T> clazz) {
+        ClassLoader original = useAllowListClassLoader();
         try {
             T message = (T) objenesis.newInstance(clazz);
-            Schema<T> schema = getSchema(clazz);
+            Schema<T> schema = getReadSchema(clazz);
             ProtostuffIOUtil.mergeFrom(bytes, message, schema);
             return message;
         } catch (Exception e) {
             throw new IllegalStateException(e.getMessage(), e);
+        } finally {
+            Thread.currentThread().setContextClassLoader(original);
+        }
+    }
+
+    /**
+     * 直接从ByteBuf反序列化，不再额外拷贝出一个byte[]：
+     * 1、堆内存：直接使用底层数组
+     * 2、直接内存（单个连续内存块）：包装为ByteBuffer，使用ByteBufferInput读取
+     * 3、其他情况（如多个内存块组成的CompositeByteBuf）：以流的方式读取
+     * @param in
+     * @param clazz
+     * @return
+     * @param <T>
+     */
+    @Override
+    public <T> Object deserialize(ByteBuf in, Class<T> clazz) {
+        int length = in.readableBytes();
+        ClassLoader original = useAllowListClassLoader();
+        try {
+            T message = (T) objenesis.newInstance(clazz);
+            Schema<T> schema = getReadSchema(clazz);
+            if (in.hasArray()) {
+                ProtostuffIOUtil.mergeFrom(in.array(), in.arrayOffset() + in.readerIndex(), length, message, schema);
+            } else if (in.nioBufferCount() == 1) {
+                ByteBuffer byteBuffer = in.nioBuffer(in.readerIndex(), length);
+                ByteBufferInput input = new ByteBufferInput(byteBuffer, true);
+                schema.mergeFrom(input, message);
+                input.checkLastTagWas(0);
+            } else {
+                ProtostuffIOUtil.mergeFrom(new ByteBufInputStream(in.slice(), false), message, schema);
+            }
+            in.skipBytes(length);
+            return message;
+        } catch (Exception e) {
+            throw new IllegalStateException(e.getMessage(), e);
+        } finally {
+            Thread.currentThread().setContextClassLoader(original);
+        }
+    }
+
+    /**
+     * 在反序列化期间替换线程的上下文类加载器：Protostuff按数据中的类名加载类时都经过上下文类加载器
+     * @return 原来的上下文类加载器，反序列化结束后恢复
+     */
+    private static ClassLoader useAllowListClassLoader() {
+        Thread thread = Thread.currentThread();
+        ClassLoader original = thread.getContextClassLoader();
+        ClassLoader parent = original != null ? original : ProtostuffSerializer.class.getClassLoader();
+        thread.setContextClassLoader(allowListClassLoaders.computeIfAbsent(parent, AllowListClassLoader::new));
+        return original;
+    }
+
+    /**
+     * 只加载ClassAllowList中的类，其他的类抛出SecurityException：
+     * 不能抛出ClassNotFoundException，否则Protostuff会改用Class.forName再加载一次
+     */
+    private static class AllowListClassLoader extends ClassLoader {
+        AllowListClassLoader(ClassLoader parent) {
+            super(parent);
+        }
+
+        @Override
+        protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+            if (!ClassAllowList.getInstance().isAllowed(name)) {
+                throw new SecurityException("Class is not allowed to be deserialized: " + name);
+            }
+            return super.loadClass(name, resolve);
         }
     }
 }
@@ -14,4 +14,25 @@ public class ServiceUtil {
         }
         return serviceKey;
     }
+
+    /**
+     * 生成方法签名：接口名#版本号.方法名(参数类型1,参数类型2)
+     * 客户端与服务端使用同一个签名来对应握手时分配的方法ID
+     * @param serviceKey
+     * @param methodName
+     * @param parameterTypes
+     * @return
+     */
+    public static String makeMethodKey(String serviceKey, String methodName, Class<?>[] parameterTypes) {
+        StringBuilder methodKey = new StringBuilder(serviceKey).append('.').append(methodName).append('(');
+        if (parameterTypes != null) {
+            for (int i = 0; i < parameterTypes.length; ++i) {
+                if (i > 0) {
+                    methodKey.append(',');
+                }
+                methodKey.append(parameterTypes[i].getName());
+            }
+        }
+        return methodKey.append(')').toString();
+    }
 }
@@ -24,12 +24,26 @@ public class ThreadPoolUtil {
      * @return
      */
     public static ThreadPoolExecutor createThreadPool(final String name, int corePoolSize, int maxPoolSize, long keepAliveTime) {
+        return createThreadPool(name, corePoolSize, maxPoolSize, keepAliveTime, 1000);
+    }
+
+    /**
+     * 创建线程池，并指定任务队列的长度，队列与线程都满时以RejectedExecutionException拒绝任务
+     * @param name
+     * @param corePoolSize
+     * @param maxPoolSize
+     * @param keepAliveTime
+     * @param queueSize
+     * @return
+     */
+    public static ThreadPoolExecutor createThreadPool(final String name, int corePoolSize, int maxPoolSize,
+                                                      long keepAliveTime, int queueSize) {
         ThreadPoolExecutor serverHandlerPool = new ThreadPoolExecutor(
                 corePoolSize,
                 maxPoolSize,
                 keepAliveTime,
                 TimeUnit.SECONDS,
-                new LinkedBlockingQueue(1000),
+                new LinkedBlockingQueue(queueSize),
                 new ThreadFactory() {
                     @Override
                     public Thread newThread(Runnable r) {
@@ -0,0 +1,255 @@
+package com.hynis.rpc.common.codec;
+
+import com.hynis.rpc.common.compress.lz4.Lz4Compressor;
+import com.hynis.rpc.common.compress.snappy.SnappyCompressor;
+import com.hynis.rpc.common.config.Beat;
+import com.hynis.rpc.common.entity.RpcRequest;
+import com.hynis.rpc.common.entity.RpcResponse;
+import com.hynis.rpc.common.serializer.hessian.HessianSerializer;
+import com.hynis.rpc.common.serializer.json.JsonSerializer;
+import com.hynis.rpc.common.serializer.kryo.KryoSerializer;
+import com.hynis.rpc.common.serializer.protostuff.ProtostuffSerializer;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.LengthFieldBasedFrameDecoder;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author hynis
+ * @date 2026/10/17 20:00
+ */
+public class RpcCodecTest {
+
+    private static final byte[] SERIALIZER_IDS = {
+            ProtostuffSerializer.ID, KryoSerializer.ID, HessianSerializer.ID, JsonSerializer.ID};
+    /**
+     * 消息头中type、serializer与requestId的偏移量，见ProtocolConstant
+     */
+    private static final int TYPE_OFFSET = 3;
+    private static final int SERIALIZER_OFFSET = 4;
+    private static final int REQUEST_ID_OFFSET = 6;
+
+    private static RpcRequest request(long requestId, byte serializerId, Object... parameters) {
+        RpcRequest request = new RpcRequest();
+        request.setRequestId(requestId);
+        request.setSerializerId(serializerId);
+        request.setClassName("com.hynis.rpc.test.HelloService");
+        request.setMethodName("hello");
+        request.setVersion("1.0");
+        request.setParameters(parameters);
+        return request;
+    }
+
+    /**
+     * 发送方的pipeline：编码后超过最大帧长度的消息拆分为分块帧
+     */
+    private static List<ByteBuf> encodeAll(Object... messages) {
+        EmbeddedChannel sender = new EmbeddedChannel(new ChunkedFrameWriter(), new RpcMsgEncoder());
+        for (Object message : messages) {
+            sender.write(message);
+        }
+        sender.flush();
+        List<ByteBuf> frames = new ArrayList<>();
+        ByteBuf frame;
+        while ((frame = sender.readOutbound()) != null) {
+            frames.add(frame);
+        }
+        return frames;
+    }
+
+    private static ByteBuf encode(Object message) {
+        List<ByteBuf> frames = encodeAll(message);
+        assertEquals(1, frames.size());
+        return frames.get(0);
+    }
+
+    /**
+     * 接收方的pipeline，与RpcClientInitializer、NettyServerInitializer相同
+     */
+    private static List<Object> decodeAll(List<ByteBuf> frames) {
+        EmbeddedChannel receiver = new EmbeddedChannel(new LengthFieldBasedFrameDecoder(ProtocolConstant.MAX_FRAME_LENGTH,
+                ProtocolConstant.LENGTH_FIELD_OFFSET, ProtocolConstant.LENGTH_FIELD_LENGTH, 0, 0), new RpcMsgDecoder());
+        for (ByteBuf frame : frames) {
+            receiver.writeInbound(frame);
+        }
+        List<Object> messages = new ArrayList<>();
+        Object message;
+        while ((message = receiver.readInbound()) != null) {
+            messages.add(message);
+        }
+        return messages;
+    }
+
+    private static Object decode(ByteBuf frame) {
+        List<Object> messages = decodeAll(Collections.singletonList(frame));
+        assertEquals(1, messages.size());
+        return messages.get(0);
+    }
+
+    private static long requestId(ByteBuf frame) {
+        return frame.getLong(frame.readerIndex() + REQUEST_ID_OFFSET);
+    }
+
+    private static byte[] randomBytes(int length) {
+        byte[] bytes = new byte[length];
+        new Random(length).nextBytes(bytes);
+        return bytes;
+    }
+
+    @Test
+    public void requestRoundTrip() {
+        // 请求ID只在消息头中传递，可以使用完整的64位
+        long requestId = Long.MAX_VALUE - 1;
+        for (byte serializerId : SERIALIZER_IDS) {
+            String name = "serializer " + serializerId;
+            ByteBuf frame = encode(request(requestId, serializerId, "hello", 42));
+            assertEquals(name, ProtocolConstant.MAGIC, frame.getShort(frame.readerIndex()));
+            assertEquals(name, MessageType.REQUEST.getCode(), frame.getByte(frame.readerIndex() + TYPE_OFFSET));
+            assertEquals(name, serializerId, frame.getByte(frame.readerIndex() + SERIALIZER_OFFSET));
+            assertEquals(name, requestId, requestId(frame));
+            assertEquals(name, frame.readableBytes() - ProtocolConstant.HEADER_LENGTH,
+                    frame.getInt(frame.readerIndex() + ProtocolConstant.LENGTH_FIELD_OFFSET));
+
+            RpcRequest request = (RpcRequest) decode(frame);
+            assertEquals(name, requestId, request.getRequestId());
+            assertEquals(name, serializerId, request.getSerializerId());
+            assertFalse(name, request.isOneway());
+            assertEquals(name, "com.hynis.rpc.test.HelloService", request.getClassName());
+            assertEquals(name, "hello", request.getMethodName());
+            assertEquals(name, "1.0", request.getVersion());
+            assertEquals(name, Arrays.<Object>asList("hello", 42), Arrays.asList(request.getParameters()));
+        }
+    }
+
+    @Test
+    public void onewayRequestRoundTrip() {
+        RpcRequest oneway = request(5L, KryoSerializer.ID, "hello");
+        oneway.setOneway(true);
+        ByteBuf frame = encode(oneway);
+        assertEquals(MessageType.ONEWAY.getCode(), frame.getByte(frame.readerIndex() + TYPE_OFFSET));
+
+        RpcRequest request = (RpcRequest) decode(frame);
+        assertEquals(5L, request.getRequestId());
+        assertTrue(request.isOneway());
+    }
+
+    @Test
+    public void responseRoundTrip() {
+        RpcResponse response = new RpcResponse();
+        response.setRequestId(6L);
+        response.setSerializerId(HessianSerializer.ID);
+        response.setResult("hello hynis");
+        ByteBuf frame = encode(response);
+        assertEquals(MessageType.RESPONSE.getCode(), frame.getByte(frame.readerIndex() + TYPE_OFFSET));
+
+        RpcResponse decoded = (RpcResponse) decode(frame);
+        assertEquals(6L, decoded.getRequestId());
+        assertEquals(HessianSerializer.ID, decoded.getSerializerId());
+        assertFalse(decoded.isError());
+        assertEquals("hello hynis", decoded.getResult());
+    }
+
+    @Test
+    public void compressedResponseRoundTrip() {
+        StringBuilder result = new StringBuilder();
+        while (result.length() < 16 * 1024) {
+            result.append("hello hynisRpc ");
+        }
+        for (byte compressorId : new byte[]{Lz4Compressor.ID, SnappyCompressor.ID}) {
+            RpcResponse response = new RpcResponse();
+            response.setRequestId(7L);
+            response.setSerializerId(KryoSerializer.ID);
+            response.setCompressorId(compressorId);
+            response.setResult(result.toString());
+
+            ByteBuf frame = encode(response);
+            int flags = frame.getByte(frame.readerIndex() + ProtocolConstant.FLAGS_OFFSET) & 0xFF;
+            assertEquals(compressorId, flags >>> ProtocolConstant.FLAG_COMPRESS_SHIFT);
+            assertTrue(frame.readableBytes() < result.length());
+
+            RpcResponse decoded = (RpcResponse) decode(frame);
+            assertEquals(7L, decoded.getRequestId());
+            assertEquals(compressorId, decoded.getCompressorId());
+            assertFalse(decoded.isError());
+            assertEquals(result.toString(), decoded.getResult());
+        }
+    }
+
+    /**
+     * 小于压缩阈值的消息体不压缩，flags中没有压缩器ID
+     */
+    @Test
+    public void smallBodyIsNotCompressed() {
+        RpcRequest request = request(8L, KryoSerializer.ID, "hello");
+        request.setCompressorId(Lz4Compressor.ID);
+        ByteBuf frame = encode(request);
+        assertEquals(0, frame.getByte(frame.readerIndex() + ProtocolConstant.FLAGS_OFFSET));
+        assertEquals("hello", ((RpcRequest) decode(frame)).getParameters()[0]);
+    }
+
+    @Test
+    public void largeRequestIsChunkedAndReassembled() {
+        byte[] payload = randomBytes(3 * ProtocolConstant.MAX_FRAME_LENGTH);
+        List<ByteBuf> frames = encodeAll(request(9L, KryoSerializer.ID, (Object) payload));
+        assertTrue(frames.size() > 3);
+        for (int i = 0; i < frames.size(); ++i) {
+            ByteBuf frame = frames.get(i);
+            assertTrue(frame.readableBytes() <= ProtocolConstant.MAX_FRAME_LENGTH);
+            assertEquals(9L, requestId(frame));
+            int flags = frame.getByte(frame.readerIndex() + ProtocolConstant.FLAGS_OFFSET);
+            assertTrue((flags & ProtocolConstant.FLAG_CHUNK) != 0);
+            assertEquals(i == frames.size() - 1, (flags & ProtocolConstant.FLAG_LAST_CHUNK) != 0);
+        }
+
+        List<Object> messages = decodeAll(frames);
+        assertEquals(1, messages.size());
+        RpcRequest request = (RpcRequest) messages.get(0);
+        assertEquals(9L, request.getRequestId());
+        assertArrayEquals(payload, (byte[]) request.getParameters()[0]);
+    }
+
+    /**
+     * 两个大消息的分块轮流写出，小消息不排在大消息后面，接收方按请求ID分别重组
+     */
+    @Test
+    public void interleavedChunksAreReassembledByRequestId() {
+        byte[] first = randomBytes(2 * ProtocolConstant.MAX_FRAME_LENGTH);
+        byte[] second = randomBytes(2 * ProtocolConstant.MAX_FRAME_LENGTH + 1);
+        List<ByteBuf> frames = encodeAll(request(10L, KryoSerializer.ID, (Object) first),
+                request(11L, KryoSerializer.ID, (Object) second), request(12L, KryoSerializer.ID, "small"));
+        assertEquals(12L, requestId(frames.get(0)));
+        assertEquals(10L, requestId(frames.get(1)));
+        assertEquals(11L, requestId(frames.get(2)));
+        assertEquals(10L, requestId(frames.get(3)));
+
+        List<Object> messages = decodeAll(frames);
+        assertEquals(3, messages.size());
+        assertEquals(12L, ((RpcRequest) messages.get(0)).getRequestId());
+        assertEquals("small", ((RpcRequest) messages.get(0)).getParameters()[0]);
+        for (Object message : messages.subList(1, 3)) {
+            RpcRequest request = (RpcRequest) message;
+            byte[] expected = request.getRequestId() == 10L ? first : second;
+            assertArrayEquals(expected, (byte[]) request.getParameters()[0]);
+        }
+    }
+
+    @Test
+    public void heartbeatHasNoBody() {
+        ByteBuf frame = encode(Beat.BEAT_PING);
+        assertEquals(ProtocolConstant.HEADER_LENGTH, frame.readableBytes());
+        assertEquals(MessageType.HEARTBEAT.getCode(), frame.getByte(frame.readerIndex() + TYPE_OFFSET));
+        assertSame(Beat.BEAT_PING, decode(frame));
+    }
+}
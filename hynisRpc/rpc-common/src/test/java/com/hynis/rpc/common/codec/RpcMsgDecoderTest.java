@@ -0,0 +1,170 @@
+package com.hynis.rpc.common.codec;
+
+import com.hynis.rpc.common.entity.RpcResponse;
+import com.hynis.rpc.common.serializer.hessian.HessianSerializer;
+import com.hynis.rpc.common.serializer.kryo.KryoSerializer;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.CorruptedFrameException;
+import org.junit.Test;
+
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author hynis
+ * @date 2026/10/19 11:00
+ */
+public class RpcMsgDecoderTest {
+
+    private static final byte UNKNOWN_SERIALIZER = 99;
+
+    /**
+     * 按ProtocolConstant中的格式拼出一个数据帧
+     */
+    static ByteBuf frame(MessageType type, byte serializerId, int flags, long requestId, byte[] body) {
+        return frame(type.getCode(), serializerId, flags, requestId, body);
+    }
+
+    static ByteBuf frame(byte type, byte serializerId, int flags, long requestId, byte[] body) {
+        ByteBuf buf = Unpooled.buffer();
+        buf.writeShort(ProtocolConstant.MAGIC);
+        buf.writeByte(ProtocolConstant.VERSION);
+        buf.writeByte(type);
+        buf.writeByte(serializerId);
+        buf.writeByte(flags);
+        buf.writeLong(requestId);
+        buf.writeInt(body.length);
+        buf.writeBytes(body);
+        return buf;
+    }
+
+    /**
+     * 解码服务端写出的数据
+     */
+    static Object decode(ByteBuf frame) {
+        EmbeddedChannel channel = new EmbeddedChannel(new RpcMsgDecoder());
+        channel.writeInbound(frame);
+        return channel.readInbound();
+    }
+
+    @Test
+    public void requestWithUnknownSerializerGetsErrorResponse() {
+        EmbeddedChannel channel = new EmbeddedChannel(new RpcMsgDecoder(), new RpcMsgEncoder());
+        channel.writeInbound(frame(MessageType.REQUEST, UNKNOWN_SERIALIZER, 0, 7L, new byte[]{1, 2, 3}));
+        assertNull(channel.readInbound());
+
+        ByteBuf outbound = channel.readOutbound();
+        assertNotNull(outbound);
+        RpcResponse response = (RpcResponse) decode(outbound);
+        assertEquals(7L, response.getRequestId());
+        assertTrue(response.getError().contains("Unsupported serializer"));
+        assertTrue(channel.isActive());
+    }
+
+    @Test
+    public void responseWithUnknownSerializerFailsCall() {
+        EmbeddedChannel channel = new EmbeddedChannel(new RpcMsgDecoder());
+        channel.writeInbound(frame(MessageType.RESPONSE, UNKNOWN_SERIALIZER, 0, 8L, new byte[]{1, 2, 3}));
+        RpcResponse response = channel.readInbound();
+        assertEquals(8L, response.getRequestId());
+        assertTrue(response.isError());
+    }
+
+    @Test
+    public void undecodableRequestGetsErrorResponse() {
+        EmbeddedChannel channel = new EmbeddedChannel(new RpcMsgDecoder(), new RpcMsgEncoder());
+        channel.writeInbound(frame(MessageType.REQUEST, (byte) 1, 0, 9L, new byte[]{(byte) 0xFF, (byte) 0xFF, (byte) 0xFF}));
+        RpcResponse response = (RpcResponse) decode(channel.readOutbound());
+        assertEquals(9L, response.getRequestId());
+        assertTrue(response.getError().startsWith("Decode error"));
+    }
+
+    @Test
+    public void requestWithSerializerNotAdvertisedGetsErrorResponse() {
+        EmbeddedChannel channel = new EmbeddedChannel(
+                new RpcMsgDecoder(Collections.singleton(KryoSerializer.ID)), new RpcMsgEncoder());
+        channel.writeInbound(frame(MessageType.REQUEST, HessianSerializer.ID, 0, 12L, new byte[]{1, 2, 3}));
+        assertNull(channel.readInbound());
+        RpcResponse response = (RpcResponse) decode(channel.readOutbound());
+        assertEquals(12L, response.getRequestId());
+        assertTrue(response.getError().contains("is not accepted"));
+    }
+
+    @Test
+    public void oversizedChunkedRequestGetsErrorResponse() {
+        EmbeddedChannel channel = new EmbeddedChannel(new RpcMsgDecoder(4, null), new RpcMsgEncoder());
+        channel.writeInbound(frame(MessageType.REQUEST, (byte) 1, ProtocolConstant.FLAG_CHUNK, 13L, new byte[3]));
+        channel.writeInbound(frame(MessageType.REQUEST, (byte) 1, ProtocolConstant.FLAG_CHUNK, 13L, new byte[3]));
+        RpcResponse response = (RpcResponse) decode(channel.readOutbound());
+        assertEquals(13L, response.getRequestId());
+        assertTrue(response.getError().contains("exceeds max length"));
+        // 之后的分块直接跳过
+        channel.writeInbound(frame(MessageType.REQUEST, (byte) 1,
+                ProtocolConstant.FLAG_CHUNK | ProtocolConstant.FLAG_LAST_CHUNK, 13L, new byte[3]));
+        assertNull(channel.readInbound());
+        assertNull(channel.readOutbound());
+        assertTrue(channel.isOpen());
+    }
+
+    @Test
+    public void tooManyChunkedMessagesClosesConnection() {
+        EmbeddedChannel channel = new EmbeddedChannel(new RpcMsgDecoder(1024, 2, 1024, null));
+        channel.writeInbound(frame(MessageType.REQUEST, (byte) 1, ProtocolConstant.FLAG_CHUNK, 1L, new byte[1]));
+        channel.writeInbound(frame(MessageType.REQUEST, (byte) 1, ProtocolConstant.FLAG_CHUNK, 2L, new byte[1]));
+        assertTrue(channel.isOpen());
+        try {
+            channel.writeInbound(frame(MessageType.REQUEST, (byte) 1, ProtocolConstant.FLAG_CHUNK, 3L, new byte[1]));
+            fail("Too many chunked messages should be rejected");
+        } catch (CorruptedFrameException e) {
+            // 期望的结果
+        }
+        assertFalse(channel.isOpen());
+    }
+
+    @Test
+    public void tooManyBufferedChunkBytesClosesConnection() {
+        EmbeddedChannel channel = new EmbeddedChannel(new RpcMsgDecoder(1024, 16, 8, null));
+        channel.writeInbound(frame(MessageType.REQUEST, (byte) 1, ProtocolConstant.FLAG_CHUNK, 1L, new byte[5]));
+        try {
+            channel.writeInbound(frame(MessageType.REQUEST, (byte) 1, ProtocolConstant.FLAG_CHUNK, 2L, new byte[5]));
+            fail("Too many buffered bytes should be rejected");
+        } catch (CorruptedFrameException e) {
+            // 期望的结果
+        }
+        assertFalse(channel.isOpen());
+    }
+
+    @Test
+    public void unknownMessageTypeClosesConnection() {
+        EmbeddedChannel channel = new EmbeddedChannel(new RpcMsgDecoder());
+        try {
+            channel.writeInbound(frame((byte) 42, (byte) 1, 0, 10L, new byte[0]));
+            fail("Unknown message type should be rejected");
+        } catch (CorruptedFrameException e) {
+            // 期望的结果
+        }
+        assertFalse(channel.isOpen());
+    }
+
+    @Test
+    public void invalidMagicClosesConnection() {
+        EmbeddedChannel channel = new EmbeddedChannel(new RpcMsgDecoder());
+        ByteBuf buf = frame(MessageType.REQUEST, (byte) 1, 0, 11L, new byte[0]);
+        buf.setShort(0, 0x1234);
+        try {
+            channel.writeInbound(buf);
+            fail("Invalid magic should be rejected");
+        } catch (CorruptedFrameException e) {
+            // 期望的结果
+        }
+        assertFalse(channel.isOpen());
+    }
+}
@@ -0,0 +1,36 @@
+package com.hynis.rpc.common.codec;
+
+import com.hynis.rpc.common.entity.RpcRequest;
+import com.hynis.rpc.common.serializer.kryo.KryoSerializer;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.EncoderException;
+import org.junit.Test;
+
+import java.io.File;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author hynis
+ * @date 2026/10/19 16:10
+ */
+public class RpcMsgEncoderTest {
+
+    @Test
+    public void encodeErrorFailsWrite() {
+        EmbeddedChannel channel = new EmbeddedChannel(new RpcMsgEncoder());
+        RpcRequest request = new RpcRequest();
+        request.setRequestId(1L);
+        request.setSerializerId(KryoSerializer.ID);
+        // File不在反序列化白名单中，Kryo在写出时就会拒绝
+        request.setParameters(new Object[]{new File("/tmp")});
+        ChannelFuture future = channel.writeOneOutbound(request);
+        channel.flushOutbound();
+        assertFalse(future.isSuccess());
+        assertTrue(future.cause() instanceof EncoderException);
+        assertNull(channel.readOutbound());
+    }
+}
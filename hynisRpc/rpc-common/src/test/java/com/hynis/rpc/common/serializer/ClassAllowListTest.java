@@ -0,0 +1,64 @@
+package com.hynis.rpc.common.serializer;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author hynis
+ * @date 2026/10/19 14:30
+ */
+public class ClassAllowListTest {
+
+    interface DemoService {
+        List<Map<String, File>> find(File[] files);
+    }
+
+    @Test
+    public void allowsJdkValueTypesAndFrameworkClasses() {
+        ClassAllowList allowList = new ClassAllowList(Collections.<String>emptyList());
+        assertTrue(allowList.isAllowed("java.lang.String"));
+        assertTrue(allowList.isAllowed("java.util.HashMap"));
+        assertTrue(allowList.isAllowed("java.math.BigDecimal"));
+        assertTrue(allowList.isAllowed("com.hynis.rpc.common.entity.RpcRequest"));
+        assertTrue(allowList.isAllowed("[Lcom.hynis.rpc.common.entity.RpcRequest;"));
+        assertTrue(allowList.isAllowed("[[I"));
+        assertTrue(allowList.isAllowed(int.class));
+        assertTrue(allowList.isAllowed(String[].class));
+    }
+
+    @Test
+    public void deniesOtherClasses() {
+        ClassAllowList allowList = new ClassAllowList(Collections.<String>emptyList());
+        assertFalse(allowList.isAllowed("java.io.File"));
+        assertFalse(allowList.isAllowed("[Ljava.io.File;"));
+        assertFalse(allowList.isAllowed("java.lang.Runtime"));
+        assertFalse(allowList.isAllowed("java.lang.ProcessBuilder"));
+        assertFalse(allowList.isAllowed("java.lang.reflect.Proxy"));
+        assertFalse(allowList.isAllowed("javax.script.ScriptEngineManager"));
+        assertFalse(allowList.isAllowed(File.class));
+    }
+
+    @Test
+    public void allowsConfiguredPrefixes() {
+        ClassAllowList allowList = new ClassAllowList(Collections.singletonList("java.io.File"));
+        assertTrue(allowList.isAllowed("java.io.File"));
+        assertTrue(allowList.isAllowed(File[].class));
+        assertFalse(allowList.isAllowed("java.io.ObjectInputStream"));
+    }
+
+    @Test
+    public void allowsDeclaredMethodTypes() throws NoSuchMethodException {
+        ClassAllowList allowList = new ClassAllowList(Collections.<String>emptyList());
+        allowList.allowMethodTypes(DemoService.class.getMethod("find", File[].class));
+        assertTrue(allowList.isAllowed("java.io.File"));
+        assertTrue(allowList.isAllowed("[Ljava.io.File;"));
+        assertTrue(allowList.isAllowed(File.class));
+    }
+}
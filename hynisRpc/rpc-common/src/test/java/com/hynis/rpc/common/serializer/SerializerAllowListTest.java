@@ -0,0 +1,66 @@
+package com.hynis.rpc.common.serializer;
+
+import com.hynis.rpc.common.entity.RpcRequest;
+import com.hynis.rpc.common.serializer.hessian.HessianSerializer;
+import com.hynis.rpc.common.serializer.json.JsonSerializer;
+import com.hynis.rpc.common.serializer.kryo.KryoSerializer;
+import com.hynis.rpc.common.serializer.protostuff.ProtostuffSerializer;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+/**
+ * @author hynis
+ * @date 2026/10/19 14:40
+ */
+public class SerializerAllowListTest {
+
+    private static final List<Serializer> SERIALIZERS = Arrays.asList(
+            new ProtostuffSerializer(), new KryoSerializer(), new HessianSerializer(), new JsonSerializer());
+
+    private static RpcRequest request(Object... parameters) {
+        RpcRequest request = new RpcRequest();
+        request.setClassName("com.hynis.rpc.test.HelloService");
+        request.setMethodName("hello");
+        request.setParameters(parameters);
+        return request;
+    }
+
+    @Test
+    public void allowedParametersRoundTrip() {
+        List<Object> list = new ArrayList<>();
+        list.add("a");
+        list.add(1L);
+        for (Serializer serializer : SERIALIZERS) {
+            RpcRequest request = (RpcRequest) serializer.deserialize(
+                    serializer.serialize(request("hello", 42, list)), RpcRequest.class);
+            assertEquals(serializer.getName(), "hello", request.getParameters()[0]);
+            assertEquals(serializer.getName(), 42, request.getParameters()[1]);
+            assertEquals(serializer.getName(), list, request.getParameters()[2]);
+        }
+    }
+
+    /**
+     * 不在白名单中的类不会被还原：反序列化失败，或者Hessian按Map读取
+     */
+    @Test
+    public void disallowedParameterIsNotInstantiated() {
+        for (Serializer serializer : SERIALIZERS) {
+            Object parameter;
+            try {
+                RpcRequest request = (RpcRequest) serializer.deserialize(
+                        serializer.serialize(request(new File("/tmp"))), RpcRequest.class);
+                parameter = request.getParameters()[0];
+            } catch (RuntimeException e) {
+                continue;
+            }
+            assertFalse(serializer.getName(), parameter instanceof File);
+        }
+    }
+}
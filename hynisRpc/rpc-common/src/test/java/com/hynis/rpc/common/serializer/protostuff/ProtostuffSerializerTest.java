@@ -0,0 +1,90 @@
+package com.hynis.rpc.common.serializer.protostuff;
+
+import com.hynis.rpc.common.entity.RpcRequest;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.CompositeByteBuf;
+import io.netty.buffer.Unpooled;
+import io.protostuff.LinkedBuffer;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+/**
+ * @author hynis
+ * @date 2026/10/17 19:40
+ */
+public class ProtostuffSerializerTest {
+
+    private final ProtostuffSerializer serializer = new ProtostuffSerializer();
+
+    private static RpcRequest request() {
+        RpcRequest request = new RpcRequest();
+        request.setRequestId(1L);
+        request.setClassName("com.hynis.rpc.test.HelloService");
+        request.setMethodName("hello");
+        request.setParameterTypes(new Class<?>[]{String.class, Integer.class});
+        request.setParameters(new Object[]{"hynis", 42});
+        request.setVersion("1.0");
+        return request;
+    }
+
+    private void assertDeserialized(ByteBuf in) {
+        // 消息体之前还有其他数据（如消息头），从readerIndex开始读取
+        in.skipBytes(3);
+        int end = in.writerIndex();
+        RpcRequest request = (RpcRequest) serializer.deserialize(in, RpcRequest.class);
+        assertEquals(request(), request);
+        assertEquals(end, in.readerIndex());
+        assertFalse(in.isReadable());
+        in.release();
+    }
+
+    @Test
+    public void deserializeFromHeapBuffer() {
+        ByteBuf in = Unpooled.buffer();
+        in.writeBytes(new byte[3]).writeBytes(serializer.serialize(request()));
+        assertDeserialized(in);
+    }
+
+    @Test
+    public void deserializeFromDirectBuffer() {
+        ByteBuf in = Unpooled.directBuffer();
+        in.writeBytes(new byte[3]).writeBytes(serializer.serialize(request()));
+        assertDeserialized(in);
+    }
+
+    @Test
+    public void deserializeFromCompositeBuffer() {
+        byte[] bytes = serializer.serialize(request());
+        int half = bytes.length / 2;
+        CompositeByteBuf in = Unpooled.compositeBuffer();
+        in.addComponent(true, Unpooled.wrappedBuffer(new byte[3]));
+        in.addComponent(true, Unpooled.directBuffer().writeBytes(bytes, 0, half));
+        in.addComponent(true, Unpooled.directBuffer().writeBytes(Arrays.copyOfRange(bytes, half, bytes.length)));
+        assertDeserialized(in);
+    }
+
+    /**
+     * 超过LinkedBuffer容量的对象分多次刷入ByteBuf，结果与序列化为byte[]相同
+     */
+    @Test
+    public void serializeIntoByteBuf() {
+        RpcRequest request = request();
+        char[] name = new char[4 * LinkedBuffer.DEFAULT_BUFFER_SIZE];
+        Arrays.fill(name, 'a');
+        request.setParameters(new Object[]{new String(name), 42});
+
+        ByteBuf out = Unpooled.directBuffer();
+        out.writeInt(0);
+        serializer.serialize(request, out);
+        out.skipBytes(4);
+        assertArrayEquals(serializer.serialize(request), ByteBufUtil.getBytes(out));
+        assertEquals(request, serializer.deserialize(out, RpcRequest.class));
+        out.release();
+    }
+}
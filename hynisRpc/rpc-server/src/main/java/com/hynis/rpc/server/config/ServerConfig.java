@@ -10,4 +10,60 @@ import org.springframework.context.annotation.Configuration;
 public class ServerConfig {
     public static final int SERVER_PORT = 8080;
     public static final int SO_BACKLOG_SIZE = 1024;
+    /**
+     * 合并flush：连续这么多次flush之后才真正flush一次，EventLoop空闲前还会再flush一次
+     */
+    public static final int EXPLICIT_FLUSH_AFTER_FLUSHES = Integer.getInteger("hynis.rpc.server.explicitFlushAfterFlushes", 64);
+    /**
+     * 注册到Zookeeper的权重，客户端按权重比例分配请求，默认为CPU核数
+     */
+    public static final int WEIGHT = Integer.getInteger("hynis.rpc.server.weight", Runtime.getRuntime().availableProcessors());
+    /**
+     * 公共线程池的核心线程数、最大线程数与队列长度，没有指定舱壁的服务在公共线程池中执行
+     */
+    public static final int POOL_CORE_THREADS = Integer.getInteger("hynis.rpc.server.poolCoreThreads", 16);
+    public static final int POOL_MAX_THREADS = Integer.getInteger("hynis.rpc.server.poolMaxThreads", 32);
+    public static final int POOL_QUEUE_SIZE = Integer.getInteger("hynis.rpc.server.poolQueueSize", 1000);
+    /**
+     * 舱壁线程池默认的线程数与队列长度，队列较短，满了之后尽快返回过载响应，让客户端换一个节点
+     */
+    public static final int BULKHEAD_THREADS = Integer.getInteger("hynis.rpc.server.bulkheadThreads", 8);
+    public static final int BULKHEAD_QUEUE_SIZE = Integer.getInteger("hynis.rpc.server.bulkheadQueueSize", 100);
+
+    /**
+     * 是否启用每个服务的自适应并发限制（见ConcurrencyLimiter）
+     */
+    public static final boolean LIMITER_ENABLED = Boolean.parseBoolean(System.getProperty("hynis.rpc.server.limiter", "true"));
+    /**
+     * 自适应并发限制的初始值、最小值与最大值
+     */
+    public static final int LIMITER_INITIAL_LIMIT = Integer.getInteger("hynis.rpc.server.limiterInitialLimit", 20);
+    public static final int LIMITER_MIN_LIMIT = Integer.getInteger("hynis.rpc.server.limiterMinLimit", 4);
+    public static final int LIMITER_MAX_LIMIT = Integer.getInteger("hynis.rpc.server.limiterMaxLimit", 1000);
+    /**
+     * 自适应并发限制：响应时间超过无负载响应时间的多少倍才收缩限制，允许少量排队并容忍响应时间的抖动
+     */
+    public static final double LIMITER_TOLERANCE = Double.parseDouble(System.getProperty("hynis.rpc.server.limiterTolerance", "1.5"));
+    /**
+     * 自适应并发限制：重新探测无负载响应时间的间隔，单位毫秒，探测期间并发限制降到最小值
+     */
+    public static final long LIMITER_PROBE_INTERVAL = Long.getLong("hynis.rpc.server.limiterProbeInterval", 30000L);
+
+    /**
+     * 名为name的舱壁线程池的线程数，可以通过 -Dhynis.rpc.server.bulkhead.<name>.threads 单独指定
+     * @param name
+     * @return
+     */
+    public static int bulkheadThreads(String name) {
+        return Integer.getInteger("hynis.rpc.server.bulkhead." + name + ".threads", BULKHEAD_THREADS);
+    }
+
+    /**
+     * 名为name的舱壁线程池的队列长度，可以通过 -Dhynis.rpc.server.bulkhead.<name>.queueSize 单独指定
+     * @param name
+     * @return
+     */
+    public static int bulkheadQueueSize(String name) {
+        return Integer.getInteger("hynis.rpc.server.bulkhead." + name + ".queueSize", BULKHEAD_QUEUE_SIZE);
+    }
 }
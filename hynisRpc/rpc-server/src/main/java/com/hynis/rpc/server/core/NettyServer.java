@@ -1,9 +1,15 @@
 package com.hynis.rpc.server.core;
 
+import com.hynis.rpc.common.compress.CompressorRegistry;
+import com.hynis.rpc.common.protocol.RpcServiceInfo;
+import com.hynis.rpc.common.serializer.SerializerRegistry;
 import com.hynis.rpc.common.util.ServiceUtil;
 import com.hynis.rpc.common.util.ThreadPoolUtil;
 import com.hynis.rpc.server.initializer.NettyServerInitializer;
 import com.hynis.rpc.server.config.ServerConfig;
+import com.hynis.rpc.server.executor.ExecutorRegistry;
+import com.hynis.rpc.server.invoker.InvokerRegistry;
+import com.hynis.rpc.server.limit.LimiterRegistry;
 import com.hynis.rpc.server.register.ServiceRegister;
 import io.netty.bootstrap.ServerBootstrap;
 import io.netty.channel.ChannelFuture;
@@ -14,7 +20,6 @@ import lombok.extern.slf4j.Slf4j;
 
 import java.util.HashMap;
 import java.util.Map;
-import java.util.concurrent.ThreadPoolExecutor;
 
 /**
  * @author hynis
@@ -39,29 +44,109 @@ public class NettyServer extends Server {
      * 存放该服务地址提供的所有服务，key为接口名+版本号，value为实现类存于map
      */
     private Map<String, Object> serviceMap = new HashMap<>();
+    /**
+     * 每个服务的服务信息（包括使用的序列化器与压缩器），key为接口名+版本号，注册到Zookeeper
+     */
+    private Map<String, RpcServiceInfo> serviceInfoMap = new HashMap<>();
+    /**
+     * 方法调用器注册表，在addService时为服务的每个方法生成调用器
+     */
+    private InvokerRegistry invokerRegistry = new InvokerRegistry();
+    /**
+     * 注册到Zookeeper的权重，默认为CPU核数（见ServerConfig.WEIGHT）
+     */
+    private int weight = ServerConfig.WEIGHT;
+    /**
+     * 每个服务的自适应并发限制，所有连接共用
+     */
+    private final LimiterRegistry limiterRegistry = new LimiterRegistry();
 
     public NettyServer(String serverAddress, String registerAddress) {
         this.serverAddress = serverAddress;
         this.serviceRegister = new ServiceRegister(registerAddress);
     }
 
+    /**
+     * 设置服务端的权重，需要在start之前调用
+     * @param weight 服务端的处理能力，如CPU核数或者压测得到的容量
+     */
+    public void setWeight(int weight) {
+        if (weight <= 0) {
+            throw new IllegalArgumentException("weight must be positive: " + weight);
+        }
+        this.weight = weight;
+    }
+
     /**
      * 注册服务：将服务（接口名，版本号，实现类），按key为接口名+版本号，value为实现类存于map
+     * 同时为服务的所有方法生成调用器，服务使用默认序列化器
      * @param interfaceName
      * @param version
      * @param serviceBean
      */
     public void addService(String interfaceName, String version, Object serviceBean) {
-        log.info("Adding service, interface: {}, version: {}, bean：{}", interfaceName, version, serviceBean);
+        addService(interfaceName, version, serviceBean, "", "");
+    }
+
+    /**
+     * 注册服务，并指定服务使用的序列化器与压缩器
+     * @param interfaceName
+     * @param version
+     * @param serviceBean
+     * @param serializer 序列化器名称，为空或者找不到该序列化器时使用默认序列化器
+     * @param compressor 压缩器名称，为空或者找不到该压缩器时不压缩
+     */
+    public void addService(String interfaceName, String version, Object serviceBean, String serializer, String compressor) {
+        addService(interfaceName, version, serviceBean, serializer, compressor, "");
+    }
+
+    /**
+     * 注册服务，并指定服务使用的序列化器、压缩器与舱壁
+     * @param interfaceName
+     * @param version
+     * @param serviceBean
+     * @param serializer 序列化器名称，为空或者找不到该序列化器时使用默认序列化器
+     * @param compressor 压缩器名称，为空或者找不到该压缩器时不压缩
+     * @param bulkhead 舱壁名称，服务在同名的独立线程池中执行，为空时使用公共线程池
+     */
+    public void addService(String interfaceName, String version, Object serviceBean, String serializer,
+                           String compressor, String bulkhead) {
+        log.info("Adding service, interface: {}, version: {}, bean：{}, serializer: {}, compressor: {}, bulkhead: {}",
+                interfaceName, version, serviceBean, serializer, compressor, bulkhead);
+        if (serializer != null && !serializer.isEmpty() && SerializerRegistry.getInstance().getSerializer(serializer) == null) {
+            log.warn("Can not find serializer: {}, use default serializer for service: {}", serializer, interfaceName);
+            serializer = "";
+        }
+        if (compressor != null && !compressor.isEmpty() && CompressorRegistry.getInstance().getCompressor(compressor) == null) {
+            log.warn("Can not find compressor: {}, disable compression for service: {}", compressor, interfaceName);
+            compressor = "";
+        }
         String serviceKey = ServiceUtil.makeServiceKey(interfaceName, version);
         serviceMap.put(serviceKey, serviceBean);
+        RpcServiceInfo serviceInfo = new RpcServiceInfo();
+        serviceInfo.setServiceName(interfaceName);
+        serviceInfo.setVersion(version != null ? version : "");
+        serviceInfo.setSerializer(serializer);
+        serviceInfo.setCompressor(compressor);
+        serviceInfoMap.put(serviceKey, serviceInfo);
+        invokerRegistry.register(serviceKey, interfaceName, serviceBean,
+                SerializerRegistry.getInstance().getSerializer(serializer).getId(), bulkhead);
+    }
+
+    /**
+     * 每个服务的自适应并发限制，可以用来监控每个服务当前的并发数与限制（ConcurrencyLimiter.getInFlight、getLimit）
+     * @return
+     */
+    public LimiterRegistry getLimiterRegistry() {
+        return limiterRegistry;
     }
 
     @Override
     public void start() {
         thread = new Thread(new Runnable() {
-            ThreadPoolExecutor threadPoolExecutor = ThreadPoolUtil
-                    .createThreadPool(NettyServer.class.getSimpleName(), 16, 32, 60);
+            ExecutorRegistry executorRegistry = new ExecutorRegistry(ThreadPoolUtil.createThreadPool(
+                    NettyServer.class.getSimpleName(), ServerConfig.POOL_CORE_THREADS, ServerConfig.POOL_MAX_THREADS,
+                    60, ServerConfig.POOL_QUEUE_SIZE));
 
             @Override
             public void run() {
@@ -75,7 +160,7 @@ public class NettyServer extends Server {
                 // worker：负责READ、WRITE请求
                 NioEventLoopGroup workerGroup = new NioEventLoopGroup();
                 // 入站出站处理器
-                NettyServerInitializer nettyServerInitializer = new NettyServerInitializer(serviceMap, threadPoolExecutor);
+                NettyServerInitializer nettyServerInitializer = new NettyServerInitializer(invokerRegistry, executorRegistry, limiterRegistry);
                 // 启动
                 try {
                     ChannelFuture future = new ServerBootstrap()
@@ -93,7 +178,7 @@ public class NettyServer extends Server {
                             .bind(host, port)
                             .sync();
                     if (serviceRegister != null) {
-                        serviceRegister.registerService(host, port, serviceMap);
+                        serviceRegister.registerService(host, port, weight, serviceInfoMap);
                     }
                     log.info("Netty server started successfully in the port={}", ServerConfig.SERVER_PORT);
                     future.channel().closeFuture().sync();
@@ -103,6 +188,7 @@ public class NettyServer extends Server {
                     serviceRegister.unregisterService();
                     bossGroup.shutdownGracefully();
                     workerGroup.shutdownGracefully();
+                    executorRegistry.shutdown();
                 }
             }
         });
@@ -36,7 +36,8 @@ public class RpcNettyServer extends NettyServer
                 RpcService service = serviceBean.getClass().getAnnotation(RpcService.class);
                 String interfaceName = service.value().getName();
                 String version = service.version();
-                super.addService(interfaceName, version, serviceBean);
+                super.addService(interfaceName, version, serviceBean, service.serializer(), service.compressor(),
+                        service.bulkhead());
             }
         }
     }
@@ -0,0 +1,72 @@
+package com.hynis.rpc.server.executor;
+
+import com.hynis.rpc.common.util.ThreadPoolUtil;
+import com.hynis.rpc.server.config.ServerConfig;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadPoolExecutor;
+
+/**
+ * @author hynis
+ * @date 2026/10/18 23:20
+ *
+ * 执行服务方法的线程池注册表（舱壁隔离）
+ * 没有指定舱壁的方法在公共线程池中执行；指定了舱壁的方法（见RpcService.bulkhead与RpcBulkhead）在同名的独立线程池中执行，
+ * 一个服务变慢只会占满自己的线程池，不会饿死同一台服务器上的其他服务
+ * 独立线程池在第一次使用时创建，大小见ServerConfig.bulkheadThreads与ServerConfig.bulkheadQueueSize
+ */
+@Slf4j
+public class ExecutorRegistry {
+    /**
+     * 公共线程池
+     */
+    private final ThreadPoolExecutor defaultExecutor;
+    /**
+     * 舱壁线程池，key为舱壁名称
+     */
+    private final Map<String, ThreadPoolExecutor> bulkheadExecutors = new ConcurrentHashMap<>();
+
+    public ExecutorRegistry(ThreadPoolExecutor defaultExecutor) {
+        this.defaultExecutor = defaultExecutor;
+    }
+
+    /**
+     * 获取舱壁对应的线程池
+     * @param bulkhead 舱壁名称，为空时返回公共线程池
+     * @return
+     */
+    public ThreadPoolExecutor getExecutor(String bulkhead) {
+        if (bulkhead == null || bulkhead.isEmpty()) {
+            return defaultExecutor;
+        }
+        ThreadPoolExecutor executor = bulkheadExecutors.get(bulkhead);
+        return executor != null ? executor : createExecutor(bulkhead);
+    }
+
+    private synchronized ThreadPoolExecutor createExecutor(String bulkhead) {
+        ThreadPoolExecutor executor = bulkheadExecutors.get(bulkhead);
+        if (executor == null) {
+            int threads = ServerConfig.bulkheadThreads(bulkhead);
+            int queueSize = ServerConfig.bulkheadQueueSize(bulkhead);
+            executor = ThreadPoolUtil.createThreadPool("Bulkhead-" + bulkhead, threads, threads, 60, Math.max(1, queueSize));
+            bulkheadExecutors.put(bulkhead, executor);
+            log.info("Create bulkhead {} with {} threads, queue size: {}", bulkhead, threads, queueSize);
+        }
+        return executor;
+    }
+
+    /**
+     * 关闭所有线程池，已经提交的任务仍会执行完
+     */
+    public void shutdown() {
+        List<ThreadPoolExecutor> executors = new ArrayList<>(bulkheadExecutors.values());
+        executors.add(defaultExecutor);
+        for (ThreadPoolExecutor executor : executors) {
+            executor.shutdown();
+        }
+    }
+}
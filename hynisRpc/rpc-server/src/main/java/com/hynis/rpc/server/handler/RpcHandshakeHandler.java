@@ -0,0 +1,31 @@
+package com.hynis.rpc.server.handler;
+
+import com.hynis.rpc.common.entity.RpcHandshake;
+import com.hynis.rpc.server.invoker.InvokerRegistry;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.SimpleChannelInboundHandler;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * @author hynis
+ * @date 2026/10/17 21:25
+ *
+ * 处理客户端的握手：返回方法字典，客户端之后的请求只需要携带方法ID
+ */
+@Slf4j
+public class RpcHandshakeHandler extends SimpleChannelInboundHandler<RpcHandshake> {
+
+    private final InvokerRegistry invokerRegistry;
+
+    public RpcHandshakeHandler(InvokerRegistry invokerRegistry) {
+        this.invokerRegistry = invokerRegistry;
+    }
+
+    @Override
+    protected void channelRead0(ChannelHandlerContext ctx, RpcHandshake handshake) throws Exception {
+        RpcHandshake response = new RpcHandshake();
+        response.setMethodIds(invokerRegistry.getMethodDictionary());
+        ctx.writeAndFlush(response);
+        log.info("Send {} method ids to {}", response.getMethodIds().size(), ctx.channel().remoteAddress());
+    }
+}
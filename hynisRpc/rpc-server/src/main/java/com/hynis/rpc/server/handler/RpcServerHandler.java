@@ -1,122 +1,256 @@
 package com.hynis.rpc.server.handler;
 
+import com.hynis.rpc.common.context.RpcContext;
 import com.hynis.rpc.common.entity.RpcRequest;
 import com.hynis.rpc.common.entity.RpcResponse;
 import com.hynis.rpc.common.util.ServiceUtil;
 import com.hynis.rpc.common.config.Beat;
+import com.hynis.rpc.server.executor.ExecutorRegistry;
+import com.hynis.rpc.server.invoker.InvokerRegistry;
+import com.hynis.rpc.server.limit.ConcurrencyLimiter;
+import com.hynis.rpc.server.limit.LimiterRegistry;
+import com.hynis.rpc.server.invoker.MethodInvoker;
 import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelFutureListener;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.SimpleChannelInboundHandler;
 import io.netty.handler.timeout.IdleStateEvent;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.cglib.reflect.FastClass;
 
-import java.lang.reflect.InvocationTargetException;
-import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 /**
  * @author hynis
  * @date 2023/8/2 22:22
  *
- * 从request获取反射需要的信息，之后通过动态代理调用对应的方法进行执行，返回response
+ * 从request获取服务与方法信息，之后通过预先生成的方法调用器执行对应的方法，返回response
+ * 请求带有调用方的超时时间时，按收到请求的时刻换算为截止时间：
+ * 在线程池队列中等到过期的请求不再执行，执行完时已经过期的请求不再返回响应（调用方已经以超时结束）；
+ * 截止时间通过RpcContext交给服务方法，服务方法中发起的Rpc调用会继承剩余时间
+ * 方法在所属舱壁的线程池中执行（见ExecutorRegistry），线程池拒绝时直接在IO线程中返回过载响应
+ * 进入线程池之前先检查服务的自适应并发限制（见ConcurrencyLimiter），达到限制时同样立即返回过载响应，不在队列中排队
  */
 @Slf4j
 public class RpcServerHandler extends SimpleChannelInboundHandler<RpcRequest> {
     /**
-     * key为接口名+版本号，value为对应的实体类
+     * 方法调用器注册表，key为接口名+版本号+方法签名
      */
-    private final Map<String, Object> serviceMap;
-    private final ThreadPoolExecutor serverHandlerPool;
+    private final InvokerRegistry invokerRegistry;
+    /**
+     * 执行服务方法的线程池，按方法的舱壁选择
+     */
+    private final ExecutorRegistry executorRegistry;
+    /**
+     * 每个服务的并发限制，为null时不限制；同一个服务端的所有连接共用
+     */
+    private final LimiterRegistry limiterRegistry;
 
-    public RpcServerHandler(Map<String, Object> serviceMap, final ThreadPoolExecutor serverHandlerPool) {
-        this.serviceMap = serviceMap;
-        this.serverHandlerPool = serverHandlerPool;
+    public RpcServerHandler(InvokerRegistry invokerRegistry, final ThreadPoolExecutor serverHandlerPool) {
+        this(invokerRegistry, new ExecutorRegistry(serverHandlerPool), null);
+    }
+
+    public RpcServerHandler(InvokerRegistry invokerRegistry, ExecutorRegistry executorRegistry, LimiterRegistry limiterRegistry) {
+        this.invokerRegistry = invokerRegistry;
+        this.executorRegistry = executorRegistry;
+        this.limiterRegistry = limiterRegistry;
     }
 
     @Override
     protected void channelRead0(final ChannelHandlerContext ctx,
                                 final RpcRequest rpcRequest) throws Exception {
         // 过滤掉心跳信息
-        if (Beat.BEAT_ID.equalsIgnoreCase(rpcRequest.getRequestId())) {
+        if (Beat.BEAT_ID == rpcRequest.getRequestId()) {
             log.info("Server read heartbeat ping");
             return;
         }
-        serverHandlerPool.execute(new Runnable() {
-            @Override
-            public void run() {
-                log.info("Receive request " + rpcRequest.getRequestId());
-                RpcResponse response = new RpcResponse();
-                response.setRequestId(rpcRequest.getRequestId());
-                try {
-                    // 将请求传入，动态代理执行方法
-                    Object result = handle(rpcRequest);
-                    response.setResult(result);
-                } catch (Throwable t) {
-                    response.setError(t.toString());
-                    log.error("RPC Server handle request error", t);
+        final long receiveNanos = System.nanoTime();
+        final long deadlineNanos = rpcRequest.getTimeout() > 0
+                ? receiveNanos + TimeUnit.MILLISECONDS.toNanos(rpcRequest.getTimeout()) : 0;
+        // 在IO线程中查找调用器（按方法ID或者签名查表），才能选择方法所属舱壁的线程池与服务的并发限制
+        final MethodInvoker invoker = findInvoker(rpcRequest);
+        if (invoker != null && invoker.getSerializerId() != rpcRequest.getSerializerId()) {
+            rejectSerializer(ctx, rpcRequest, invoker);
+            return;
+        }
+        final ConcurrencyLimiter limiter = invoker != null && limiterRegistry != null
+                ? limiterRegistry.getLimiter(invoker.getServiceKey()) : null;
+        if (limiter != null && !limiter.tryAcquire()) {
+            rejectOverloaded(ctx, rpcRequest, "concurrency limit " + limiter.getLimit() + " of " + limiter.getName() + " is reached");
+            return;
+        }
+        String bulkhead = invoker != null ? invoker.getBulkhead() : "";
+        try {
+            executorRegistry.getExecutor(bulkhead).execute(new Runnable() {
+                @Override
+                public void run() {
+                    process(ctx, rpcRequest, invoker, limiter, receiveNanos, deadlineNanos);
                 }
-                ctx.writeAndFlush(response)
-                        .addListener(new ChannelFutureListener() {
-                    @Override
-                    public void operationComplete(ChannelFuture channelFuture) throws Exception {
-                        log.info("Send response for request " + rpcRequest.getRequestId());
-                    }
-                });
+            });
+        } catch (RejectedExecutionException e) {
+            if (limiter != null) {
+                limiter.onDropped(System.nanoTime() - receiveNanos);
             }
-        });
+            rejectOverloaded(ctx, rpcRequest, "executor " + (bulkhead.isEmpty() ? "default" : bulkhead) + " is full");
+        }
     }
 
     /**
-     * 处理请求
+     * 在线程池中执行请求并写出响应
+     * @param ctx
      * @param rpcRequest
-     * @return
+     * @param invoker 找不到方法时为null
+     * @param limiter 服务的并发限制，没有时为null
+     * @param receiveNanos 收到请求的时间，System.nanoTime
+     * @param deadlineNanos System.nanoTime，为0表示没有截止时间
      */
-    private Object handle(RpcRequest rpcRequest) throws InvocationTargetException {
-        String className = rpcRequest.getClassName();
-        String version = rpcRequest.getVersion();
+    private void process(ChannelHandlerContext ctx, final RpcRequest rpcRequest, MethodInvoker invoker,
+                         ConcurrencyLimiter limiter, long receiveNanos, long deadlineNanos) {
+        log.info("Receive request " + rpcRequest.getRequestId());
+        if (isExpired(deadlineNanos)) {
+            log.warn("Drop request {} expired in queue, timeout: {}ms", rpcRequest.getRequestId(), rpcRequest.getTimeout());
+            if (limiter != null) {
+                limiter.onDropped(System.nanoTime() - receiveNanos);
+            }
+            return;
+        }
+        RpcResponse response = newResponse(rpcRequest);
+        RpcContext context = RpcContext.getContext();
+        if (deadlineNanos != 0) {
+            context.setDeadline(deadlineNanos);
+        }
+        try {
+            // 将请求传入，动态代理执行方法
+            Object result = handle(invoker, rpcRequest);
+            response.setResult(result);
+        } catch (Throwable t) {
+            response.setError(t.toString());
+            log.error("RPC Server handle request error", t);
+        } finally {
+            RpcContext.removeContext();
+            // 响应时间包括在线程池队列中等待的时间，排队变长时并发限制随之收缩
+            if (limiter != null) {
+                limiter.onSuccess(System.nanoTime() - receiveNanos);
+            }
+        }
+        // 单向请求不需要返回响应
+        if (rpcRequest.isOneway()) {
+            return;
+        }
+        if (isExpired(deadlineNanos)) {
+            log.warn("Drop response of request {} expired during invocation, timeout: {}ms", rpcRequest.getRequestId(), rpcRequest.getTimeout());
+            return;
+        }
+        ctx.writeAndFlush(response)
+                .addListener(new ChannelFutureListener() {
+            @Override
+            public void operationComplete(ChannelFuture channelFuture) throws Exception {
+                log.info("Send response for request " + rpcRequest.getRequestId());
+            }
+        });
+    }
 
-        String serviceKey = ServiceUtil.makeServiceKey(className, version);
-        Object serviceBean = serviceMap.get(serviceKey);
+    /**
+     * 达到并发限制或者线程池已满：请求没有被执行，返回过载响应，客户端可以换一个节点重试
+     * @param ctx
+     * @param rpcRequest
+     * @param reason 拒绝的原因
+     */
+    private void rejectOverloaded(ChannelHandlerContext ctx, RpcRequest rpcRequest, String reason) {
+        log.warn("Reject request {}, {}", rpcRequest.getRequestId(), reason);
+        if (rpcRequest.isOneway()) {
+            return;
+        }
+        RpcResponse response = newResponse(rpcRequest);
+        response.setOverloaded(true);
+        response.setError("Server overloaded, " + reason);
+        ctx.writeAndFlush(response);
+    }
 
-        if (serviceBean == null) {
-            log.error("Can not find service implement with interface name: {} and version: {}", className, version);
-            return null;
+    /**
+     * 请求使用的序列化器不是服务声明的序列化器：不执行请求，返回错误响应
+     * @param ctx
+     * @param rpcRequest
+     * @param invoker
+     */
+    private void rejectSerializer(ChannelHandlerContext ctx, RpcRequest rpcRequest, MethodInvoker invoker) {
+        log.warn("Reject request {}, serializer {} is not the serializer {} of service {}", rpcRequest.getRequestId(),
+                rpcRequest.getSerializerId(), invoker.getSerializerId(), invoker.getServiceKey());
+        if (rpcRequest.isOneway()) {
+            return;
         }
+        RpcResponse response = newResponse(rpcRequest);
+        response.setError("Serializer " + rpcRequest.getSerializerId() + " is not accepted by service " + invoker.getServiceKey());
+        ctx.writeAndFlush(response);
+    }
 
+    private static RpcResponse newResponse(RpcRequest rpcRequest) {
+        RpcResponse response = new RpcResponse();
+        response.setRequestId(rpcRequest.getRequestId());
+        // 响应使用与请求相同的序列化器与压缩器
+        response.setSerializerId(rpcRequest.getSerializerId());
+        response.setCompressorId(rpcRequest.getCompressorId());
+        return response;
+    }
 
-        Class<?> serviceClass = serviceBean.getClass();
-        String methodName = rpcRequest.getMethodName();
-        Class<?>[] parameterTypes = rpcRequest.getParameterTypes();
-        Object[] parameters = rpcRequest.getParameters();
+    /**
+     * 请求是否已经超过截止时间
+     * @param deadlineNanos System.nanoTime，为0表示没有截止时间
+     * @return
+     */
+    private static boolean isExpired(long deadlineNanos) {
+        return deadlineNanos != 0 && System.nanoTime() - deadlineNanos >= 0;
+    }
 
-        log.debug(serviceClass.getName());
-        log.debug(methodName);
-        for (int i = 0; i < parameterTypes.length; ++i) {
-            log.debug(parameterTypes[i].getName());
-        }
-        for (int i = 0; i < parameters.length; ++i) {
-            log.debug(parameters[i].toString());
+    /**
+     * 从注册表中找到预先生成的方法调用器
+     * @param rpcRequest
+     * @return 找不到时返回null
+     */
+    private MethodInvoker findInvoker(RpcRequest rpcRequest) {
+        MethodInvoker invoker;
+        if (rpcRequest.getMethodId() != 0) {
+            // 握手后的请求只携带方法ID
+            invoker = invokerRegistry.getInvoker(rpcRequest.getMethodId());
+            if (invoker == null) {
+                log.error("Can not find service method with method id: {}", rpcRequest.getMethodId());
+            }
+        } else {
+            String className = rpcRequest.getClassName();
+            String version = rpcRequest.getVersion();
+            String methodName = rpcRequest.getMethodName();
+            String serviceKey = ServiceUtil.makeServiceKey(className, version);
+            invoker = invokerRegistry.getInvoker(serviceKey, methodName, rpcRequest.getParameterTypes());
+            if (invoker == null) {
+                log.error("Can not find service method with interface name: {}, version: {} and method name: {}", className, version, methodName);
+            }
         }
-        // 利用反射创建对象：可选择使用JDK动态代理或是CGlib动态代理
-        // 1、JDK reflect
-//        Method method = serviceClass.getMethod(methodName, parameterTypes);
-//        method.setAccessible(true);
-//        return method.invoke(serviceBean, parameters);
+        return invoker;
+    }
 
-        // 2、Cglib reflect
-        // 创建代理类
-        FastClass serviceFastClass = FastClass.create(serviceClass);
-        /* 使用getMethod也是可以的
-        FastMethod serviceFastMethod = serviceFastClass.getMethod(methodName, parameterTypes);
-        return serviceFastMethod.invoke(serviceBean, parameters);
-         */
-        // 使用getIndex方法相比于getMethod可以提高性能：它会对被代理类的方法进行索引和缓存，从而避免了每次方法调用都要通过反射来定位方法
-        // getIndex方法参数有两个：methodName: 要获取索引的方法的名称；parameterTypes: 方法的参数类型数组。
-        int methodIndex = serviceFastClass.getIndex(methodName, parameterTypes);
-        // 反射调用对应类的方法，传入方法索引、类实现、参数
-        return serviceFastClass.invoke(methodIndex, serviceBean, parameters);
+    /**
+     * 处理请求：直接调用预先生成的方法调用器
+     * @param invoker 找不到方法时为null，此时返回null
+     * @param rpcRequest
+     * @return
+     */
+    private Object handle(MethodInvoker invoker, RpcRequest rpcRequest) throws Throwable {
+        if (invoker == null) {
+            return null;
+        }
+        Object[] parameters = rpcRequest.getParameters();
+        if (log.isDebugEnabled()) {
+            log.debug(invoker.getServiceBean().getClass().getName());
+            log.debug(invoker.getMethod().toString());
+            if (parameters != null) {
+                for (int i = 0; i < parameters.length; ++i) {
+                    log.debug(String.valueOf(parameters[i]));
+                }
+            }
+        }
+        // 调用器在服务注册时已经生成（默认为Cglib FastMethod），此处不再需要反射查找方法
+        return invoker.invoke(parameters);
     }
 
     /**
@@ -1,20 +1,23 @@
 package com.hynis.rpc.server.initializer;
 
+import com.hynis.rpc.common.codec.ChunkedFrameWriter;
+import com.hynis.rpc.common.codec.ProtocolConstant;
 import com.hynis.rpc.common.codec.RpcMsgDecoder;
 import com.hynis.rpc.common.codec.RpcMsgEncoder;
-import com.hynis.rpc.common.entity.RpcRequest;
-import com.hynis.rpc.common.entity.RpcResponse;
-import com.hynis.rpc.common.serializer.Serializer;
-import com.hynis.rpc.common.serializer.protostuff.ProtostuffSerializer;
 import com.hynis.rpc.common.config.Beat;
+import com.hynis.rpc.server.config.ServerConfig;
+import com.hynis.rpc.server.executor.ExecutorRegistry;
+import com.hynis.rpc.server.handler.RpcHandshakeHandler;
 import com.hynis.rpc.server.handler.RpcServerHandler;
+import com.hynis.rpc.server.invoker.InvokerRegistry;
+import com.hynis.rpc.server.limit.LimiterRegistry;
 import io.netty.channel.ChannelInitializer;
 import io.netty.channel.ChannelPipeline;
 import io.netty.channel.socket.SocketChannel;
 import io.netty.handler.codec.LengthFieldBasedFrameDecoder;
+import io.netty.handler.flush.FlushConsolidationHandler;
 import io.netty.handler.timeout.IdleStateHandler;
 
-import java.util.Map;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 
@@ -25,12 +28,29 @@ import java.util.concurrent.TimeUnit;
  */
 public class NettyServerInitializer extends ChannelInitializer<SocketChannel> {
 
-    private Map<String, Object> serviceMap;
-    private ThreadPoolExecutor threadPoolExecutor;
+    private InvokerRegistry invokerRegistry;
+    private ExecutorRegistry executorRegistry;
+    private LimiterRegistry limiterRegistry;
 
-    public NettyServerInitializer(Map<String, Object> serviceMap, ThreadPoolExecutor threadPoolExecutor) {
-        this.serviceMap = serviceMap;
-        this.threadPoolExecutor = threadPoolExecutor;
+    /**
+     * 所有服务共用一个线程池，不限制并发，与RpcServerHandler的同名构造方法一致
+     * @param invokerRegistry
+     * @param threadPoolExecutor
+     */
+    public NettyServerInitializer(InvokerRegistry invokerRegistry, ThreadPoolExecutor threadPoolExecutor) {
+        this(invokerRegistry, new ExecutorRegistry(threadPoolExecutor), null);
+    }
+
+    /**
+     * @param invokerRegistry
+     * @param executorRegistry 执行服务方法的线程池
+     * @param limiterRegistry 每个服务的并发限制，同一个服务端的所有连接共用，为null时不限制
+     */
+    public NettyServerInitializer(InvokerRegistry invokerRegistry, ExecutorRegistry executorRegistry,
+                                  LimiterRegistry limiterRegistry) {
+        this.invokerRegistry = invokerRegistry;
+        this.executorRegistry = executorRegistry;
+        this.limiterRegistry = limiterRegistry;
     }
 
     /**
@@ -38,28 +58,30 @@ public class NettyServerInitializer extends ChannelInitializer<SocketChannel> {
      * @param socketChannel
      */
     @Override
-    protected void initChannel(SocketChannel socketChannel) throws InstantiationException, IllegalAccessException {
-        Serializer serializer = ProtostuffSerializer.class.newInstance();
-
+    protected void initChannel(SocketChannel socketChannel) {
         ChannelPipeline pipeline = socketChannel.pipeline();
         /**
          * 入站处理器：入站处理器负责处理从网络到应用程序的数据。
          * 1. IdleStateHandler：负责处理连接的空闲状态，当读、写空闲时会触发对应的事件
          *  1.1 构造需要四个参数：读空闲时间、写空闲时间、读写空闲时间、时间单位
-         * 2. LengthFieldBasedFrameDecoder：负责处理基于长度字段的数据帧，数据帧的格式由RpcRequest类实现
-         *  2.1 构造需要三个参数：数据帧最大长度、偏移量（长度字段本身占用的字节数）、长度字段本身占用的字节数、帧长度字段的值与帧的实际长度之间的差值、跳过的字节数
-         * 3. RpcMsgDecoder：解码器
-         * 4. RpcServerHandler：核心，负责执行客户端所需要的服务
-         */
-        pipeline.addLast(new IdleStateHandler(0, 0, Beat.BEAT_TIMEOUT, TimeUnit.SECONDS));
-        pipeline.addLast(new LengthFieldBasedFrameDecoder(65536, 0, 4, 0, 0));
-        pipeline.addLast(new RpcMsgDecoder(RpcResponse.class, serializer));
-        pipeline.addLast(new RpcServerHandler(serviceMap, threadPoolExecutor));
-        /**
+         * 2. LengthFieldBasedFrameDecoder：负责处理基于长度字段的数据帧，数据帧的格式见ProtocolConstant，超过最大长度的消息以分块帧传输
+         *  2.1 构造需要五个参数：数据帧最大长度、长度字段的偏移量、长度字段本身占用的字节数、帧长度字段的值与帧的实际长度之间的差值、跳过的字节数
+         * 3. RpcMsgDecoder：解码器，按消息头中的序列化器ID从SerializerRegistry中选择序列化器，并重组分块帧，只接受服务声明的序列化器
+         * 4. RpcHandshakeHandler：处理客户端的握手，返回方法字典
+         * 5. RpcServerHandler：核心，负责执行客户端所需要的服务
          * 出站处理器：出站处理器负责处理从应用程序到网络的数据。
-         * 1. RpcMsgEncoder: 编码器
+         * 1. RpcMsgEncoder: 编码器，需要放在RpcServerHandler之前，RpcServerHandler写出的响应才会经过它
+         * 2. FlushConsolidationHandler：合并flush，工作线程各自writeAndFlush的响应在EventLoop中按批写出，一批只调用一次系统调用
+         * 3. ChunkedFrameWriter：把编码后超过最大帧长度的响应拆分为分块帧，轮流写出，需要放在RpcMsgEncoder之前
          */
-        pipeline.addLast(new RpcMsgEncoder(RpcRequest.class, serializer));
-
+        pipeline.addLast(new IdleStateHandler(0, 0, Beat.BEAT_TIMEOUT, TimeUnit.SECONDS));
+        pipeline.addLast(new ChunkedFrameWriter());
+        pipeline.addLast(new FlushConsolidationHandler(ServerConfig.EXPLICIT_FLUSH_AFTER_FLUSHES, true));
+        pipeline.addLast(new LengthFieldBasedFrameDecoder(ProtocolConstant.MAX_FRAME_LENGTH,
+                ProtocolConstant.LENGTH_FIELD_OFFSET, ProtocolConstant.LENGTH_FIELD_LENGTH, 0, 0));
+        pipeline.addLast(new RpcMsgDecoder(invokerRegistry.getSerializerIds()));
+        pipeline.addLast(new RpcMsgEncoder());
+        pipeline.addLast(new RpcHandshakeHandler(invokerRegistry));
+        pipeline.addLast(new RpcServerHandler(invokerRegistry, executorRegistry, limiterRegistry));
     }
 }
@@ -0,0 +1,310 @@
+package com.hynis.rpc.server.invoker;
+
+import com.hynis.rpc.common.annotation.RpcBulkhead;
+import com.hynis.rpc.common.serializer.ClassAllowList;
+import com.hynis.rpc.common.serializer.SerializerRegistry;
+import com.hynis.rpc.common.util.ServiceUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cglib.reflect.FastClass;
+import org.springframework.util.ClassUtils;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * @author hynis
+ * @date 2026/10/17 19:15
+ *
+ * 方法调用器注册表：在服务注册（NettyServer.addService）时，为服务接口的每一个方法预先生成调用器
+ * 请求到来时按 服务key + 方法名 + 参数类型 直接查表，
+ * 避免在请求的热路径上执行 FastClass.create 与 getIndex 的线性查找
+ * 同时为每个方法分配一个方法ID，客户端握手后可以只用方法ID来调用
+ */
+@Slf4j
+public class InvokerRegistry {
+    /**
+     * 调用器的实现方式
+     */
+    private final InvokerType invokerType;
+    /**
+     * key为接口名+版本号，value为该服务所有方法的调用器
+     * 内层的Map只在注册时写入，之后只读，不会因为客户端传来的参数类型而增长
+     */
+    private final Map<String, Map<MethodKey, MethodInvoker>> serviceInvokerMap = new ConcurrentHashMap<>();
+    /**
+     * 方法ID到调用器的映射，数组下标即方法ID，0保留表示未使用方法ID
+     * 只在注册服务时写入（写时复制），请求时直接按下标读取
+     */
+    private volatile MethodInvoker[] idInvokers = new MethodInvoker[1];
+    /**
+     * 方法字典：key为方法签名，value为方法ID，握手时发给客户端
+     */
+    private final Map<String, Integer> methodDictionary = new ConcurrentHashMap<>();
+    /**
+     * 所有服务声明的序列化器ID，解码器只接受其中的序列化器
+     */
+    private final Set<Byte> serializerIds = Collections.newSetFromMap(new ConcurrentHashMap<Byte, Boolean>());
+
+    public InvokerRegistry() {
+        this(InvokerType.FAST_METHOD);
+    }
+
+    public InvokerRegistry(InvokerType invokerType) {
+        this.invokerType = invokerType;
+    }
+
+    /**
+     * 注册服务：为服务接口中的所有方法生成调用器，方法在公共线程池中执行
+     * @param serviceKey 接口名+版本号
+     * @param interfaceName 接口名
+     * @param serviceBean 服务实现类
+     */
+    public void register(String serviceKey, String interfaceName, Object serviceBean) {
+        register(serviceKey, interfaceName, serviceBean, "");
+    }
+
+    /**
+     * 注册服务：为服务接口中的所有方法生成调用器
+     * 如果在实现类上找不到名为interfaceName的接口，就退化为实现类的所有public方法
+     * @param serviceKey 接口名+版本号
+     * @param interfaceName 接口名
+     * @param serviceBean 服务实现类
+     * @param bulkhead 服务使用的舱壁名称，为空时使用公共线程池；方法上的RpcBulkhead优先
+     */
+    public void register(String serviceKey, String interfaceName, Object serviceBean, String bulkhead) {
+        register(serviceKey, interfaceName, serviceBean, SerializerRegistry.getInstance().getDefaultSerializer().getId(), bulkhead);
+    }
+
+    /**
+     * 注册服务：为服务接口中的所有方法生成调用器，方法声明的参数与返回值类型加入反序列化的白名单
+     * 如果在实现类上找不到名为interfaceName的接口，就退化为实现类的所有public方法
+     * @param serviceKey 接口名+版本号
+     * @param interfaceName 接口名
+     * @param serviceBean 服务实现类
+     * @param serializerId 服务声明的序列化器ID，使用其他序列化器的请求会被拒绝
+     * @param bulkhead 服务使用的舱壁名称，为空时使用公共线程池；方法上的RpcBulkhead优先
+     */
+    public void register(String serviceKey, String interfaceName, Object serviceBean, byte serializerId, String bulkhead) {
+        Class<?> serviceClass = serviceBean.getClass();
+        Class<?> interfaceClass = findInterface(serviceClass, interfaceName);
+        Method[] methods = interfaceClass != null ? interfaceClass.getMethods() : serviceClass.getMethods();
+        // 同一个服务的所有方法共用一个FastClass，只在注册时生成一次
+        FastClass fastClass = FastClass.create(serviceClass);
+
+        Map<MethodKey, MethodInvoker> invokerMap = new HashMap<>();
+        for (Method method : methods) {
+            if (method.getDeclaringClass() == Object.class) {
+                continue;
+            }
+            try {
+                MethodInvoker invoker = invokerType.create(fastClass, serviceBean, method);
+                invoker.setServiceKey(serviceKey);
+                invoker.setBulkhead(findBulkhead(serviceClass, method, bulkhead));
+                invoker.setSerializerId(serializerId);
+                ClassAllowList.getInstance().allowMethodTypes(method);
+                invokerMap.put(new MethodKey(method.getName(), method.getParameterTypes()), invoker);
+                assignMethodId(ServiceUtil.makeMethodKey(serviceKey, method.getName(), method.getParameterTypes()), invoker);
+            } catch (Exception e) {
+                log.warn("Can not create invoker for method: {}, exception: {}", method, e.getMessage());
+            }
+        }
+        serviceInvokerMap.put(serviceKey, invokerMap);
+        serializerIds.add(serializerId);
+        log.info("Register {} invokers for service: {}", invokerMap.size(), serviceKey);
+    }
+
+    /**
+     * 为方法分配ID，同一个方法重复注册时沿用原来的ID
+     * @param methodKey 方法签名
+     * @param invoker
+     */
+    private synchronized void assignMethodId(String methodKey, MethodInvoker invoker) {
+        Integer methodId = methodDictionary.get(methodKey);
+        MethodInvoker[] invokers;
+        if (methodId == null) {
+            methodId = idInvokers.length;
+            invokers = Arrays.copyOf(idInvokers, methodId + 1);
+        } else {
+            invokers = idInvokers.clone();
+        }
+        invokers[methodId] = invoker;
+        idInvokers = invokers;
+        methodDictionary.put(methodKey, methodId);
+    }
+
+    /**
+     * 按方法ID查找方法调用器
+     * @param methodId 握手时分配的方法ID
+     * @return 找不到时返回null
+     */
+    public MethodInvoker getInvoker(int methodId) {
+        MethodInvoker[] invokers = idInvokers;
+        if (methodId <= 0 || methodId >= invokers.length) {
+            return null;
+        }
+        return invokers[methodId];
+    }
+
+    /**
+     * 获取方法字典，握手时发给客户端
+     * @return key为方法签名，value为方法ID
+     */
+    public Map<String, Integer> getMethodDictionary() {
+        return new HashMap<>(methodDictionary);
+    }
+
+    /**
+     * 所有服务声明的序列化器ID，注册服务时更新，交给解码器检查请求使用的序列化器
+     * @return 只读视图
+     */
+    public Set<Byte> getSerializerIds() {
+        return Collections.unmodifiableSet(serializerIds);
+    }
+
+    /**
+     * 查找方法调用器
+     * 客户端传来的参数类型可能与接口声明的类型不完全一致（子类、包装类型），
+     * 因此精确查找失败时会按可赋值规则再匹配一次，有多个重载方法可用时选择最具体的一个
+     * 参数类型由客户端决定，匹配结果不缓存，避免注册表随请求无限增长；握手后的请求按方法ID查找，不会走到这里
+     * @param serviceKey 接口名+版本号
+     * @param methodName 方法名
+     * @param parameterTypes 参数类型
+     * @return 找不到时返回null
+     */
+    public MethodInvoker getInvoker(String serviceKey, String methodName, Class<?>[] parameterTypes) {
+        Map<MethodKey, MethodInvoker> invokerMap = serviceInvokerMap.get(serviceKey);
+        if (invokerMap == null) {
+            return null;
+        }
+        MethodKey methodKey = new MethodKey(methodName, parameterTypes);
+        MethodInvoker invoker = invokerMap.get(methodKey);
+        if (invoker == null) {
+            invoker = findCompatibleInvoker(invokerMap, methodKey);
+        }
+        return invoker;
+    }
+
+    /**
+     * 按可赋值规则查找方法：多个重载方法都可用时选择最具体的一个（每个参数类型都可以赋值给其他方法的对应参数），
+     * 没有唯一最具体的方法时视为有歧义，返回null，结果不依赖注册表的遍历顺序
+     */
+    private MethodInvoker findCompatibleInvoker(Map<MethodKey, MethodInvoker> invokerMap, MethodKey methodKey) {
+        List<MethodInvoker> candidates = new ArrayList<>();
+        for (MethodInvoker invoker : invokerMap.values()) {
+            Method method = invoker.getMethod();
+            if (!method.getName().equals(methodKey.methodName)) {
+                continue;
+            }
+            Class<?>[] declaredTypes = method.getParameterTypes();
+            if (declaredTypes.length != methodKey.parameterTypes.length) {
+                continue;
+            }
+            boolean compatible = true;
+            for (int i = 0; i < declaredTypes.length; ++i) {
+                if (!ClassUtils.isAssignable(declaredTypes[i], methodKey.parameterTypes[i])) {
+                    compatible = false;
+                    break;
+                }
+            }
+            if (compatible) {
+                candidates.add(invoker);
+            }
+        }
+        for (MethodInvoker candidate : candidates) {
+            boolean mostSpecific = true;
+            for (MethodInvoker other : candidates) {
+                if (other != candidate && !isMoreSpecific(candidate.getMethod(), other.getMethod())) {
+                    mostSpecific = false;
+                    break;
+                }
+            }
+            if (mostSpecific) {
+                return candidate;
+            }
+        }
+        if (!candidates.isEmpty()) {
+            log.warn("Ambiguous call of method: {} with parameter types: {}", methodKey.methodName, Arrays.toString(methodKey.parameterTypes));
+        }
+        return null;
+    }
+
+    /**
+     * 方法a的每个参数类型都可以赋值给方法b的对应参数时，a比b更具体
+     */
+    private static boolean isMoreSpecific(Method a, Method b) {
+        Class<?>[] aTypes = a.getParameterTypes();
+        Class<?>[] bTypes = b.getParameterTypes();
+        for (int i = 0; i < aTypes.length; ++i) {
+            if (!ClassUtils.isAssignable(bTypes[i], aTypes[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 方法使用的舱壁：接口方法或者实现类方法上的RpcBulkhead，都没有时使用服务的舱壁
+     */
+    private String findBulkhead(Class<?> serviceClass, Method method, String serviceBulkhead) {
+        RpcBulkhead annotation = method.getAnnotation(RpcBulkhead.class);
+        if (annotation == null) {
+            try {
+                annotation = serviceClass.getMethod(method.getName(), method.getParameterTypes()).getAnnotation(RpcBulkhead.class);
+            } catch (NoSuchMethodException e) {
+                annotation = null;
+            }
+        }
+        return annotation != null ? annotation.value() : serviceBulkhead;
+    }
+
+    private Class<?> findInterface(Class<?> serviceClass, String interfaceName) {
+        for (Class<?> interfaceClass : ClassUtils.getAllInterfacesForClass(serviceClass)) {
+            if (interfaceClass.getName().equals(interfaceName)) {
+                return interfaceClass;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 方法的查找key：方法名+参数类型
+     */
+    private static class MethodKey {
+        private static final Class<?>[] EMPTY_TYPES = new Class<?>[0];
+
+        private final String methodName;
+        private final Class<?>[] parameterTypes;
+        private final int hash;
+
+        MethodKey(String methodName, Class<?>[] parameterTypes) {
+            this.methodName = methodName;
+            // 无参方法经过序列化后参数类型数组可能为null
+            this.parameterTypes = parameterTypes != null ? parameterTypes : EMPTY_TYPES;
+            this.hash = 31 * methodName.hashCode() + Arrays.hashCode(this.parameterTypes);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof MethodKey)) {
+                return false;
+            }
+            MethodKey that = (MethodKey) o;
+            return methodName.equals(that.methodName) && Arrays.equals(parameterTypes, that.parameterTypes);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.hynis.rpc.server.invoker;
+
+import com.hynis.rpc.server.invoker.impl.FastMethodInvoker;
+import com.hynis.rpc.server.invoker.impl.MethodHandleInvoker;
+import com.hynis.rpc.server.invoker.impl.ReflectMethodInvoker;
+import org.springframework.cglib.reflect.FastClass;
+
+import java.lang.reflect.Method;
+
+/**
+ * @author hynis
+ * @date 2026/10/17 19:12
+ *
+ * 方法调用器的实现方式，性能对比见rpc-test模块的InvokerBenchmark
+ */
+public enum InvokerType {
+    /**
+     * JDK反射
+     */
+    REFLECT {
+        @Override
+        public MethodInvoker create(FastClass fastClass, Object serviceBean, Method method) {
+            return new ReflectMethodInvoker(serviceBean, method);
+        }
+    },
+    /**
+     * Cglib FastMethod
+     */
+    FAST_METHOD {
+        @Override
+        public MethodInvoker create(FastClass fastClass, Object serviceBean, Method method) {
+            return new FastMethodInvoker(fastClass, serviceBean, method);
+        }
+    },
+    /**
+     * JDK MethodHandle
+     */
+    METHOD_HANDLE {
+        @Override
+        public MethodInvoker create(FastClass fastClass, Object serviceBean, Method method) throws IllegalAccessException {
+            return new MethodHandleInvoker(serviceBean, method);
+        }
+    };
+
+    /**
+     * 创建方法调用器
+     * @param fastClass 服务实现类对应的FastClass，同一个服务的所有方法共用一个
+     * @param serviceBean 服务实现类
+     * @param method 接口方法
+     * @return
+     * @throws IllegalAccessException
+     */
+    public abstract MethodInvoker create(FastClass fastClass, Object serviceBean, Method method) throws IllegalAccessException;
+}
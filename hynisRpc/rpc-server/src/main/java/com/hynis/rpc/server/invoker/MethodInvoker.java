@@ -0,0 +1,78 @@
+package com.hynis.rpc.server.invoker;
+
+import java.lang.reflect.Method;
+
+/**
+ * @author hynis
+ * @date 2026/10/17 19:02
+ *
+ * 方法调用器：在服务注册时就与服务实现类、接口方法绑定，
+ * 请求到来时只需要传入参数即可调用，不再需要每次都去查找方法
+ */
+public abstract class MethodInvoker {
+    /**
+     * 服务实现类
+     */
+    protected final Object serviceBean;
+    /**
+     * 对应的接口方法
+     */
+    protected final Method method;
+    /**
+     * 所属服务的key（接口名+版本号），注册时由InvokerRegistry设置
+     */
+    private String serviceKey = "";
+    /**
+     * 方法执行时使用的舱壁（独立线程池）名称，为空时使用公共线程池，注册时由InvokerRegistry设置
+     */
+    private String bulkhead = "";
+    /**
+     * 服务声明的序列化器ID，使用其他序列化器的请求会被拒绝，注册时由InvokerRegistry设置
+     */
+    private byte serializerId;
+
+    protected MethodInvoker(Object serviceBean, Method method) {
+        this.serviceBean = serviceBean;
+        this.method = method;
+    }
+
+    /**
+     * 调用方法，目标方法抛出的异常会原样抛出（不会被InvocationTargetException包装）
+     * @param parameters 方法参数
+     * @return 方法返回值
+     * @throws Throwable
+     */
+    public abstract Object invoke(Object[] parameters) throws Throwable;
+
+    public Object getServiceBean() {
+        return serviceBean;
+    }
+
+    public Method getMethod() {
+        return method;
+    }
+
+    public String getServiceKey() {
+        return serviceKey;
+    }
+
+    void setServiceKey(String serviceKey) {
+        this.serviceKey = serviceKey;
+    }
+
+    public String getBulkhead() {
+        return bulkhead;
+    }
+
+    void setBulkhead(String bulkhead) {
+        this.bulkhead = bulkhead != null ? bulkhead : "";
+    }
+
+    public byte getSerializerId() {
+        return serializerId;
+    }
+
+    void setSerializerId(byte serializerId) {
+        this.serializerId = serializerId;
+    }
+}
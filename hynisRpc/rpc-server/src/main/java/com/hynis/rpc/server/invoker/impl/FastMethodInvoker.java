@@ -0,0 +1,34 @@
+package com.hynis.rpc.server.invoker.impl;
+
+import com.hynis.rpc.server.invoker.MethodInvoker;
+import org.springframework.cglib.reflect.FastClass;
+import org.springframework.cglib.reflect.FastMethod;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+
+/**
+ * @author hynis
+ * @date 2026/10/17 19:05
+ *
+ * 使用Cglib的FastMethod调用：FastClass只在注册时生成一次，方法索引也只查找一次
+ * 之后每次调用都是通过索引直接switch到目标方法，没有反射开销
+ */
+public class FastMethodInvoker extends MethodInvoker {
+
+    private final FastMethod fastMethod;
+
+    public FastMethodInvoker(FastClass fastClass, Object serviceBean, Method method) {
+        super(serviceBean, method);
+        this.fastMethod = fastClass.getMethod(method.getName(), method.getParameterTypes());
+    }
+
+    @Override
+    public Object invoke(Object[] parameters) throws Throwable {
+        try {
+            return fastMethod.invoke(serviceBean, parameters);
+        } catch (InvocationTargetException e) {
+            throw e.getTargetException();
+        }
+    }
+}
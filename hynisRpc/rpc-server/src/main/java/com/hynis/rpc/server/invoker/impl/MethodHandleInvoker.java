@@ -0,0 +1,36 @@
+package com.hynis.rpc.server.invoker.impl;
+
+import com.hynis.rpc.server.invoker.MethodInvoker;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+
+/**
+ * @author hynis
+ * @date 2026/10/17 19:08
+ *
+ * 使用MethodHandle调用：注册时将服务实现类绑定为接收者，并把参数展开为Object[]，
+ * 统一成 (Object[])Object 的类型，调用时使用invokeExact，不需要再做类型适配
+ */
+public class MethodHandleInvoker extends MethodInvoker {
+
+    private static final MethodType INVOKE_TYPE = MethodType.methodType(Object.class, Object[].class);
+
+    private final MethodHandle methodHandle;
+
+    public MethodHandleInvoker(Object serviceBean, Method method) throws IllegalAccessException {
+        super(serviceBean, method);
+        method.setAccessible(true);
+        this.methodHandle = MethodHandles.lookup().unreflect(method)
+                .bindTo(serviceBean)
+                .asSpreader(Object[].class, method.getParameterTypes().length)
+                .asType(INVOKE_TYPE);
+    }
+
+    @Override
+    public Object invoke(Object[] parameters) throws Throwable {
+        return (Object) methodHandle.invokeExact(parameters);
+    }
+}
@@ -0,0 +1,29 @@
+package com.hynis.rpc.server.invoker.impl;
+
+import com.hynis.rpc.server.invoker.MethodInvoker;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+
+/**
+ * @author hynis
+ * @date 2026/10/17 19:10
+ *
+ * 使用JDK反射调用，Method对象在注册时缓存，主要用作对照
+ */
+public class ReflectMethodInvoker extends MethodInvoker {
+
+    public ReflectMethodInvoker(Object serviceBean, Method method) {
+        super(serviceBean, method);
+        method.setAccessible(true);
+    }
+
+    @Override
+    public Object invoke(Object[] parameters) throws Throwable {
+        try {
+            return method.invoke(serviceBean, parameters);
+        } catch (InvocationTargetException e) {
+            throw e.getTargetException();
+        }
+    }
+}
@@ -0,0 +1,244 @@
+package com.hynis.rpc.server.limit;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * @author hynis
+ * @date 2026/10/18 23:50
+ *
+ * 自适应并发限制（梯度算法，与Envoy adaptive concurrency的gradient controller类似）：
+ * 服务端同时处理的请求数超过限制时直接拒绝，不进入线程池排队，限制值按测得的响应时间不断调整
+ * 1、每个请求从进入IO线程到执行完毕的时间为一个样本，包括在线程池队列中等待的时间；每WINDOW_SIZE个样本取平均值作为当前响应时间
+ * 2、无负载响应时间：初始为第一个窗口的响应时间，之后观察到更短的响应时间时直接更新；
+ *    距离上一次探测超过probeInterval（随机±25%）并且出现排队时重新探测：并发限制降到最小值让队列排空，
+ *    取探测期间进入的请求的平均响应时间，服务本身变慢（如下游变慢）时据此调高；没有排队时不探测，空闲的服务端不会因为探测而拒绝请求
+ * 3、梯度 = tolerance * 无负载响应时间 / 当前响应时间，限制在[0.5, 1]之间：没有排队时为1，排队越长越小
+ * 4、新的限制 = 限制 * 梯度 + sqrt(限制)：没有排队时按sqrt(限制)增长，排队时收缩，稳定在只有少量排队的位置
+ * 5、并发数没有达到限制的一半时不调整，避免低负载时限制无限增长；请求被丢弃（线程池已满、在队列中过期）时限制乘以0.9
+ * 无负载响应时间只在探测时重新测量，不会像响应时间的移动平均那样随着排队逐渐升高，使限制在持续饱和时也不会漂移
+ * 响应时间因此在饱和时保持平稳，多出的请求立即得到过载响应，由客户端换一个节点，而不是在队列里等上几秒
+ */
+@Slf4j
+public class ConcurrencyLimiter {
+    /**
+     * 每个窗口的样本数
+     */
+    private static final int WINDOW_SIZE = 20;
+    /**
+     * 每次探测的样本数
+     */
+    private static final int PROBE_SAMPLES = 2 * WINDOW_SIZE;
+    private static final double DROP_BACKOFF_RATIO = 0.9;
+
+    private final String name;
+    private final int minLimit;
+    private final int maxLimit;
+    private final double tolerance;
+    private final long probeIntervalNanos;
+
+    private final AtomicInteger inFlight = new AtomicInteger(0);
+    private final AtomicLong rejectedCount = new AtomicLong(0);
+    /**
+     * 当前的并发限制，tryAcquire不加锁读取
+     */
+    private volatile int limit;
+
+    /**
+     * 以下字段在this上加锁访问
+     */
+    private double estimatedLimit;
+    private double noLoadRttNanos;
+    private boolean probing;
+    private long probeStartNanos;
+    private long nextProbeNanos;
+    private long windowRttSum;
+    private int windowCount;
+    private int windowMaxInFlight;
+    private boolean windowDropped;
+
+    /**
+     * @param name 限制的对象，如服务key，用于日志
+     * @param initialLimit 初始的并发限制
+     * @param minLimit 并发限制的最小值，也是探测无负载响应时间时的并发限制
+     * @param maxLimit 并发限制的最大值
+     * @param tolerance 当前响应时间超过无负载响应时间的多少倍才开始收缩
+     * @param probeIntervalMillis 重新探测无负载响应时间的间隔
+     */
+    public ConcurrencyLimiter(String name, int initialLimit, int minLimit, int maxLimit, double tolerance,
+                              long probeIntervalMillis) {
+        this.name = name;
+        this.minLimit = Math.max(1, minLimit);
+        this.maxLimit = Math.max(this.minLimit, maxLimit);
+        this.tolerance = Math.max(1, tolerance);
+        this.probeIntervalNanos = TimeUnit.MILLISECONDS.toNanos(probeIntervalMillis);
+        this.estimatedLimit = Math.min(this.maxLimit, Math.max(this.minLimit, initialLimit));
+        this.limit = (int) estimatedLimit;
+        scheduleNextProbe(System.nanoTime());
+    }
+
+    /**
+     * 尝试占用一个并发名额
+     * @return 已经达到并发限制时返回false，此时请求应当被拒绝
+     */
+    public boolean tryAcquire() {
+        for (;;) {
+            int current = inFlight.get();
+            if (current >= limit) {
+                rejectedCount.incrementAndGet();
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * 请求处理完毕，释放名额并记录响应时间
+     * @param rttNanos 从占用名额到处理完毕的时间
+     */
+    public void onSuccess(long rttNanos) {
+        release(rttNanos, false);
+    }
+
+    /**
+     * 请求没有被执行就被丢弃（线程池已满、在队列中过期），释放名额并收缩限制
+     * @param rttNanos 从占用名额到被丢弃的时间
+     */
+    public void onDropped(long rttNanos) {
+        release(rttNanos, true);
+    }
+
+    private void release(long rttNanos, boolean dropped) {
+        int concurrency = inFlight.getAndDecrement();
+        long now = System.nanoTime();
+        synchronized (this) {
+            if (probing) {
+                // 探测开始之前进入的请求含有排队的时间，不计入
+                if (dropped || now - rttNanos - probeStartNanos < 0) {
+                    return;
+                }
+                windowRttSum += rttNanos;
+                if (++windowCount >= PROBE_SAMPLES) {
+                    finishProbe(now, (double) windowRttSum / windowCount);
+                }
+                return;
+            }
+            windowRttSum += rttNanos;
+            windowCount++;
+            windowMaxInFlight = Math.max(windowMaxInFlight, concurrency);
+            windowDropped |= dropped;
+            if (windowCount < WINDOW_SIZE) {
+                return;
+            }
+            double rtt = (double) windowRttSum / windowCount;
+            int maxInFlight = windowMaxInFlight;
+            boolean windowHasDrop = windowDropped;
+            resetWindow();
+            if (now - nextProbeNanos >= 0 && rtt > tolerance * noLoadRttNanos) {
+                startProbe(now);
+                return;
+            }
+            update(rtt, maxInFlight, windowHasDrop);
+        }
+    }
+
+    private void update(double rttNanos, int maxInFlight, boolean dropped) {
+        if (noLoadRttNanos == 0 || rttNanos < noLoadRttNanos) {
+            noLoadRttNanos = rttNanos;
+        }
+        double newLimit;
+        if (dropped) {
+            newLimit = estimatedLimit * DROP_BACKOFF_RATIO;
+        } else if (maxInFlight < estimatedLimit / 2) {
+            return;
+        } else {
+            double gradient = Math.max(0.5, Math.min(1.0, tolerance * noLoadRttNanos / rttNanos));
+            newLimit = estimatedLimit * gradient + Math.sqrt(estimatedLimit);
+        }
+        setLimit(Math.max(minLimit, Math.min(maxLimit, newLimit)), rttNanos);
+    }
+
+    /**
+     * 开始探测：并发限制降到最小值，之前积压的请求处理完后，新进入的请求不再排队
+     * @param now
+     */
+    private void startProbe(long now) {
+        probing = true;
+        probeStartNanos = now;
+        limit = minLimit;
+        resetWindow();
+    }
+
+    private void finishProbe(long now, double rttNanos) {
+        probing = false;
+        noLoadRttNanos = rttNanos;
+        scheduleNextProbe(now);
+        limit = (int) estimatedLimit;
+        resetWindow();
+        log.debug("Concurrency limit of {}: no load rtt {}us, limit {}", name, (long) rttNanos / 1000, limit);
+    }
+
+    /**
+     * 下一次探测的时间随机±25%，避免多个服务、多台服务端同时降低并发
+     * @param now
+     */
+    private void scheduleNextProbe(long now) {
+        long jitter = (long) ((ThreadLocalRandom.current().nextDouble() - 0.5) * probeIntervalNanos / 2);
+        nextProbeNanos = now + probeIntervalNanos + jitter;
+    }
+
+    private void setLimit(double newLimit, double rttNanos) {
+        if ((int) newLimit != limit && log.isDebugEnabled()) {
+            log.debug("Concurrency limit of {}: {} -> {}, rtt: {}us, no load rtt: {}us", name, limit, (int) newLimit,
+                    (long) rttNanos / 1000, (long) noLoadRttNanos / 1000);
+        }
+        estimatedLimit = newLimit;
+        limit = (int) newLimit;
+    }
+
+    private void resetWindow() {
+        windowRttSum = 0;
+        windowCount = 0;
+        windowMaxInFlight = 0;
+        windowDropped = false;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * 当前的并发限制
+     * @return
+     */
+    public int getLimit() {
+        return limit;
+    }
+
+    /**
+     * 正在处理（包括在线程池队列中等待）的请求数
+     * @return
+     */
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    /**
+     * 因为达到并发限制而被拒绝的请求总数
+     * @return
+     */
+    public long getRejectedCount() {
+        return rejectedCount.get();
+    }
+
+    @Override
+    public String toString() {
+        return name + " limit=" + limit + " inFlight=" + inFlight.get() + " rejected=" + rejectedCount.get();
+    }
+}
@@ -0,0 +1,60 @@
+package com.hynis.rpc.server.limit;
+
+import com.hynis.rpc.server.config.ServerConfig;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * @author hynis
+ * @date 2026/10/18 23:55
+ *
+ * 每个服务的自适应并发限制，key为接口名+版本号，在服务第一次收到请求时创建
+ * 参数见ServerConfig.LIMITER_*，-Dhynis.rpc.server.limiter=false 时不限制
+ */
+public class LimiterRegistry {
+
+    private final boolean enabled;
+    private final Map<String, ConcurrencyLimiter> limiters = new ConcurrentHashMap<>();
+
+    public LimiterRegistry() {
+        this(ServerConfig.LIMITER_ENABLED);
+    }
+
+    public LimiterRegistry(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * 获取服务的并发限制
+     * @param serviceKey 接口名+版本号
+     * @return 没有启用并发限制时返回null
+     */
+    public ConcurrencyLimiter getLimiter(String serviceKey) {
+        if (!enabled) {
+            return null;
+        }
+        ConcurrencyLimiter limiter = limiters.get(serviceKey);
+        return limiter != null ? limiter : createLimiter(serviceKey);
+    }
+
+    private synchronized ConcurrencyLimiter createLimiter(String serviceKey) {
+        ConcurrencyLimiter limiter = limiters.get(serviceKey);
+        if (limiter == null) {
+            limiter = new ConcurrencyLimiter(serviceKey, ServerConfig.LIMITER_INITIAL_LIMIT,
+                    ServerConfig.LIMITER_MIN_LIMIT, ServerConfig.LIMITER_MAX_LIMIT, ServerConfig.LIMITER_TOLERANCE,
+                    ServerConfig.LIMITER_PROBE_INTERVAL);
+            limiters.put(serviceKey, limiter);
+        }
+        return limiter;
+    }
+
+    /**
+     * 所有服务的并发限制，可以用来监控每个服务当前的并发数与限制
+     * @return key为接口名+版本号
+     */
+    public Map<String, ConcurrencyLimiter> getLimiters() {
+        return Collections.unmodifiableMap(limiters);
+    }
+}
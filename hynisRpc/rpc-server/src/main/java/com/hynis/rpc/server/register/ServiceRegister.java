@@ -2,9 +2,9 @@ package com.hynis.rpc.server.register;
 
 import com.hynis.rpc.common.protocol.RpcProtocol;
 import com.hynis.rpc.common.protocol.RpcServiceInfo;
-import com.hynis.rpc.common.util.ServiceUtil;
 import com.hynis.rpc.common.zookeeper.ZookeeperConstant;
 import com.hynis.rpc.common.zookeeper.CuratorClient;
+import com.hynis.rpc.server.config.ServerConfig;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.curator.framework.CuratorFramework;
 import org.apache.curator.framework.state.ConnectionState;
@@ -30,43 +30,43 @@ public class ServiceRegister {
     }
 
     /**
-     * 服务注册：服务端会给出自己提供的服务信息RpcServiceInfo，存于serviceMap。
+     * 服务注册：服务端会给出自己提供的服务信息RpcServiceInfo，存于serviceInfoMap。
      * 本方法将服务封装在RpcProtocol类内，调用Curator将数据提交给Zookeeper，以便于用户发现服务去对应的host与port调用
      * Zookeeper会对外展示支持的功能
      * @param host
      * @param port
-     * @param serviceMap
+     * @param serviceInfoMap key为接口名+版本号，value为服务信息（包括服务使用的序列化器与压缩器）
      */
-    public void registerService(final String host, final int port, final Map<String, Object> serviceMap) {
+    public void registerService(final String host, final int port, final Map<String, RpcServiceInfo> serviceInfoMap) {
+        registerService(host, port, ServerConfig.WEIGHT, serviceInfoMap);
+    }
+
+    /**
+     * 服务注册，并声明服务端的权重
+     * @param host
+     * @param port
+     * @param weight 服务端的处理能力（如CPU核数），客户端按权重比例分配请求
+     * @param serviceInfoMap
+     */
+    public void registerService(final String host, final int port, final int weight, final Map<String, RpcServiceInfo> serviceInfoMap) {
         // 服务注册
         List<RpcServiceInfo> serviceInfoList = new ArrayList<>();
-        for (String key : serviceMap.keySet()) {
-            String[] serviceInfo = key.split(ServiceUtil.SERVICE_CONCAT_TOKEN);
-            if (serviceInfo.length > 0) {
-                RpcServiceInfo rpcServiceInfo = new RpcServiceInfo();
-                rpcServiceInfo.setServiceName(serviceInfo[0]);
-                if (serviceInfo.length == 2) {
-                    rpcServiceInfo.setVersion(serviceInfo[1]);
-                } else {
-                    rpcServiceInfo.setVersion("");
-                }
-                log.info("Register new service: {} ", key);
-                serviceInfoList.add(rpcServiceInfo);
-            } else {
-                log.warn("Can not get service name and version: {} ", key);
-            }
+        for (Map.Entry<String, RpcServiceInfo> entry : serviceInfoMap.entrySet()) {
+            log.info("Register new service: {} ", entry.getKey());
+            serviceInfoList.add(entry.getValue());
         }
         try {
             RpcProtocol rpcProtocol = new RpcProtocol();
             rpcProtocol.setHost(host);
             rpcProtocol.setPort(port);
+            rpcProtocol.setWeight(weight);
             rpcProtocol.setServiceInfoList(serviceInfoList);
             String serviceData = rpcProtocol.toJson();
             byte[] bytes = serviceData.getBytes();
             String path = ZookeeperConstant.ZK_DATA_PATH + "-" + rpcProtocol.hashCode();
             path = this.curatorClient.createPathData(path, bytes);
             pathList.add(path);
-            log.info("Register {} new service, host: {}, port: {}", serviceInfoList.size(), host, port);
+            log.info("Register {} new service, host: {}, port: {}, weight: {}", serviceInfoList.size(), host, port, weight);
         } catch (Exception e) {
             log.error("Register service fail, exception: {}", e.getMessage());
         }
@@ -78,7 +78,7 @@ public class ServiceRegister {
             public void stateChanged(CuratorFramework curatorFramework, ConnectionState connectionState) {
                 if (connectionState == ConnectionState.RECONNECTED) {
                     log.info("Connection state: {}, register service after reconnected", connectionState);
-                    registerService(host, port, serviceMap);
+                    registerService(host, port, weight, serviceInfoMap);
                 }
             }
         });
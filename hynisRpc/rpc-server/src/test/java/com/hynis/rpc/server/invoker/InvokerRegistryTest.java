@@ -0,0 +1,97 @@
+package com.hynis.rpc.server.invoker;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+/**
+ * @author hynis
+ * @date 2026/10/19 10:00
+ */
+public class InvokerRegistryTest {
+
+    public interface OverloadService {
+        String echo(Object value);
+
+        String echo(Number value);
+
+        String pair(Number a, Object b);
+
+        String pair(Object a, Number b);
+    }
+
+    public static class OverloadServiceImpl implements OverloadService {
+        @Override
+        public String echo(Object value) {
+            return "object";
+        }
+
+        @Override
+        public String echo(Number value) {
+            return "number";
+        }
+
+        @Override
+        public String pair(Number a, Object b) {
+            return "number-object";
+        }
+
+        @Override
+        public String pair(Object a, Number b) {
+            return "object-number";
+        }
+    }
+
+    private static final String SERVICE_KEY = OverloadService.class.getName();
+
+    private InvokerRegistry registry;
+
+    @Before
+    public void setUp() {
+        registry = new InvokerRegistry();
+        registry.register(SERVICE_KEY, OverloadService.class.getName(), new OverloadServiceImpl());
+    }
+
+    @Test
+    public void exactMatch() throws Throwable {
+        MethodInvoker invoker = registry.getInvoker(SERVICE_KEY, "echo", new Class<?>[]{Object.class});
+        assertNotNull(invoker);
+        assertEquals("object", invoker.invoke(new Object[]{"a"}));
+    }
+
+    @Test
+    public void compatibleMatchPicksMostSpecificOverload() throws Throwable {
+        for (int i = 0; i < 10; ++i) {
+            MethodInvoker invoker = registry.getInvoker(SERVICE_KEY, "echo", new Class<?>[]{Integer.class});
+            assertNotNull(invoker);
+            assertEquals("number", invoker.invoke(new Object[]{1}));
+        }
+        MethodInvoker invoker = registry.getInvoker(SERVICE_KEY, "echo", new Class<?>[]{String.class});
+        assertEquals("object", invoker.invoke(new Object[]{"a"}));
+    }
+
+    @Test
+    public void ambiguousOverloadIsRejected() {
+        assertNull(registry.getInvoker(SERVICE_KEY, "pair", new Class<?>[]{Integer.class, Integer.class}));
+    }
+
+    @Test
+    public void unknownMethod() {
+        assertNull(registry.getInvoker(SERVICE_KEY, "missing", new Class<?>[0]));
+        assertNull(registry.getInvoker("missing", "echo", new Class<?>[]{Object.class}));
+    }
+
+    @Test
+    public void methodIds() {
+        for (Integer methodId : registry.getMethodDictionary().values()) {
+            MethodInvoker invoker = registry.getInvoker(methodId);
+            assertNotNull(invoker);
+            assertEquals(SERVICE_KEY, invoker.getServiceKey());
+        }
+        assertNull(registry.getInvoker(0));
+        assertNull(registry.getInvoker(1000));
+    }
+}
@@ -0,0 +1,97 @@
+package com.hynis.rpc.server.limit;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author hynis
+ * @date 2026/10/19 16:40
+ */
+public class ConcurrencyLimiterTest {
+
+    private static final long MILLIS = TimeUnit.MILLISECONDS.toNanos(1);
+    /**
+     * 足够长的探测间隔，测试期间不会探测
+     */
+    private static final long NO_PROBE = TimeUnit.HOURS.toMillis(1);
+
+    /**
+     * 每次同时占用concurrency个名额再全部释放，直到记录samples个样本
+     */
+    private static void run(ConcurrencyLimiter limiter, int concurrency, int samples, long rttNanos) {
+        int recorded = 0;
+        while (recorded < samples) {
+            int acquired = 0;
+            while (acquired < concurrency && recorded + acquired < samples && limiter.tryAcquire()) {
+                ++acquired;
+            }
+            assertTrue("no permit is available", acquired > 0);
+            for (int i = 0; i < acquired; ++i) {
+                limiter.onSuccess(rttNanos);
+            }
+            recorded += acquired;
+        }
+    }
+
+    @Test
+    public void rejectsWhenLimitIsReached() {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter("test", 2, 1, 10, 1.5, NO_PROBE);
+        assertTrue(limiter.tryAcquire());
+        assertTrue(limiter.tryAcquire());
+        assertFalse(limiter.tryAcquire());
+        assertEquals(1, limiter.getRejectedCount());
+        limiter.onSuccess(MILLIS);
+        assertTrue(limiter.tryAcquire());
+    }
+
+    @Test
+    public void growsWithoutQueueingAndShrinksWithQueueing() {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter("test", 10, 1, 100, 1.5, NO_PROBE);
+        // 响应时间等于无负载响应时间：梯度为1，按sqrt(限制)增长，10 + 3.16
+        run(limiter, 10, 20, MILLIS);
+        assertEquals(13, limiter.getLimit());
+        // 响应时间是无负载响应时间的4倍：梯度取下限0.5，13 * 0.5 + 3.6
+        run(limiter, 13, 20, 4 * MILLIS);
+        assertEquals(10, limiter.getLimit());
+    }
+
+    @Test
+    public void keepsLimitUnderLowUtilization() {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter("test", 10, 1, 100, 1.5, NO_PROBE);
+        run(limiter, 1, 100, MILLIS);
+        assertEquals(10, limiter.getLimit());
+    }
+
+    @Test
+    public void backsOffWhenRequestsAreDropped() {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter("test", 10, 1, 100, 1.5, NO_PROBE);
+        run(limiter, 10, 19, MILLIS);
+        assertTrue(limiter.tryAcquire());
+        limiter.onDropped(MILLIS);
+        assertEquals(9, limiter.getLimit());
+    }
+
+    @Test
+    public void probesNoLoadRttAndRestoresLimit() throws InterruptedException {
+        // 探测间隔为0：第一个窗口结束时还没有无负载响应时间，立即开始探测
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter("test", 10, 2, 100, 1.5, 0);
+        run(limiter, 10, 20, MILLIS);
+        assertEquals(2, limiter.getLimit());
+
+        // 探测开始之前进入的请求含有排队的时间，不计入探测
+        Thread.sleep(2);
+        assertTrue(limiter.tryAcquire());
+        limiter.onSuccess(TimeUnit.HOURS.toNanos(1));
+        run(limiter, 2, 39, 1000);
+        assertEquals(2, limiter.getLimit());
+
+        // 探测期间进入的请求满40个后结束探测，恢复原来的限制
+        run(limiter, 1, 1, 1000);
+        assertEquals(10, limiter.getLimit());
+    }
+}
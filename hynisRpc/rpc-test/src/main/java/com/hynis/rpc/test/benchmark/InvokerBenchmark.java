@@ -0,0 +1,103 @@
+package com.hynis.rpc.test.benchmark;
+
+import com.hynis.rpc.common.util.ServiceUtil;
+import com.hynis.rpc.server.invoker.InvokerRegistry;
+import com.hynis.rpc.server.invoker.InvokerType;
+import com.hynis.rpc.test.service.HelloService;
+import com.hynis.rpc.test.service.impl.HelloServiceImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.cglib.reflect.FastClass;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author hynis
+ * @date 2026/10/17 19:30
+ *
+ * 服务端方法调用方式的性能对比：
+ * 1、reflectPerRequest：每次请求getMethod再反射调用
+ * 2、fastClassPerRequest：每次请求FastClass.create再getIndex（RpcServerHandler原来的做法）
+ * 3、registry*：从InvokerRegistry查找预先生成的调用器再调用
+ * 注意：JDK9以上运行时Cglib需要添加JVM参数 --add-opens java.base/java.lang=ALL-UNNAMED
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class InvokerBenchmark {
+
+    private static final String METHOD_NAME = "hello";
+
+    private final Class<?>[] parameterTypes = new Class<?>[]{String.class};
+    private final Object[] parameters = new Object[]{"hynis"};
+
+    private String serviceKey;
+    private Object serviceBean;
+    private InvokerRegistry reflectRegistry;
+    private InvokerRegistry fastMethodRegistry;
+    private InvokerRegistry methodHandleRegistry;
+
+    @Setup
+    public void setup() {
+        serviceKey = ServiceUtil.makeServiceKey(HelloService.class.getName(), "1.0");
+        serviceBean = new HelloServiceImpl();
+        reflectRegistry = createRegistry(InvokerType.REFLECT);
+        fastMethodRegistry = createRegistry(InvokerType.FAST_METHOD);
+        methodHandleRegistry = createRegistry(InvokerType.METHOD_HANDLE);
+    }
+
+    private InvokerRegistry createRegistry(InvokerType invokerType) {
+        InvokerRegistry registry = new InvokerRegistry(invokerType);
+        registry.register(serviceKey, HelloService.class.getName(), serviceBean);
+        return registry;
+    }
+
+    @Benchmark
+    public Object reflectPerRequest() throws Exception {
+        return serviceBean.getClass().getMethod(METHOD_NAME, parameterTypes).invoke(serviceBean, parameters);
+    }
+
+    @Benchmark
+    public Object fastClassPerRequest() throws Exception {
+        FastClass serviceFastClass = FastClass.create(serviceBean.getClass());
+        int methodIndex = serviceFastClass.getIndex(METHOD_NAME, parameterTypes);
+        return serviceFastClass.invoke(methodIndex, serviceBean, parameters);
+    }
+
+    @Benchmark
+    public Object registryReflect() throws Throwable {
+        return reflectRegistry.getInvoker(serviceKey, METHOD_NAME, parameterTypes).invoke(parameters);
+    }
+
+    @Benchmark
+    public Object registryFastMethod() throws Throwable {
+        return fastMethodRegistry.getInvoker(serviceKey, METHOD_NAME, parameterTypes).invoke(parameters);
+    }
+
+    @Benchmark
+    public Object registryMethodHandle() throws Throwable {
+        return methodHandleRegistry.getInvoker(serviceKey, METHOD_NAME, parameterTypes).invoke(parameters);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(InvokerBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
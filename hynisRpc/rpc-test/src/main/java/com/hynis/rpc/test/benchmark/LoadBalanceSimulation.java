@@ -0,0 +1,171 @@
+package com.hynis.rpc.test.benchmark;
+
+import com.hynis.rpc.client.connect.ConnectionManager;
+import com.hynis.rpc.client.core.RpcClient;
+import com.hynis.rpc.client.route.RpcLoadBalance;
+import com.hynis.rpc.client.route.impl.RpcLoadBalanceP2C;
+import com.hynis.rpc.client.route.impl.RpcLoadBalancePeakEwma;
+import com.hynis.rpc.client.route.impl.RpcLoadBalanceRoundRobin;
+import com.hynis.rpc.common.protocol.RpcProtocol;
+import com.hynis.rpc.common.protocol.RpcServiceInfo;
+import com.hynis.rpc.common.util.ServiceUtil;
+import com.hynis.rpc.common.util.ThreadPoolUtil;
+import com.hynis.rpc.server.initializer.NettyServerInitializer;
+import com.hynis.rpc.server.invoker.InvokerRegistry;
+import com.hynis.rpc.test.service.HelloService;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import org.apache.log4j.Level;
+import org.apache.log4j.LogManager;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * @author hynis
+ * @date 2026/10/18 18:40
+ *
+ * 负载均衡策略的模拟对比：在本机启动NODES个服务端，其中一个服务端每次调用都多耗时SLOW_DELAY_MS毫秒（模拟GC停顿或者机器故障），
+ * 客户端用THREADS个线程同步调用，分别统计轮询、P2C、峰值EWMA三种策略的响应时间分位数与慢节点分到的请求比例
+ * 不依赖Zookeeper，直接把服务端信息交给ConnectionManager
+ * 注意：JDK9以上运行时Cglib需要添加JVM参数 --add-opens java.base/java.lang=ALL-UNNAMED
+ */
+public class LoadBalanceSimulation {
+
+    private static final String VERSION = "1.0";
+    private static final int NODES = 3;
+    private static final long FAST_DELAY_MS = 1;
+    private static final long SLOW_DELAY_MS = 30;
+    private static final int THREADS = 16;
+    private static final int WARMUP_REQUESTS = 3000;
+    private static final int REQUESTS = 30000;
+
+    /**
+     * 每次调用固定耗时的服务实现，返回值中带有节点编号，用来统计每个节点分到的请求数
+     */
+    private static class DelayedHelloService implements HelloService {
+        private final int node;
+        private final long delayMillis;
+
+        DelayedHelloService(int node, long delayMillis) {
+            this.node = node;
+            this.delayMillis = delayMillis;
+        }
+
+        @Override
+        public String hello(String name) {
+            try {
+                Thread.sleep(delayMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return String.valueOf(node);
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        // 服务端每个请求都会打印INFO日志，模拟时只保留WARN以上
+        LogManager.getRootLogger().setLevel(Level.WARN);
+
+        String serviceKey = ServiceUtil.makeServiceKey(HelloService.class.getName(), VERSION);
+        EventLoopGroup group = new NioEventLoopGroup(NODES);
+        List<Channel> serverChannels = new ArrayList<>();
+        List<RpcProtocol> protocols = new ArrayList<>();
+        for (int i = 0; i < NODES; ++i) {
+            long delay = i == 0 ? SLOW_DELAY_MS : FAST_DELAY_MS;
+            InvokerRegistry registry = new InvokerRegistry();
+            registry.register(serviceKey, HelloService.class.getName(), new DelayedHelloService(i, delay));
+            Channel channel = new ServerBootstrap()
+                    .group(group)
+                    .channel(NioServerSocketChannel.class)
+                    .childHandler(new NettyServerInitializer(registry,
+                            ThreadPoolUtil.createThreadPool("Simulation-" + i, THREADS * 2, THREADS * 2, 60)))
+                    .bind("127.0.0.1", 0).sync().channel();
+            serverChannels.add(channel);
+
+            RpcServiceInfo serviceInfo = new RpcServiceInfo();
+            serviceInfo.setServiceName(HelloService.class.getName());
+            serviceInfo.setVersion(VERSION);
+            RpcProtocol protocol = new RpcProtocol();
+            protocol.setHost("127.0.0.1");
+            protocol.setPort(((InetSocketAddress) channel.localAddress()).getPort());
+            protocol.setServiceInfoList(Collections.singletonList(serviceInfo));
+            protocols.add(protocol);
+        }
+
+        ConnectionManager connectionManager = ConnectionManager.getInstance();
+        connectionManager.updateConnectedServer(protocols);
+        HelloService helloService = RpcClient.createService(HelloService.class, VERSION);
+
+        System.out.printf("%d nodes, node 0 +%dms, others +%dms, %d threads, %d requests%n",
+                NODES, SLOW_DELAY_MS, FAST_DELAY_MS, THREADS, REQUESTS);
+        System.out.printf("%-12s %8s %8s %8s %8s %8s %10s%n", "strategy", "p50(ms)", "p90(ms)", "p99(ms)", "p999(ms)", "max(ms)", "slowShare");
+        RpcLoadBalance[] strategies = new RpcLoadBalance[]{
+                new RpcLoadBalanceRoundRobin(), new RpcLoadBalanceP2C(), new RpcLoadBalancePeakEwma()};
+        for (RpcLoadBalance strategy : strategies) {
+            connectionManager.setLoadBalance(strategy);
+            run(helloService, new long[WARMUP_REQUESTS], new AtomicLongArray(NODES));
+            long[] latencies = new long[REQUESTS];
+            AtomicLongArray nodeCounts = new AtomicLongArray(NODES);
+            run(helloService, latencies, nodeCounts);
+            print(strategy.getClass().getSimpleName().replace("RpcLoadBalance", ""), latencies, nodeCounts);
+        }
+
+        connectionManager.stop();
+        for (Channel channel : serverChannels) {
+            channel.close();
+        }
+        group.shutdownGracefully();
+        System.exit(0);
+    }
+
+    private static void run(final HelloService helloService, final long[] latencies, final AtomicLongArray nodeCounts) throws InterruptedException {
+        final AtomicInteger next = new AtomicInteger(0);
+        final CountDownLatch latch = new CountDownLatch(THREADS);
+        for (int t = 0; t < THREADS; ++t) {
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        int i;
+                        while ((i = next.getAndIncrement()) < latencies.length) {
+                            long start = System.nanoTime();
+                            String node = helloService.hello("simulation");
+                            latencies[i] = System.nanoTime() - start;
+                            nodeCounts.incrementAndGet(Integer.parseInt(node));
+                        }
+                    } finally {
+                        latch.countDown();
+                    }
+                }
+            }, "Simulation-client-" + t).start();
+        }
+        latch.await();
+    }
+
+    private static void print(String name, long[] latencies, AtomicLongArray nodeCounts) {
+        Arrays.sort(latencies);
+        long total = 0;
+        for (int i = 0; i < nodeCounts.length(); ++i) {
+            total += nodeCounts.get(i);
+        }
+        System.out.printf("%-12s %8.2f %8.2f %8.2f %8.2f %8.2f %9.1f%%%n", name,
+                percentile(latencies, 0.50), percentile(latencies, 0.90), percentile(latencies, 0.99),
+                percentile(latencies, 0.999), latencies[latencies.length - 1] / 1e6,
+                100.0 * nodeCounts.get(0) / total);
+    }
+
+    private static double percentile(long[] sorted, double p) {
+        int index = (int) Math.ceil(p * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))] / 1e6;
+    }
+}